@@ -0,0 +1,223 @@
+import arcanepathways.bench.Fixtures;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.SplittableRandom;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+
+/**
+ * The BenchmarkFixtures class builds the game objects for the JMH benchmarks. It lives in the
+ * default package so it can use the game classes and their package-private hooks directly.
+ */
+public class BenchmarkFixtures implements Fixtures {
+
+    private static final int TILE_SIZE = 48;
+
+    @Override
+    public BooleanSupplier movement(String outcome) {
+        GameMap map = new GameMap();
+        map.setNotifier(GameNotifier.SILENT);
+        // Enemies stay put, so none walks up to the player and starts a duel; a move still runs their turn
+        map.setEnemyActiveRadius(0);
+        Character player = new Knight("Bench");
+        map.setPlayerPosition(5, 5);
+        map.clearTile(5, 5);
+        map.clearTile(6, 5);
+        switch (outcome) {
+            case "BLOCKED":
+                map.setStaticObject(6, 5, true);
+                return () -> map.handleMovement("D", player);
+            case "NPC":
+                // Talking to an NPC removes it, so put it back for the next call
+                return () -> {
+                    map.addFriendlyNPC(6, 5);
+                    return map.handleMovement("D", player);
+                };
+            case "FREE":
+                return new BooleanSupplier() {
+                    private boolean right = true;
+
+                    @Override
+                    public boolean getAsBoolean() {
+                        boolean moved = map.handleMovement(right ? "D" : "A", player);
+                        right = !right;
+                        return moved;
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unknown outcome: " + outcome);
+        }
+    }
+
+    @Override
+    public IntSupplier encounter(boolean autoResolve) {
+        GameMap map = new GameMap(16, 12, 1L);
+        map.setNotifier(GameNotifier.SILENT);
+        map.setExitAction(() -> { });
+        map.setPlayerPolicy(PlayerPolicy.alwaysAttack());
+        map.setAutoResolveDuels(autoResolve);
+        Character player = new Knight("Bench");
+        map.setPlayerPosition(5, 5);
+        map.clearTile(5, 5);
+        map.clearTile(6, 5);
+        return () -> {
+            // The duel removes the enemy, so put a new one in its place for the next call
+            map.addEnemyNPC(6, 5);
+            player.setHealth(100);
+            map.handleMovement("D", player);
+            return player.getHealth();
+        };
+    }
+
+    @Override
+    public Object generateMap(int cols, int rows) {
+        return new GameMap(cols, rows);
+    }
+
+    @Override
+    public IntSupplier attack(String archetype) {
+        Character attacker;
+        switch (archetype) {
+            case "Knight":
+                attacker = new Knight("Bench");
+                break;
+            case "Wizard":
+                attacker = new Wizard("Bench");
+                break;
+            case "Deprived":
+                attacker = new Deprived("Bench");
+                break;
+            case "Enemy":
+                attacker = new Enemy("Bench");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown archetype: " + archetype);
+        }
+        Enemy target = new Enemy("Target");
+        CombatLog log = new CombatLog(16);
+        return () -> {
+            attacker.attack(target, log);
+            int health = target.getHealth();
+            // Keep the target alive so every call does the same work
+            target.setHealth(100);
+            return health;
+        };
+    }
+
+    @Override
+    public IntSupplier autoResolve(String archetype) {
+        SplittableRandom random = new SplittableRandom(1);
+        Character player = archetype.equals("Enemy") ? new Enemy("Bench")
+                : Character.create(archetype, "Bench", random);
+        Enemy enemy = new Enemy("Target");
+        return () -> {
+            DuelOdds odds = DuelOdds.of(player, enemy, random.nextBoolean());
+            return odds.getTurns(odds.sample(random));
+        };
+    }
+
+    @Override
+    public Runnable painter(int cols, int rows) {
+        GameMap map = new GameMap(cols, rows);
+        Dimension view = map.getPreferredSize();
+        map.setSize(view);
+        BufferedImage image = new BufferedImage(view.width, view.height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        return () -> map.paintComponent(graphics);
+    }
+
+    @Override
+    public Runnable tilePainter(int cols, int rows) {
+        GameMap map = new GameMap(cols, rows);
+        Dimension view = map.getPreferredSize();
+        map.setSize(view);
+        BufferedImage image = new BufferedImage(view.width, view.height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        map.paintComponent(graphics); // Builds the terrain cache
+        graphics.setClip(5 * TILE_SIZE, 5 * TILE_SIZE, TILE_SIZE + 1, TILE_SIZE + 1);
+        return () -> map.paintComponent(graphics);
+    }
+
+    @Override
+    public IntSupplier enemyTurn(int cols, int rows) {
+        GameMap map = new GameMap(cols, rows, 1L);
+        map.setEnemyActiveRadius(Math.max(cols, rows));
+        return map::moveEnemies;
+    }
+
+    @Override
+    public IntSupplier statusEffects(int active) {
+        int count = 1024;
+        EntityStore store = new EntityStore(count);
+        int[] entities = new int[count];
+        for (int i = 0; i < count; i++) {
+            entities[i] = store.create(EntityStore.ENEMY);
+        }
+        StatusEffects effects = store.getEffects();
+        SplittableRandom random = new SplittableRandom(1);
+        // Durations averaging the active count keep it steady at one new effect per turn
+        int maxDuration = 2 * active;
+        for (int i = 0; i < active; i++) {
+            effects.apply(entities[i & (count - 1)], StatusEffects.STRENGTH, 1, 1 + random.nextInt(maxDuration));
+        }
+        return new IntSupplier() {
+            private int next;
+
+            @Override
+            public int getAsInt() {
+                effects.apply(entities[next++ & (count - 1)], StatusEffects.MAGIC, 1, 1 + random.nextInt(maxDuration));
+                effects.tick();
+                return effects.size();
+            }
+        };
+    }
+
+    @Override
+    public IntSupplier pathfinding(String query, int cols, int rows) {
+        GameMap map = new GameMap(cols, rows, 1L);
+        Pathfinder pathfinder = map.getPathfinder();
+        Point endSpot = map.getEndSpots()[0];
+        int startX = map.getPlayerX();
+        int startY = map.getPlayerY();
+        FlowField field = map.getEndSpotFlowField(0);
+        switch (query) {
+            case "PATH":
+                return () -> pathfinder.findPath(startX, startY, endSpot.x, endSpot.y).length / 2;
+            case "FLOW_WALK":
+                return () -> {
+                    int x = startX;
+                    int y = startY;
+                    int steps = 0;
+                    for (String move = field.nextMove(x, y); move != null; move = field.nextMove(x, y)) {
+                        switch (move) {
+                            case "W" -> y--;
+                            case "S" -> y++;
+                            case "A" -> x--;
+                            default -> x++;
+                        }
+                        steps++;
+                    }
+                    return steps;
+                };
+            case "FLOW_REPAIR":
+                // A tile halfway along the way, so that blocking it moves the distances of every tile behind it
+                int[] path = pathfinder.findPath(startX, startY, endSpot.x, endSpot.y);
+                int tile = path.length / 4 * 2;
+                int x = path[tile];
+                int y = path[tile + 1];
+                return new IntSupplier() {
+                    private boolean block = true;
+
+                    @Override
+                    public int getAsInt() {
+                        pathfinder.setBlocked(x, y, block);
+                        block = !block;
+                        return field.getDistance(startX, startY);
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unknown query: " + query);
+        }
+    }
+}
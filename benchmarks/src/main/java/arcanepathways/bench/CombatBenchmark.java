@@ -0,0 +1,42 @@
+package arcanepathways.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Measures {@code Character.attack} for every archetype, including the enemy's, and settling a
+ * whole duel from its cached odds.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class CombatBenchmark {
+
+    @Param({"Knight", "Wizard", "Deprived", "Enemy"})
+    public String archetype;
+
+    private IntSupplier attack;
+    private IntSupplier autoResolve;
+
+    @Setup
+    public void setUp() {
+        Fixtures fixtures = Fixtures.load();
+        attack = fixtures.attack(archetype);
+        autoResolve = fixtures.autoResolve(archetype);
+    }
+
+    @Benchmark
+    public int attack() {
+        return attack.getAsInt();
+    }
+
+    @Benchmark
+    public int autoResolve() {
+        return autoResolve.getAsInt();
+    }
+}
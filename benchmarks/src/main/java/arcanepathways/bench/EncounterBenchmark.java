@@ -0,0 +1,35 @@
+package arcanepathways.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Measures a whole encounter: the move into an enemy, the duel played out or settled from its
+ * odds, and the enemy's removal. Run it with {@code -prof gc} to see that an encounter on a warm
+ * map allocates nothing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class EncounterBenchmark {
+
+    @Param({"false", "true"})
+    public boolean autoResolve;
+
+    private IntSupplier encounter;
+
+    @Setup
+    public void setUp() {
+        encounter = Fixtures.load().encounter(autoResolve);
+    }
+
+    @Benchmark
+    public int encounter() {
+        return encounter.getAsInt();
+    }
+}
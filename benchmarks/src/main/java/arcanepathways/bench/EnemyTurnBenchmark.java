@@ -0,0 +1,35 @@
+package arcanepathways.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Measures one enemy turn, in which every enemy on the map plans and makes its move, at
+ * increasing map sizes: about 1,300, 20,000 and 80,000 enemies.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class EnemyTurnBenchmark {
+
+    @Param({"256x192", "1024x768", "2048x1536"})
+    public String size;
+
+    private IntSupplier turn;
+
+    @Setup
+    public void setUp() {
+        String[] parts = size.split("x");
+        turn = Fixtures.load().enemyTurn(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+    }
+
+    @Benchmark
+    public int enemyTurn() {
+        return turn.getAsInt();
+    }
+}
@@ -0,0 +1,118 @@
+package arcanepathways.bench;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+
+/**
+ * The Fixtures interface prepares the game objects the benchmarks measure.
+ * JMH refuses benchmark classes in the default package, where the game lives, so the
+ * benchmarks reach the game through the default-package {@code BenchmarkFixtures} class.
+ */
+public interface Fixtures {
+
+    /**
+     * Loads the default-package implementation.
+     *
+     * @return the fixtures
+     */
+    static Fixtures load() {
+        try {
+            return (Fixtures) Class.forName("BenchmarkFixtures").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchmarkFixtures is missing from the classpath", e);
+        }
+    }
+
+    /**
+     * Prepares a map on which every call performs one move with the given outcome.
+     *
+     * @param outcome BLOCKED, NPC or FREE
+     * @return a supplier that performs one move and returns the result of handleMovement
+     */
+    BooleanSupplier movement(String outcome);
+
+    /**
+     * Prepares a map on which every call walks a Knight into a fresh enemy and plays out the
+     * duel, always attacking, or settles it from its odds.
+     *
+     * @param autoResolve true to settle the duels from their odds
+     * @return a supplier that runs one encounter and returns the Knight's health after it
+     */
+    IntSupplier encounter(boolean autoResolve);
+
+    /**
+     * Generates a new map, including all static objects, end spots and NPCs.
+     *
+     * @param cols the number of columns
+     * @param rows the number of rows
+     * @return the generated map
+     */
+    Object generateMap(int cols, int rows);
+
+    /**
+     * Prepares a character of the given archetype that attacks an enemy on every call.
+     *
+     * @param archetype Knight, Wizard, Deprived or Enemy
+     * @return a supplier that performs one attack and returns the target's remaining health
+     */
+    IntSupplier attack(String archetype);
+
+    /**
+     * Prepares a character of the given archetype whose duel with an enemy is settled from
+     * its odds on every call, as in the auto-resolve mode.
+     *
+     * @param archetype Knight, Wizard, Deprived or Enemy
+     * @return a supplier that settles one duel and returns the number of turns it took
+     */
+    IntSupplier autoResolve(String archetype);
+
+    /**
+     * Prepares a map of the given size that paints its default-sized viewport into an
+     * off-screen image on every call.
+     *
+     * @param cols the number of columns
+     * @param rows the number of rows
+     * @return a task that paints the map once
+     */
+    Runnable painter(int cols, int rows);
+
+    /**
+     * Prepares a map of the given size that repaints a single dirty tile on every call,
+     * as happens after a move.
+     *
+     * @param cols the number of columns
+     * @param rows the number of rows
+     * @return a task that repaints one tile
+     */
+    Runnable tilePainter(int cols, int rows);
+
+    /**
+     * Prepares a generated map of the given size on which every enemy moves on every call.
+     *
+     * @param cols the number of columns
+     * @param rows the number of rows
+     * @return a supplier that runs one enemy turn and returns the number of enemies that moved
+     */
+    IntSupplier enemyTurn(int cols, int rows);
+
+    /**
+     * Prepares a store of entities carrying about the given number of status effects, on which
+     * every call applies one more effect and advances a turn, keeping the number steady.
+     *
+     * @param active the number of effects active at a time
+     * @return a supplier that applies an effect, advances a turn and returns the active count
+     */
+    IntSupplier statusEffects(int active);
+
+    /**
+     * Prepares a generated map of the given size whose pathfinder answers one query from the
+     * spawn point toward the top-right end spot on every call.
+     *
+     * @param query PATH for a jump-point search, FLOW_WALK for following the end spot's flow
+     *              field all the way, or FLOW_REPAIR for blocking or opening a tile on that way
+     * @param cols  the number of columns
+     * @param rows  the number of rows
+     * @return a supplier that answers one query and returns the number of steps to the end spot
+     */
+    IntSupplier pathfinding(String query, int cols, int rows);
+}
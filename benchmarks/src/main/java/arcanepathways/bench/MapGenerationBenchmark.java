@@ -0,0 +1,37 @@
+package arcanepathways.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@code GameMap} constructor, which runs all the map generators, at increasing map sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class MapGenerationBenchmark {
+
+    @Param({"16x12", "64x48", "256x192", "1024x768"})
+    public String size;
+
+    private int cols;
+    private int rows;
+    private Fixtures fixtures;
+
+    @Setup
+    public void setUp() {
+        String[] parts = size.split("x");
+        cols = Integer.parseInt(parts[0]);
+        rows = Integer.parseInt(parts[1]);
+        fixtures = Fixtures.load();
+    }
+
+    @Benchmark
+    public Object generateMap() {
+        return fixtures.generateMap(cols, rows);
+    }
+}
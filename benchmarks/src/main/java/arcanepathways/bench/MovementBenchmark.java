@@ -0,0 +1,33 @@
+package arcanepathways.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Measures {@code GameMap.handleMovement} for each outcome of a move.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class MovementBenchmark {
+
+    @Param({"BLOCKED", "NPC", "FREE"})
+    public String outcome;
+
+    private BooleanSupplier move;
+
+    @Setup
+    public void setUp() {
+        move = Fixtures.load().movement(outcome);
+    }
+
+    @Benchmark
+    public boolean handleMovement() {
+        return move.getAsBoolean();
+    }
+}
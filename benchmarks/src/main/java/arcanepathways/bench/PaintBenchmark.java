@@ -0,0 +1,44 @@
+package arcanepathways.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@code GameMap.paintComponent} rendering the viewport, and a single dirty tile,
+ * into an off-screen image. Both should cost the same on every map size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class PaintBenchmark {
+
+    @Param({"16x12", "256x192", "1024x768"})
+    public String size;
+
+    private Runnable paint;
+    private Runnable paintTile;
+
+    @Setup
+    public void setUp() {
+        String[] parts = size.split("x");
+        int cols = Integer.parseInt(parts[0]);
+        int rows = Integer.parseInt(parts[1]);
+        Fixtures fixtures = Fixtures.load();
+        paint = fixtures.painter(cols, rows);
+        paintTile = fixtures.tilePainter(cols, rows);
+    }
+
+    @Benchmark
+    public void paintComponent() {
+        paint.run();
+    }
+
+    @Benchmark
+    public void paintDirtyTile() {
+        paintTile.run();
+    }
+}
@@ -0,0 +1,39 @@
+package arcanepathways.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Measures the pathfinder on generated maps: a jump-point search from the spawn point to an end
+ * spot, an agent following the end spot's shared flow field the same way, and the incremental
+ * repair of that flow field when a tile on the way is blocked or opened.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class PathfindingBenchmark {
+
+    @Param({"PATH", "FLOW_WALK", "FLOW_REPAIR"})
+    public String query;
+
+    @Param({"64x48", "256x192", "1024x768"})
+    public String size;
+
+    private IntSupplier pathfinding;
+
+    @Setup
+    public void setUp() {
+        String[] parts = size.split("x");
+        pathfinding = Fixtures.load().pathfinding(query, Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+    }
+
+    @Benchmark
+    public int pathfinding() {
+        return pathfinding.getAsInt();
+    }
+}
@@ -0,0 +1,34 @@
+package arcanepathways.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Measures applying a status effect and advancing a turn of the timing wheel, with a steady
+ * thousand, hundred thousand and million effects active.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class StatusEffectBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int active;
+
+    private IntSupplier turn;
+
+    @Setup
+    public void setUp() {
+        turn = Fixtures.load().statusEffects(active);
+    }
+
+    @Benchmark
+    public int applyAndTick() {
+        return turn.getAsInt();
+    }
+}
@@ -0,0 +1,417 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Archetype class is the shared, immutable template of a kind of character or NPC: its
+ * starting attributes, what its attack can deal and the actions it offers in a duel. Archetypes
+ * are read once from the content file {@value #CONTENT_FILE} and numbered in the order they
+ * appear there, so an entity only stores its archetype's ID, and a new kind of enemy is a few
+ * lines of content that cost nothing per entity.
+ *
+ * <p>An archetype's duel actions sit in a table indexed by action ID, and each action carries
+ * its kind and values, so a duel dispatches on {@link #get(int)} and the action ID rather than
+ * on names and casts to the character classes.</p>
+ */
+public final class Archetype {
+
+    /**
+     * Name of the resource the archetypes are read from, next to the game's classes.
+     */
+    public static final String CONTENT_FILE = "archetypes.txt";
+
+    // Kinds of actions
+    private static final int ATTACK = 0;
+    private static final int EFFECT = 1;
+
+    // Names of the archetypes the code refers to by ID, such as EntityStore.KNIGHT
+    private static final String[] BUILT_IN = {"Knight", "Wizard", "Deprived", "Enemy", "Friendly NPC"};
+
+    private static final Archetype[] ARCHETYPES;
+    private static final Map<String, Archetype> BY_NAME = new HashMap<>();
+
+    static {
+        ARCHETYPES = load();
+        for (Archetype archetype : ARCHETYPES) {
+            BY_NAME.put(archetype.name, archetype);
+        }
+        for (int id = 0; id < BUILT_IN.length; id++) {
+            if (id >= ARCHETYPES.length || !ARCHETYPES[id].name.equals(BUILT_IN[id])) {
+                throw new IllegalStateException(CONTENT_FILE + " must start with the archetype " + BUILT_IN[id]);
+            }
+        }
+    }
+
+    /**
+     * The Action class is one of the things an archetype can do on its turn of a duel.
+     */
+    public static final class Action {
+        private final String label;
+        private final int kind;
+        private final int attribute;
+        private final int amount;
+        private final int turns;
+        private final int event;
+
+        private Action(String label, int kind, int attribute, int amount, int turns, int event) {
+            this.label = label;
+            this.kind = kind;
+            this.attribute = attribute;
+            this.amount = amount;
+            this.turns = turns;
+            this.event = event;
+        }
+
+        /**
+         * Carries out the action.
+         *
+         * @param actor  the character taking the action
+         * @param target the character it is aimed at
+         * @param log    the log the action is recorded in
+         * @return the sequence number of the action's event in the log
+         */
+        public long perform(Character actor, Character target, CombatLog log) {
+            if (kind == EFFECT) {
+                actor.applyEffect(attribute, amount, turns);
+                return log.record(actor, actor, event, amount);
+            }
+            return actor.attack(target, log);
+        }
+
+        /**
+         * Gets the label the action is offered under.
+         *
+         * @return the label, such as Sword Slash
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final int id;
+    private final String name;
+    private final int health;
+    private final int strength;
+    private final int magic;
+    private final int movementRange;
+    private final int[] strikeAttributes; // One or two; with two, a coin flip picks one
+    private final int[] strikeEvents;
+    private final Action[] actions;
+    private final String[] options; // The actions' labels, shared by every duel
+
+    private Archetype(int id, String name, int[] stats, List<int[]> strikes, List<Action> actions) {
+        this.id = id;
+        this.name = name;
+        this.health = stats[0];
+        this.strength = stats[1];
+        this.magic = stats[2];
+        this.movementRange = stats[3];
+        this.strikeAttributes = new int[strikes.size()];
+        this.strikeEvents = new int[strikes.size()];
+        for (int i = 0; i < strikes.size(); i++) {
+            strikeAttributes[i] = strikes.get(i)[0];
+            strikeEvents[i] = strikes.get(i)[1];
+        }
+        this.actions = actions.toArray(new Action[0]);
+        this.options = new String[this.actions.length];
+        for (int i = 0; i < options.length; i++) {
+            options[i] = this.actions[i].label;
+        }
+    }
+
+    /**
+     * Gets an archetype by ID.
+     *
+     * @param id the archetype ID, as an entity stores it
+     * @return the archetype
+     */
+    public static Archetype get(int id) {
+        return ARCHETYPES[id];
+    }
+
+    /**
+     * Gets an archetype by name.
+     *
+     * @param name the archetype name, such as Knight or Enemy
+     * @return the archetype
+     */
+    public static Archetype named(String name) {
+        Archetype archetype = BY_NAME.get(name);
+        if (archetype == null) {
+            throw new IllegalArgumentException("Unknown archetype: " + name);
+        }
+        return archetype;
+    }
+
+    /**
+     * Gets the number of archetypes.
+     *
+     * @return the archetype count
+     */
+    public static int count() {
+        return ARCHETYPES.length;
+    }
+
+    /**
+     * Performs an attack of this archetype. If it has two strikes, which one it makes is drawn
+     * from the attacker's generator.
+     *
+     * @param attacker the attacking character
+     * @param target   the character being attacked
+     * @param log      the log the attack is recorded in
+     * @return the sequence number of the attack's event in the log
+     */
+    public long attack(Character attacker, Character target, CombatLog log) {
+        if (strikeAttributes.length == 0) {
+            throw new IllegalStateException(name + " cannot attack");
+        }
+        int strike = strikeAttributes.length == 1 ? 0 : (attacker.getRandom().nextBoolean() ? 1 : 0);
+        int damage = attacker.getStore().getStrike(attacker.getHandle(), strikeAttributes[strike]);
+        target.setHealth(target.getHealth() - damage);
+        return log.record(attacker, target, strikeEvents[strike], damage);
+    }
+
+    /**
+     * Gets the damage a character of this archetype deals on one of its attack's two outcomes
+     * of equal chance; an attack with one strike deals the same on both.
+     *
+     * @param attacker the attacking character
+     * @param outcome  0 or 1
+     * @return the damage dealt on that outcome, or 0 if the archetype cannot attack
+     */
+    public int strikeDamage(Character attacker, int outcome) {
+        if (strikeAttributes.length == 0) {
+            return 0;
+        }
+        int strike = strikeAttributes.length == 1 ? 0 : outcome;
+        return attacker.getStore().getStrike(attacker.getHandle(), strikeAttributes[strike]);
+    }
+
+    /**
+     * Gets an action by ID.
+     *
+     * @param action the action ID, the index of its label in {@link #getOptions()}
+     * @return the action
+     */
+    public Action getAction(int action) {
+        return actions[action];
+    }
+
+    /**
+     * Gets the labels of the archetype's duel actions, indexed by action ID. The array is
+     * shared and must not be modified.
+     *
+     * @return the labels
+     */
+    public String[] getOptions() {
+        return options;
+    }
+
+    /**
+     * Gets the archetype's ID.
+     *
+     * @return the ID
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the archetype's name.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the health a new character of this archetype starts with, which is also its
+     * maximum health.
+     *
+     * @return the starting health
+     */
+    public int getHealth() {
+        return health;
+    }
+
+    /**
+     * Gets the strength a new character of this archetype starts with.
+     *
+     * @return the starting strength
+     */
+    public int getStrength() {
+        return strength;
+    }
+
+    /**
+     * Gets the magic a new character of this archetype starts with.
+     *
+     * @return the starting magic
+     */
+    public int getMagic() {
+        return magic;
+    }
+
+    /**
+     * Gets how many tiles a character of this archetype can move per turn.
+     *
+     * @return the starting movement range
+     */
+    public int getMovementRange() {
+        return movementRange;
+    }
+
+    /**
+     * Reads the archetypes from the content file.
+     */
+    private static Archetype[] load() {
+        InputStream in = Archetype.class.getResourceAsStream(CONTENT_FILE);
+        if (in == null) {
+            throw new IllegalStateException("Missing resource: " + CONTENT_FILE);
+        }
+        List<Archetype> archetypes = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String name = null;
+            int[] stats = null;
+            List<int[]> strikes = new ArrayList<>();
+            List<Action> actions = new ArrayList<>();
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                List<String> words = split(line, lineNumber);
+                if (words.isEmpty()) {
+                    continue;
+                }
+                try {
+                    switch (words.get(0)) {
+                        case "archetype":
+                            if (name != null) {
+                                archetypes.add(new Archetype(archetypes.size(), name, stats, strikes, actions));
+                            }
+                            expect(words, 6);
+                            name = words.get(1);
+                            stats = new int[]{stat(words.get(2), "health"), stat(words.get(3), "strength"),
+                                    stat(words.get(4), "magic"), stat(words.get(5), "range")};
+                            strikes = new ArrayList<>();
+                            actions = new ArrayList<>();
+                            break;
+                        case "strike":
+                            expect(words, 3);
+                            requireArchetype(name);
+                            if (strikes.size() == 2) {
+                                throw new IllegalArgumentException("An archetype has at most two strikes");
+                            }
+                            int attribute = attribute(words.get(1));
+                            if (attribute == StatusEffects.MOVEMENT_RANGE) {
+                                throw new IllegalArgumentException("Strikes deal strength or magic");
+                            }
+                            strikes.add(new int[]{attribute, CombatLog.actionId(words.get(2))});
+                            break;
+                        case "action":
+                            requireArchetype(name);
+                            actions.add(action(words));
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unknown entry: " + words.get(0));
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalStateException(CONTENT_FILE + " line " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+            if (name != null) {
+                archetypes.add(new Archetype(archetypes.size(), name, stats, strikes, actions));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return archetypes.toArray(new Archetype[0]);
+    }
+
+    private static Action action(List<String> words) {
+        if (words.size() == 3 && words.get(2).equals("attack")) {
+            return new Action(words.get(1), ATTACK, 0, 0, 0, 0);
+        }
+        expect(words, 7);
+        if (!words.get(2).equals("effect")) {
+            throw new IllegalArgumentException("Unknown action kind: " + words.get(2));
+        }
+        int turns = Integer.parseInt(words.get(5));
+        if (turns <= 0) {
+            throw new IllegalArgumentException("Effects last at least one turn: " + turns);
+        }
+        return new Action(words.get(1), EFFECT, attribute(words.get(3)), Integer.parseInt(words.get(4)),
+                turns, CombatLog.actionId(words.get(6)));
+    }
+
+    private static int attribute(String word) {
+        switch (word) {
+            case "strength":
+                return StatusEffects.STRENGTH;
+            case "magic":
+                return StatusEffects.MAGIC;
+            case "range":
+                return StatusEffects.MOVEMENT_RANGE;
+            default:
+                throw new IllegalArgumentException("Unknown attribute: " + word);
+        }
+    }
+
+    private static int stat(String word, String key) {
+        if (!word.startsWith(key + "=")) {
+            throw new IllegalArgumentException("Expected " + key + "=, found " + word);
+        }
+        return Integer.parseInt(word.substring(key.length() + 1));
+    }
+
+    private static void expect(List<String> words, int count) {
+        if (words.size() != count) {
+            throw new IllegalArgumentException("Expected " + count + " words, found " + words.size());
+        }
+    }
+
+    private static void requireArchetype(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("No archetype declared yet");
+        }
+    }
+
+    /**
+     * Splits a line into words at spaces, keeping quoted text together and dropping comments.
+     */
+    private static List<String> split(String line, int lineNumber) {
+        List<String> words = new ArrayList<>();
+        int i = 0;
+        while (i < line.length()) {
+            char c = line.charAt(i);
+            if (c == '#') {
+                break;
+            }
+            if (java.lang.Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"') {
+                int end = line.indexOf('"', i + 1);
+                if (end < 0) {
+                    throw new IllegalStateException(CONTENT_FILE + " line " + lineNumber + ": Unclosed quote");
+                }
+                words.add(line.substring(i + 1, end));
+                i = end + 1;
+            } else {
+                int start = i;
+                while (i < line.length() && !java.lang.Character.isWhitespace(line.charAt(i))) {
+                    i++;
+                }
+                words.add(line.substring(start, i));
+            }
+        }
+        return words;
+    }
+}
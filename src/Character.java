@@ -1,40 +1,100 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
 /**
  * The Character class serves as the base class for all character archetypes in the game.
- * It defines common attributes and abstract methods for characters.
+ * It defines common attributes and behaviour for characters. The attributes themselves
+ * live in an {@link EntityStore}; a Character is a view over one entity in a store. What a
+ * character starts with and how it attacks come from its shared {@link Archetype}.
  */
 public abstract class Character {
-    protected String name;
-    protected int health;
-    protected int strength;
-    protected int magic;
-    protected String archetype;
-    protected int movementRange;
+    protected final String name;
+    protected final EntityStore store;
+    protected int handle; // Changes only when a pooled enemy is recycled
+    protected Archetype archetype; // The entity's, kept at hand for attacks
 
     /**
-     * Constructor for the Character class.
+     * Constructor for the Character class. The character gets a store of its own.
      *
      * @param name      the name of the character
      * @param archetype the archetype of the character
      */
     public Character(String name, String archetype) {
+        this(name, archetype, new EntityStore(1));
+    }
+
+    /**
+     * Constructor for a Character stored as a new entity in the given store, with the starting
+     * attributes of its archetype.
+     *
+     * @param name      the name of the character
+     * @param archetype the archetype of the character
+     * @param store     the store that holds the character's attributes
+     */
+    public Character(String name, String archetype, EntityStore store) {
         this.name = name;
-        this.archetype = archetype;
-        initializeAttributes();
+        this.store = store;
+        this.handle = store.spawn(EntityStore.archetypeId(archetype));
+        this.archetype = Archetype.get(store.getArchetype(handle));
     }
 
     /**
-     * Initializes the character's attributes such as health, strength, and magic.
-     * Must be implemented by subclasses.
+     * Constructor for a Character that views an existing entity, whose attributes
+     * are already initialized.
+     *
+     * @param name   the name of the character
+     * @param store  the store that holds the entity
+     * @param handle the handle of the entity
      */
-    protected abstract void initializeAttributes();
+    protected Character(String name, EntityStore store, int handle) {
+        this.name = name;
+        this.store = store;
+        this.handle = handle;
+        this.archetype = Archetype.get(store.getArchetype(handle));
+    }
+
+    /**
+     * Creates a player character of the given archetype.
+     *
+     * @param archetype the archetype (Knight, Wizard or Deprived), in any case
+     * @param name      the name of the character
+     * @param random    the source of the character's own random choices in combat, such as
+     *                  the {@link GameRandom.Stream#PLAYER_COMBAT} stream
+     * @return the new character
+     */
+    public static Character create(String archetype, String name, RandomGenerator random) {
+        switch (archetype.toLowerCase()) {
+            case "knight":
+                return new Knight(name);
+            case "wizard":
+                return new Wizard(name);
+            case "deprived":
+                return new Deprived(name, random);
+            default:
+                throw new IllegalArgumentException("Unknown archetype: " + archetype);
+        }
+    }
 
     /**
-     * Performs an attack on the target character.
+     * Performs an attack on the target character, as the character's archetype strikes.
      *
      * @param target the character being attacked
-     * @return the description of the attack performed
+     * @param log    the log the attack is recorded in
+     * @return the sequence number of the attack's event in the log
      */
-    public abstract String attack(Character target);
+    public long attack(Character target, CombatLog log) {
+        return archetype.attack(this, target, log);
+    }
+
+    /**
+     * Gets the source of the character's random choices, such as which of two strikes its
+     * attack makes. Characters without a generator of their own use the thread's.
+     *
+     * @return the generator
+     */
+    protected RandomGenerator getRandom() {
+        return ThreadLocalRandom.current();
+    }
 
     /**
      * Gets the name of the character.
@@ -51,7 +111,16 @@ public abstract class Character {
      * @return the character's archetype
      */
     public String getArchetype() {
-        return archetype;
+        return EntityStore.archetypeName(store.getArchetype(handle));
+    }
+
+    /**
+     * Gets the ID of the character's archetype.
+     *
+     * @return the archetype ID, for {@link Archetype#get(int)}
+     */
+    public int getArchetypeId() {
+        return store.getArchetype(handle);
     }
 
     /**
@@ -60,7 +129,16 @@ public abstract class Character {
      * @return the character's health
      */
     public int getHealth() {
-        return health;
+        return store.getHealth(handle);
+    }
+
+    /**
+     * Sets the current health of the character.
+     *
+     * @param health the new health
+     */
+    protected void setHealth(int health) {
+        store.setHealth(handle, health);
     }
 
     /**
@@ -69,7 +147,16 @@ public abstract class Character {
      * @return the character's strength
      */
     public int getStrength() {
-        return strength;
+        return store.getStrength(handle);
+    }
+
+    /**
+     * Sets the current strength of the character.
+     *
+     * @param strength the new strength
+     */
+    protected void setStrength(int strength) {
+        store.setStrength(handle, strength);
     }
 
     /**
@@ -78,7 +165,16 @@ public abstract class Character {
      * @return the character's magic
      */
     public int getMagic() {
-        return magic;
+        return store.getMagic(handle);
+    }
+
+    /**
+     * Sets the current magic of the character.
+     *
+     * @param magic the new magic
+     */
+    protected void setMagic(int magic) {
+        store.setMagic(handle, magic);
     }
 
     /**
@@ -87,7 +183,53 @@ public abstract class Character {
      * @return the character's movement range
      */
     public int getMovementRange() {
-        return movementRange;
+        return store.getMovementRange(handle);
+    }
+
+    /**
+     * Sets the movement range of the character.
+     *
+     * @param movementRange the new movement range
+     */
+    protected void setMovementRange(int movementRange) {
+        store.setMovementRange(handle, movementRange);
+    }
+
+    /**
+     * Applies a temporary buff or debuff to one of the character's attributes.
+     *
+     * @param attribute the attribute ID, such as {@link StatusEffects#STRENGTH}
+     * @param amount    the amount to add; negative for a debuff
+     * @param duration  the number of turns the effect lasts
+     * @return the handle of the effect in the store's {@link StatusEffects}
+     */
+    public int applyEffect(int attribute, int amount, int duration) {
+        return store.getEffects().apply(handle, attribute, amount, duration);
+    }
+
+    /**
+     * Gets the store that holds the character's attributes.
+     *
+     * @return the entity store
+     */
+    public EntityStore getStore() {
+        return store;
+    }
+
+    /**
+     * Gets the handle of the character's entity in its store.
+     *
+     * @return the entity handle
+     */
+    public int getHandle() {
+        return handle;
+    }
+
+    /**
+     * Releases the character's entity from its store. The character must not be used afterwards.
+     */
+    public void release() {
+        store.release(handle);
     }
 
     /**
@@ -96,8 +238,8 @@ public abstract class Character {
      * @return a formatted string containing the character's profile
      */
     public String getProfile() {
-        return "Name: " + name + "\nArchetype: " + archetype + "\nHealth: " + health +
-                "\nStrength: " + strength + "\nMagic: " + magic +
-                "\nMovement Range: " + movementRange;
+        return "Name: " + name + "\nArchetype: " + getArchetype() + "\nHealth: " + getHealth() +
+                "\nStrength: " + getStrength() + "\nMagic: " + getMagic() +
+                "\nMovement Range: " + getMovementRange();
     }
 }
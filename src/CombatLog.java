@@ -0,0 +1,231 @@
+/**
+ * The CombatLog class records combat events, such as attacks and buffs, as a handful of
+ * primitives in a preallocated ring buffer: the attacker and target entities, an action ID and
+ * an amount of damage or boost. Recording an event allocates nothing; the text shown to the
+ * player is only built when a consumer asks for it with {@link #format(long)}.
+ *
+ * <p>Events are identified by an ever-increasing sequence number. Once more events than the
+ * capacity have been recorded, the oldest ones are overwritten. The log is not thread-safe;
+ * parallel simulations give each task its own log.</p>
+ */
+public final class CombatLog {
+
+    public static final int SWORD_SLASH = 0;
+    public static final int FIREBALL = 1;
+    public static final int BASIC_ATTACK = 2;
+    public static final int MAGIC_ATTACK = 3;
+    public static final int ENEMY_PHYSICAL_ATTACK = 4;
+    public static final int ENEMY_MAGIC_ATTACK = 5;
+    public static final int SHIELD_BLOCK = 6;
+    public static final int MAGIC_SHIELD = 7;
+    public static final int DUEL_STARTED = 8;
+    public static final int DUEL_AUTO_RESOLVED = 9; // The amount is made by autoResolved(int, double)
+
+    private static final String[] ACTION_NAMES = {"SWORD_SLASH", "FIREBALL", "BASIC_ATTACK", "MAGIC_ATTACK",
+            "ENEMY_PHYSICAL_ATTACK", "ENEMY_MAGIC_ATTACK", "SHIELD_BLOCK", "MAGIC_SHIELD"};
+
+    /**
+     * The sequence number returned when no event has been recorded.
+     */
+    public static final long NO_EVENT = -1;
+
+    private final int mask;
+    private final int[] attackers;
+    private final int[] targets;
+    private final int[] actions;
+    private final int[] amounts;
+    // Names are kept by reference only, so text can be formatted after the characters are gone
+    private final String[] attackerNames;
+    private final String[] targetNames;
+    private long recorded;
+
+    /**
+     * Constructor for the CombatLog class.
+     *
+     * @param capacity the number of most recent events to keep, rounded up to a power of two
+     */
+    public CombatLog(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.attackers = new int[size];
+        this.targets = new int[size];
+        this.actions = new int[size];
+        this.amounts = new int[size];
+        this.attackerNames = new String[size];
+        this.targetNames = new String[size];
+    }
+
+    /**
+     * Gets the ID of an action that characters can take, by the name of its constant, as
+     * the archetype content file names them.
+     *
+     * @param name the constant's name, such as SWORD_SLASH
+     * @return the action ID
+     */
+    public static int actionId(String name) {
+        for (int id = 0; id < ACTION_NAMES.length; id++) {
+            if (ACTION_NAMES[id].equals(name)) {
+                return id;
+            }
+        }
+        throw new IllegalArgumentException("Unknown combat action: " + name);
+    }
+
+    /**
+     * Records a combat event.
+     *
+     * @param attacker the character performing the action
+     * @param target   the character the action is aimed at, or the attacker itself for buffs
+     * @param action   the action ID
+     * @param amount   the damage dealt or the attribute gained
+     * @return the sequence number of the event
+     */
+    public long record(Character attacker, Character target, int action, int amount) {
+        long event = recorded++;
+        int slot = (int) event & mask;
+        attackers[slot] = attacker.getHandle();
+        targets[slot] = target.getHandle();
+        actions[slot] = action;
+        amounts[slot] = amount;
+        attackerNames[slot] = attacker.getName();
+        targetNames[slot] = target.getName();
+        return event;
+    }
+
+    /**
+     * Makes the amount of a {@link #DUEL_AUTO_RESOLVED} event, which holds both the turns the
+     * duel took and the player's chance to win it.
+     *
+     * @param turns          the turns the duel took
+     * @param winProbability the player's chance to win, between 0 and 1
+     * @return the amount to record
+     */
+    public static int autoResolved(int turns, double winProbability) {
+        return turns << 7 | (int) Math.round(100 * winProbability);
+    }
+
+    /**
+     * Gets the sequence number of the most recent event.
+     *
+     * @return the sequence number, or {@link #NO_EVENT} if nothing has been recorded
+     */
+    public long latest() {
+        return recorded - 1;
+    }
+
+    /**
+     * Gets the number of events recorded since the log was created.
+     *
+     * @return the event count, including overwritten events
+     */
+    public long getRecorded() {
+        return recorded;
+    }
+
+    /**
+     * Checks whether an event is still held in the buffer.
+     *
+     * @param event the sequence number of the event
+     * @return true if the event has been recorded and not yet overwritten
+     */
+    public boolean isAvailable(long event) {
+        return event >= 0 && event < recorded && recorded - event <= mask + 1;
+    }
+
+    /**
+     * Gets the entity handle of the character that performed an event.
+     *
+     * @param event the sequence number of the event
+     * @return the attacker's entity handle
+     */
+    public int getAttacker(long event) {
+        return attackers[slot(event)];
+    }
+
+    /**
+     * Gets the entity handle of the character an event was aimed at.
+     *
+     * @param event the sequence number of the event
+     * @return the target's entity handle
+     */
+    public int getTarget(long event) {
+        return targets[slot(event)];
+    }
+
+    /**
+     * Gets the action ID of an event.
+     *
+     * @param event the sequence number of the event
+     * @return the action ID
+     */
+    public int getAction(long event) {
+        return actions[slot(event)];
+    }
+
+    /**
+     * Gets the damage dealt or the attribute gained by an event.
+     *
+     * @param event the sequence number of the event
+     * @return the amount
+     */
+    public int getAmount(long event) {
+        return amounts[slot(event)];
+    }
+
+    /**
+     * Formats an event as the message shown to the player.
+     *
+     * @param event the sequence number of the event
+     * @return the description of the event
+     */
+    public String format(long event) {
+        int slot = slot(event);
+        String attacker = attackerNames[slot];
+        String target = targetNames[slot];
+        int amount = amounts[slot];
+        switch (actions[slot]) {
+            case SWORD_SLASH:
+                return attacker + " slashes " + target + " with a mighty sword for " + amount + " damage!";
+            case FIREBALL:
+                return attacker + " casts a fireball at " + target + " for " + amount + " magical damage!";
+            case BASIC_ATTACK:
+                return attacker + " performs a basic attack on " + target + " for " + amount + " damage!";
+            case MAGIC_ATTACK:
+                return attacker + " performs a magical attack on " + target + " for " + amount + " damage!";
+            case ENEMY_PHYSICAL_ATTACK:
+                return attacker + " uses a physical attack on " + target + " for " + amount + " damage!";
+            case ENEMY_MAGIC_ATTACK:
+                return attacker + " uses a magical attack on " + target + " for " + amount + " damage!";
+            case SHIELD_BLOCK:
+                return attacker + " uses Shield Block! Strength temporarily increased by " + amount + ".";
+            case MAGIC_SHIELD:
+                return attacker + " casts Magic Shield! Magic temporarily increased by " + amount + ".";
+            case DUEL_STARTED:
+                return "Duel started between " + attacker + " and " + target + "!";
+            case DUEL_AUTO_RESOLVED:
+                return "Duel with " + target + " auto-resolved in " + (amount >>> 7) + " turns ("
+                        + (amount & 0x7F) + "% chance to win).";
+            default:
+                return attacker + " acts on " + target + " (" + amount + ").";
+        }
+    }
+
+    /**
+     * Converts a sequence number to a buffer slot, rejecting events that are not held.
+     *
+     * @param event the sequence number of the event
+     * @return the slot index
+     */
+    private int slot(long event) {
+        if (!isAvailable(event)) {
+            throw new IllegalArgumentException("Combat event not available: " + event);
+        }
+        return (int) event & mask;
+    }
+}
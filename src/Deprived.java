@@ -1,42 +1,58 @@
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 /**
  * The Deprived class represents a character archetype with balanced and flexible attributes.
  */
 public class Deprived extends Character {
-    private Random random = new Random();
+    private final RandomGenerator random;
 
     /**
-     * Constructor for the Deprived class.
+     * Constructor for the Deprived class. Its choices of attack are not reproducible.
      *
      * @param name the name of the deprived character
      */
     public Deprived(String name) {
+        this(name, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Constructor for a Deprived whose choice of attack is drawn from the given generator,
+     * such as a {@link GameRandom} stream, so that a seeded game plays out the same way every time.
+     *
+     * @param name   the name of the deprived character
+     * @param random the source of the character's random choices
+     */
+    public Deprived(String name, RandomGenerator random) {
         super(name, "Deprived");
+        this.random = random;
     }
 
-    @Override
-    protected void initializeAttributes() {
-        this.health = 100;
-        this.strength = 10;
-        this.magic = 10;
-        this.movementRange = 4; // Deprived characters can move 4 blocks per turn
+    /**
+     * Constructor for a Deprived stored as a new entity in the given store. Its choices of attack
+     * are not reproducible.
+     *
+     * @param name  the name of the deprived character
+     * @param store the store that holds its attributes
+     */
+    public Deprived(String name, EntityStore store) {
+        this(name, store, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Constructor for a Deprived stored as a new entity in the given store.
+     *
+     * @param name   the name of the deprived character
+     * @param store  the store that holds its attributes
+     * @param random the source of the character's random choices
+     */
+    public Deprived(String name, EntityStore store, RandomGenerator random) {
+        super(name, "Deprived", store);
+        this.random = random;
     }
 
     @Override
-    public String attack(Character target) {
-        // Deprived can choose between a basic attack or a magic attack
-        boolean useMagic = random.nextBoolean();
-        int damage;
-        String attackType;
-        if (useMagic) {
-            damage = this.magic;
-            attackType = "magical attack";
-        } else {
-            damage = this.strength;
-            attackType = "basic attack";
-        }
-        target.health -= damage;
-        return this.name + " performs a " + attackType + " on " + target.getName() + " for " + damage + " damage!";
+    protected RandomGenerator getRandom() {
+        return random;
     }
 }
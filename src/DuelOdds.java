@@ -0,0 +1,287 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+/**
+ * The DuelOdds class works out the exact outcome of a duel in which the player always attacks,
+ * so that an encounter can be settled at once instead of turn by turn. Every attack in the
+ * game deals one of two amounts with equal chance, as given by
+ * {@link DuelRules#attackDamage(Character, int)}, and the two sides take turns, so the duel is a
+ * Markov chain over the two sides' health. The chain is followed forward one turn at a time
+ * with the probability of every pair of health values, collecting the probability of each way
+ * the duel can end: who won, both sides' final health, and after how many turns.
+ *
+ * <p>The result depends only on the sides' health, their two damage amounts and who strikes
+ * first, and is cached by those values across all maps, so repeated encounters with the same
+ * kind of enemy cost a lookup and a single random draw. A run of duels against the same kind of
+ * enemy finds the last odds used without even building a cache key, so it allocates nothing.</p>
+ */
+public final class DuelOdds {
+
+    private static final int CACHED_DUELS = 1024;
+    private static final int MAX_STATES = 1 << 22; // Larger duels are fought out instead
+
+    private static final Map<Key, DuelOdds> CACHE = new LinkedHashMap<>(CACHED_DUELS * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, DuelOdds> eldest) {
+            return size() > CACHED_DUELS;
+        }
+    };
+
+    // The odds most recently asked for, by who strikes first
+    private static volatile DuelOdds lastPlayerFirst;
+    private static volatile DuelOdds lastEnemyFirst;
+
+    /**
+     * The values a duel's outcome depends on.
+     */
+    private record Key(int playerHealth, int playerLow, int playerHigh,
+                       int enemyHealth, int enemyLow, int enemyHigh, boolean enemyFirst) {
+    }
+
+    /**
+     * A way a duel can end.
+     */
+    private record Ending(int playerHealth, int enemyHealth, int turns) {
+    }
+
+    private final Key key;
+    private final double playerWinProbability;
+    private final double expectedPlayerHealth;
+    private final double expectedEnemyHealth;
+    private final double expectedTurns;
+    private final double[] cumulative; // Running total of the endings' probabilities
+    private final int[] playerHealths;
+    private final int[] enemyHealths;
+    private final int[] turns;
+
+    private DuelOdds(Key key, Map<Ending, Double> endings) {
+        this.key = key;
+        int count = endings.size();
+        cumulative = new double[count];
+        playerHealths = new int[count];
+        enemyHealths = new int[count];
+        turns = new int[count];
+        double total = 0;
+        double wins = 0;
+        double playerHealth = 0;
+        double enemyHealth = 0;
+        double turnSum = 0;
+        int i = 0;
+        for (Map.Entry<Ending, Double> entry : endings.entrySet()) {
+            Ending ending = entry.getKey();
+            double probability = entry.getValue();
+            total += probability;
+            cumulative[i] = total;
+            playerHealths[i] = ending.playerHealth();
+            enemyHealths[i] = ending.enemyHealth();
+            turns[i] = ending.turns();
+            if (ending.enemyHealth() <= 0) {
+                wins += probability;
+            }
+            playerHealth += probability * Math.max(0, ending.playerHealth());
+            enemyHealth += probability * Math.max(0, ending.enemyHealth());
+            turnSum += probability * ending.turns();
+            i++;
+        }
+        playerWinProbability = wins / total;
+        expectedPlayerHealth = playerHealth / total;
+        expectedEnemyHealth = enemyHealth / total;
+        expectedTurns = turnSum / total;
+    }
+
+    /**
+     * Gets the odds of a duel between a player who always attacks and an enemy, as the two
+     * stand now.
+     *
+     * @param player     the player's character
+     * @param enemy      the enemy character
+     * @param enemyFirst true if the enemy attacks first
+     * @return the odds, or null if the duel cannot be settled this way because an attack does
+     * no damage or the sides' health is too large
+     */
+    public static DuelOdds of(Character player, Character enemy, boolean enemyFirst) {
+        int playerHealth = player.getHealth();
+        int playerHeads = DuelRules.attackDamage(player, 0);
+        int playerTails = DuelRules.attackDamage(player, 1);
+        int playerLow = Math.min(playerHeads, playerTails);
+        int playerHigh = Math.max(playerHeads, playerTails);
+        int enemyHealth = enemy.getHealth();
+        int enemyHeads = DuelRules.attackDamage(enemy, 0);
+        int enemyTails = DuelRules.attackDamage(enemy, 1);
+        int enemyLow = Math.min(enemyHeads, enemyTails);
+        int enemyHigh = Math.max(enemyHeads, enemyTails);
+        if (playerHealth <= 0 || enemyHealth <= 0 || playerLow <= 0 || enemyLow <= 0
+                || (long) playerHealth * enemyHealth > MAX_STATES) {
+            return null;
+        }
+        DuelOdds odds = enemyFirst ? lastEnemyFirst : lastPlayerFirst;
+        if (odds != null && odds.key.playerHealth() == playerHealth && odds.key.playerLow() == playerLow
+                && odds.key.playerHigh() == playerHigh && odds.key.enemyHealth() == enemyHealth
+                && odds.key.enemyLow() == enemyLow && odds.key.enemyHigh() == enemyHigh) {
+            return odds;
+        }
+        Key key = new Key(playerHealth, playerLow, playerHigh, enemyHealth, enemyLow, enemyHigh, enemyFirst);
+        synchronized (CACHE) {
+            odds = CACHE.get(key);
+        }
+        if (odds == null) {
+            // Computed outside the lock; two threads may both compute the same odds once
+            odds = new DuelOdds(key, solve(key));
+            synchronized (CACHE) {
+                CACHE.put(key, odds);
+            }
+        }
+        if (enemyFirst) {
+            lastEnemyFirst = odds;
+        } else {
+            lastPlayerFirst = odds;
+        }
+        return odds;
+    }
+
+    /**
+     * Follows the duel forward a turn at a time. The probabilities of the live states sit in a
+     * grid indexed by both sides' health; on a turn every state passes its probability to the
+     * states its attack leads to. The side being hit only loses health, so sweeping its health
+     * upwards never moves the same probability twice in one turn.
+     */
+    private static Map<Ending, Double> solve(Key key) {
+        int playerHealth = key.playerHealth();
+        int enemyHealth = key.enemyHealth();
+        double[] live = new double[(playerHealth + 1) * (enemyHealth + 1)];
+        int width = enemyHealth + 1;
+        live[playerHealth * width + enemyHealth] = 1;
+        Map<Ending, Double> endings = new HashMap<>();
+        // The highest health of each side that may still hold probability
+        int topPlayer = playerHealth;
+        int topEnemy = enemyHealth;
+        boolean playerTurn = !key.enemyFirst();
+        for (int turn = 1; topPlayer > 0 && topEnemy > 0; turn++) {
+            if (playerTurn) {
+                int[] damages = {key.playerLow(), key.playerHigh()};
+                for (int p = 1; p <= topPlayer; p++) {
+                    for (int e = 1; e <= topEnemy; e++) {
+                        double probability = live[p * width + e];
+                        if (probability == 0) {
+                            continue;
+                        }
+                        live[p * width + e] = 0;
+                        for (int damage : damages) {
+                            int left = e - damage;
+                            if (left <= 0) {
+                                endings.merge(new Ending(p, left, turn), probability / 2, Double::sum);
+                            } else {
+                                live[p * width + left] += probability / 2;
+                            }
+                        }
+                    }
+                }
+                topEnemy -= key.playerLow();
+            } else {
+                int[] damages = {key.enemyLow(), key.enemyHigh()};
+                for (int e = 1; e <= topEnemy; e++) {
+                    for (int p = 1; p <= topPlayer; p++) {
+                        double probability = live[p * width + e];
+                        if (probability == 0) {
+                            continue;
+                        }
+                        live[p * width + e] = 0;
+                        for (int damage : damages) {
+                            int left = p - damage;
+                            if (left <= 0) {
+                                endings.merge(new Ending(left, e, turn), probability / 2, Double::sum);
+                            } else {
+                                live[left * width + e] += probability / 2;
+                            }
+                        }
+                    }
+                }
+                topPlayer -= key.enemyLow();
+            }
+            playerTurn = !playerTurn;
+        }
+        return endings;
+    }
+
+    /**
+     * Draws one ending of the duel with its exact probability.
+     *
+     * @param random the source of the draw
+     * @return the index of the ending, for {@link #getPlayerHealth(int)} and the like
+     */
+    public int sample(RandomGenerator random) {
+        double draw = random.nextDouble() * cumulative[cumulative.length - 1];
+        int index = Arrays.binarySearch(cumulative, draw);
+        index = index >= 0 ? index + 1 : -index - 1;
+        return Math.min(index, cumulative.length - 1);
+    }
+
+    /**
+     * Gets the player's health at the end of a sampled duel.
+     *
+     * @param ending the index of the ending
+     * @return the health, zero or less if the player lost
+     */
+    public int getPlayerHealth(int ending) {
+        return playerHealths[ending];
+    }
+
+    /**
+     * Gets the enemy's health at the end of a sampled duel.
+     *
+     * @param ending the index of the ending
+     * @return the health, zero or less if the player won
+     */
+    public int getEnemyHealth(int ending) {
+        return enemyHealths[ending];
+    }
+
+    /**
+     * Gets the number of turns a sampled duel took.
+     *
+     * @param ending the index of the ending
+     * @return the turns
+     */
+    public int getTurns(int ending) {
+        return turns[ending];
+    }
+
+    /**
+     * Gets the probability that the player wins.
+     *
+     * @return the probability
+     */
+    public double getPlayerWinProbability() {
+        return playerWinProbability;
+    }
+
+    /**
+     * Gets the player's expected health after the duel, counting a defeat as zero.
+     *
+     * @return the expected health
+     */
+    public double getExpectedPlayerHealth() {
+        return expectedPlayerHealth;
+    }
+
+    /**
+     * Gets the enemy's expected health after the duel, counting a defeat as zero.
+     *
+     * @return the expected health
+     */
+    public double getExpectedEnemyHealth() {
+        return expectedEnemyHealth;
+    }
+
+    /**
+     * Gets the expected number of turns of the duel.
+     *
+     * @return the expected turns
+     */
+    public double getExpectedTurns() {
+        return expectedTurns;
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * The DuelRules class holds the combat rules shared by the interactive duels in {@link GameMap}
+ * and the headless {@link DuelSimulator}. It has no UI dependencies; what happens is recorded as
+ * events in a {@link CombatLog}. The actions on offer and what they do are those of the player's
+ * {@link Archetype}, looked up by archetype and action ID.
+ */
+public final class DuelRules {
+
+    private DuelRules() {
+    }
+
+    /**
+     * Provides attack options based on the player's archetype. The arrays are shared between
+     * turns and must not be modified.
+     *
+     * @param player the player's character
+     * @return an array of action options, indexed by action ID
+     */
+    public static String[] getPlayerOptions(Character player) {
+        return Archetype.get(player.getArchetypeId()).getOptions();
+    }
+
+    /**
+     * Executes the player's chosen action and applies its effects.
+     *
+     * @param player the player's character
+     * @param enemy  the enemy character
+     * @param action the ID of the chosen action, its index in {@link #getPlayerOptions(Character)}
+     * @param log    the log the action is recorded in
+     * @return the sequence number of the action's event in the log
+     */
+    public static long executePlayerAction(Character player, Enemy enemy, int action, CombatLog log) {
+        return Archetype.get(player.getArchetypeId()).getAction(action).perform(player, enemy, log);
+    }
+
+    /**
+     * Gets the damage a character's attack deals on one of its two outcomes of equal chance; an
+     * attack that always deals the same gives that amount for both.
+     *
+     * @param attacker the attacking character
+     * @param outcome  0 or 1
+     * @return the damage dealt on that outcome
+     */
+    public static int attackDamage(Character attacker, int outcome) {
+        return Archetype.get(attacker.getArchetypeId()).strikeDamage(attacker, outcome);
+    }
+
+    /**
+     * Ends a turn of a duel, ageing the status effects of both sides by one turn. A store shared
+     * by the two characters ages only once.
+     *
+     * @param player the player's character
+     * @param enemy  the enemy character
+     */
+    public static void endTurn(Character player, Character enemy) {
+        endTurns(player, enemy, 1);
+    }
+
+    /**
+     * Ends several turns of a duel at once, as when a duel is settled without playing it out.
+     *
+     * @param player the player's character
+     * @param enemy  the enemy character
+     * @param turns  the number of turns
+     */
+    public static void endTurns(Character player, Character enemy, int turns) {
+        player.getStore().getEffects().advance(turns);
+        if (enemy.getStore() != player.getStore()) {
+            enemy.getStore().getEffects().advance(turns);
+        }
+    }
+}
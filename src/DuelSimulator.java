@@ -0,0 +1,211 @@
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.random.RandomGenerator;
+
+/**
+ * The DuelSimulator class runs large numbers of headless duels between a player archetype and
+ * an {@link Enemy} in parallel on a fork-join pool. It uses the same {@link DuelRules} as the
+ * interactive duels in {@link GameMap}, with a {@link PlayerPolicy} standing in for the player.
+ *
+ * <p>Each batch of duels draws from its own {@link GameRandom} stream, chosen by the batch's
+ * place in the run rather than by the thread that runs it, so with a deterministic policy a
+ * seeded simulation gives the same results on any number of threads without sharing a
+ * generator between them.</p>
+ */
+public class DuelSimulator {
+
+    /**
+     * Default cap on the number of turns in a duel; longer duels are counted as draws.
+     */
+    public static final int DEFAULT_MAX_TURNS = 200;
+
+    /**
+     * Number of duels a single fork-join task runs before it stops splitting.
+     */
+    private static final long SPLIT_THRESHOLD = 16_384;
+
+    /**
+     * Number of recent events each task keeps; the simulator never formats them.
+     */
+    private static final int COMBAT_LOG_CAPACITY = 16;
+
+    private final PlayerPolicy policy;
+    private final int maxTurns;
+    private final ForkJoinPool pool;
+    private final GameRandom gameRandom;
+
+    /**
+     * Constructor for the DuelSimulator class, using the common fork-join pool.
+     *
+     * @param policy   the policy that chooses the player's actions
+     * @param maxTurns the turn cap after which a duel is declared a draw
+     */
+    public DuelSimulator(PlayerPolicy policy, int maxTurns) {
+        this(policy, maxTurns, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for the DuelSimulator class.
+     *
+     * @param policy   the policy that chooses the player's actions
+     * @param maxTurns the turn cap after which a duel is declared a draw
+     * @param pool     the pool the duels run on
+     */
+    public DuelSimulator(PlayerPolicy policy, int maxTurns, ForkJoinPool pool) {
+        this(policy, maxTurns, pool, GameRandom.fromEntropy());
+    }
+
+    /**
+     * Constructor for a DuelSimulator whose runs are reproducible.
+     *
+     * @param policy     the policy that chooses the player's actions
+     * @param maxTurns   the turn cap after which a duel is declared a draw
+     * @param pool       the pool the duels run on
+     * @param gameRandom the source of the duels' randomness
+     */
+    public DuelSimulator(PlayerPolicy policy, int maxTurns, ForkJoinPool pool, GameRandom gameRandom) {
+        if (maxTurns <= 0) {
+            throw new IllegalArgumentException("maxTurns must be positive: " + maxTurns);
+        }
+        this.policy = policy;
+        this.maxTurns = maxTurns;
+        this.pool = pool;
+        this.gameRandom = gameRandom;
+    }
+
+    /**
+     * Runs the given number of duels of a fresh player of the archetype against a fresh enemy.
+     * Who strikes first is decided by a coin flip, as in {@link GameMap}.
+     *
+     * @param archetype the player's archetype (Knight, Wizard or Deprived)
+     * @param duels     the number of duels to run
+     * @return the aggregated results
+     */
+    public DuelStats simulate(String archetype, long duels) {
+        // Fail fast on unknown archetypes
+        createCharacter(archetype, new EntityStore(1), gameRandom.stream(GameRandom.Stream.SIMULATION));
+        long start = System.nanoTime();
+        DuelStats stats = pool.invoke(new DuelTask(archetype, 0, duels));
+        stats.elapsedNanos = System.nanoTime() - start;
+        return stats;
+    }
+
+    /**
+     * Runs one duel to completion and records its outcome.
+     *
+     * @param player     the player's character
+     * @param enemy      the enemy character
+     * @param enemyFirst true if the enemy attacks first
+     * @param stats      the statistics to record the outcome in
+     * @param log        the log the duel's events are recorded in
+     */
+    void runDuel(Character player, Enemy enemy, boolean enemyFirst, DuelStats stats, CombatLog log) {
+        boolean playerTurn = !enemyFirst;
+        for (int turn = 1; turn <= maxTurns; turn++) {
+            if (playerTurn) {
+                String[] options = DuelRules.getPlayerOptions(player);
+                int choice = policy.chooseAction(player, enemy, options);
+                if (choice == PlayerPolicy.FORFEIT) {
+                    stats.record(DuelStats.FORFEIT, turn);
+                    return;
+                }
+                DuelRules.executePlayerAction(player, enemy, choice, log);
+                if (enemy.getHealth() <= 0) {
+                    stats.record(DuelStats.PLAYER_WIN, turn);
+                    return;
+                }
+            } else {
+                enemy.attack(player, log);
+                if (player.getHealth() <= 0) {
+                    stats.record(DuelStats.ENEMY_WIN, turn);
+                    return;
+                }
+            }
+            DuelRules.endTurn(player, enemy);
+            playerTurn = !playerTurn;
+        }
+        stats.record(DuelStats.DRAW, maxTurns);
+    }
+
+    /**
+     * Creates a fresh character of the given archetype.
+     *
+     * @param archetype the archetype name, case-insensitive
+     * @param store     the store to create the character in
+     * @param random    the source of the character's random choices
+     * @return the new character
+     */
+    private static Character createCharacter(String archetype, EntityStore store, RandomGenerator random) {
+        switch (archetype.toLowerCase(Locale.ROOT)) {
+            case "knight":
+                return new Knight("Knight", store);
+            case "wizard":
+                return new Wizard("Wizard", store);
+            case "deprived":
+                return new Deprived("Deprived", store, random);
+            default:
+                throw new IllegalArgumentException("Unknown archetype: " + archetype);
+        }
+    }
+
+    /**
+     * Fork-join task that splits a range of duels in halves until it is small enough to run.
+     */
+    private final class DuelTask extends RecursiveTask<DuelStats> {
+        private final String archetype;
+        private final long from;
+        private final long to;
+
+        DuelTask(String archetype, long from, long to) {
+            this.archetype = archetype;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected DuelStats compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                DuelStats stats = new DuelStats(maxTurns);
+                SplittableRandom random = gameRandom.stream(GameRandom.Stream.SIMULATION, from);
+                // Each duel reuses the two slots of a task-local store and a pooled enemy, and events overwrite a small log
+                EntityStore store = new EntityStore(2);
+                EnemyPool enemies = new EnemyPool(store, "Goblin", random);
+                CombatLog log = new CombatLog(COMBAT_LOG_CAPACITY);
+                for (long i = from; i < to; i++) {
+                    Character player = createCharacter(archetype, store, random);
+                    Enemy enemy = enemies.spawn();
+                    runDuel(player, enemy, random.nextBoolean(), stats, log);
+                    player.release();
+                    enemy.release();
+                    enemies.recycle(enemy);
+                }
+                return stats;
+            }
+            long mid = (from + to) >>> 1;
+            DuelTask left = new DuelTask(archetype, from, mid);
+            left.fork();
+            DuelStats right = new DuelTask(archetype, mid, to).compute();
+            return right.merge(left.join());
+        }
+    }
+
+    /**
+     * Runs a million duels for each player archetype and prints the results.
+     *
+     * @param args optional number of duels per archetype, and optional master seed
+     */
+    public static void main(String[] args) {
+        long duels = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000L;
+        GameRandom gameRandom = args.length > 1 ? new GameRandom(Long.parseLong(args[1])) : GameRandom.fromEntropy();
+        // Always attacking keeps a seeded run fully reproducible
+        PlayerPolicy policy = args.length > 1 ? PlayerPolicy.alwaysAttack() : PlayerPolicy.uniformRandom();
+        DuelSimulator simulator = new DuelSimulator(policy, DEFAULT_MAX_TURNS, ForkJoinPool.commonPool(), gameRandom);
+        System.out.println("Parallelism: " + simulator.pool.getParallelism());
+        for (String archetype : new String[]{"Knight", "Wizard", "Deprived"}) {
+            System.out.println(archetype + " vs Goblin");
+            System.out.println(simulator.simulate(archetype, duels));
+        }
+    }
+}
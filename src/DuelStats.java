@@ -0,0 +1,151 @@
+import java.util.Locale;
+
+/**
+ * The DuelStats class accumulates the outcomes of simulated duels: win counts, a histogram
+ * of duel lengths in turns, and the throughput of the run. Instances are not thread-safe;
+ * each simulation task fills its own and the results are merged.
+ */
+public class DuelStats {
+
+    public static final int PLAYER_WIN = 0;
+    public static final int ENEMY_WIN = 1;
+    public static final int FORFEIT = 2;
+    public static final int DRAW = 3;
+
+    private final long[] outcomes = new long[4];
+    private final long[] turnHistogram;
+    long elapsedNanos;
+
+    /**
+     * Constructor for the DuelStats class.
+     *
+     * @param maxTurns the longest duel that can be recorded
+     */
+    public DuelStats(int maxTurns) {
+        this.turnHistogram = new long[maxTurns + 1];
+    }
+
+    /**
+     * Records the outcome of a single duel.
+     *
+     * @param outcome one of {@link #PLAYER_WIN}, {@link #ENEMY_WIN}, {@link #FORFEIT} or {@link #DRAW}
+     * @param turns   the number of turns the duel lasted
+     */
+    public void record(int outcome, int turns) {
+        outcomes[outcome]++;
+        turnHistogram[turns]++;
+    }
+
+    /**
+     * Adds the counts of another instance into this one.
+     *
+     * @param other the statistics to merge in
+     * @return this instance
+     */
+    public DuelStats merge(DuelStats other) {
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] += other.outcomes[i];
+        }
+        for (int i = 0; i < turnHistogram.length; i++) {
+            turnHistogram[i] += other.turnHistogram[i];
+        }
+        return this;
+    }
+
+    /**
+     * Gets the number of duels recorded.
+     *
+     * @return the total number of duels
+     */
+    public long getDuels() {
+        long total = 0;
+        for (long count : outcomes) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of duels that ended with the given outcome.
+     *
+     * @param outcome the outcome constant
+     * @return the number of duels
+     */
+    public long getCount(int outcome) {
+        return outcomes[outcome];
+    }
+
+    /**
+     * Gets the fraction of duels the player won.
+     *
+     * @return the player's win rate between 0 and 1
+     */
+    public double getWinRate() {
+        long duels = getDuels();
+        return duels == 0 ? 0 : (double) outcomes[PLAYER_WIN] / duels;
+    }
+
+    /**
+     * Gets the average number of turns per duel.
+     *
+     * @return the mean duel length
+     */
+    public double getMeanTurns() {
+        long duels = getDuels();
+        if (duels == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int turns = 0; turns < turnHistogram.length; turns++) {
+            sum += turns * turnHistogram[turns];
+        }
+        return (double) sum / duels;
+    }
+
+    /**
+     * Gets the duel length below which the given fraction of duels ended.
+     *
+     * @param percentile the percentile between 0 and 100
+     * @return the number of turns at that percentile
+     */
+    public int getTurnPercentile(double percentile) {
+        long rank = (long) Math.ceil(getDuels() * percentile / 100.0);
+        long seen = 0;
+        for (int turns = 0; turns < turnHistogram.length; turns++) {
+            seen += turnHistogram[turns];
+            if (seen >= rank && seen > 0) {
+                return turns;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the number of duels that lasted exactly the given number of turns.
+     *
+     * @param turns the duel length
+     * @return the number of duels
+     */
+    public long getTurnCount(int turns) {
+        return turns < turnHistogram.length ? turnHistogram[turns] : 0;
+    }
+
+    /**
+     * Gets the throughput of the run that produced these statistics.
+     *
+     * @return duels simulated per second, or 0 if the run was not timed
+     */
+    public double getDuelsPerSecond() {
+        return elapsedNanos == 0 ? 0 : getDuels() * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "Duels: %d%nPlayer wins: %.2f%%  Enemy wins: %d  Forfeits: %d  Draws: %d%n" +
+                        "Turns: mean %.2f  p50 %d  p90 %d  p99 %d%nThroughput: %.0f duels/sec",
+                getDuels(), getWinRate() * 100, outcomes[ENEMY_WIN], outcomes[FORFEIT], outcomes[DRAW],
+                getMeanTurns(), getTurnPercentile(50), getTurnPercentile(90), getTurnPercentile(99),
+                getDuelsPerSecond());
+    }
+}
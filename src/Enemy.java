@@ -1,42 +1,71 @@
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 /**
  * The Enemy class represents an enemy character in the game.
  */
 public class Enemy extends Character {
-    private Random random = new Random();
+    private final RandomGenerator random;
 
     /**
-     * Constructor for the Enemy class.
+     * Constructor for the Enemy class. Its choices of attack are not reproducible.
      *
      * @param name the name of the enemy
      */
     public Enemy(String name) {
         super(name, "Enemy");
+        this.random = ThreadLocalRandom.current();
     }
 
-    @Override
-    protected void initializeAttributes() {
-        this.health = 100; // Example stats
-        this.strength = 10;
-        this.magic = 10;
-        this.movementRange = 2; // Enemies can move 2 blocks per turn
+    /**
+     * Constructor for an Enemy stored as a new entity in the given store. Its choices of attack
+     * are not reproducible.
+     *
+     * @param name  the name of the enemy
+     * @param store the store that holds its attributes
+     */
+    public Enemy(String name, EntityStore store) {
+        this(name, store, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Constructor for an Enemy stored as a new entity in the given store.
+     *
+     * @param name   the name of the enemy
+     * @param store  the store that holds its attributes
+     * @param random the source of the enemy's random choices
+     */
+    public Enemy(String name, EntityStore store, RandomGenerator random) {
+        super(name, "Enemy", store);
+        this.random = random;
+    }
+
+    /**
+     * Constructor for an Enemy that views an existing entity whose attributes are already initialized,
+     * such as an enemy NPC on the map.
+     *
+     * @param name   the name of the enemy
+     * @param store  the store that holds the entity
+     * @param handle the handle of the entity
+     * @param random the source of the enemy's random choices
+     */
+    Enemy(String name, EntityStore store, int handle, RandomGenerator random) {
+        super(name, store, handle);
+        this.random = random;
+    }
+
+    /**
+     * Points this enemy at another entity of the same store, for reuse by an {@link EnemyPool}.
+     *
+     * @param handle the handle of the entity
+     */
+    void rebind(int handle) {
+        this.handle = handle;
+        this.archetype = Archetype.get(store.getArchetype(handle));
     }
 
     @Override
-    public String attack(Character target) {
-        // Enemy randomly chooses between physical and magical attack
-        boolean useMagic = random.nextBoolean();
-        int damage;
-        String attackType;
-        if (useMagic) {
-            damage = this.magic;
-            attackType = "magical attack";
-        } else {
-            damage = this.strength;
-            attackType = "physical attack";
-        }
-        target.health -= damage;
-        return this.name + " uses a " + attackType + " on " + target.getName() + " for " + damage + " damage!";
+    protected RandomGenerator getRandom() {
+        return random;
     }
 }
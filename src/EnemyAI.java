@@ -0,0 +1,330 @@
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The EnemyAI class moves the enemy NPCs of a map, all at once, each time the player takes a
+ * step. An enemy walks up to its movement range in single steps, towards the player when the
+ * player is near and towards a random tile otherwise, and never enters a tile that is blocked,
+ * holds another NPC or the player, or is an end spot.
+ *
+ * <p>A turn has three phases. The enemies around the player are gathered and grouped into
+ * horizontal bands of the map. The bands are then planned in parallel on the fork-join pool:
+ * planning only reads the map, and each enemy reserves its destination in a
+ * {@link ReservationTable}, with the tile it starts from as its priority. Finally the enemies
+ * that won their destination move, one after another, since the {@link SpatialIndex} is not
+ * thread-safe. Random choices come from a seed drawn once per turn and the enemy's tile, so a
+ * turn has the same outcome however its planning is split over threads.</p>
+ */
+public class EnemyAI {
+
+    /**
+     * The MoveListener interface is told about every enemy that moves, for caches that depend
+     * on where the NPCs stand.
+     */
+    @FunctionalInterface
+    public interface MoveListener {
+        /**
+         * Called after an enemy has moved.
+         *
+         * @param fromX the x-coordinate it left
+         * @param fromY the y-coordinate it left
+         * @param toX   the x-coordinate it moved to
+         * @param toY   the y-coordinate it moved to
+         */
+        void enemyMoved(int fromX, int fromY, int toX, int toY);
+    }
+
+    private static final int CHASE_RADIUS = 8; // Enemies this close to the player walk towards it
+    private static final int REGION_SHIFT = 4; // Bands of 16 rows
+    private static final int PARALLEL_THRESHOLD = 2048; // Fewer enemies are planned on the caller's thread
+    private static final int OCCUPANCY_MARGIN = 4; // Tiles around the active area whose NPCs are mapped too
+    private static final int[] DX = {0, 0, -1, 1};
+    private static final int[] DY = {-1, 1, 0, 0};
+
+    private final SpatialIndex npcs;
+    private final EntityStore entities;
+    private final TileLayer blocked;
+    private final Point[] endSpots;
+    private final int enemyType;
+    private final int width;
+    private final int height;
+    private final ReservationTable reservations = new ReservationTable();
+    private MoveListener moveListener;
+
+    // The current turn's enemies, in gathering order and then sorted by band
+    private int count;
+    private int[] handles = new int[64];
+    private int[] xs = new int[64];
+    private int[] ys = new int[64];
+    private long[] destinations = new long[64];
+    private int[] order = new int[64];
+    private int[] bandStarts = new int[2];
+
+    // Tiles holding an NPC at the start of the turn, one bit per tile of the occupancy rectangle
+    private long[] occupied = new long[1];
+    private int occupiedMinX;
+    private int occupiedMinY;
+    private int occupiedWidth;
+    private int occupiedHeight;
+
+    // Read by the planning tasks; written only between turns
+    private int playerX;
+    private int playerY;
+    private long turnSeed;
+
+    /**
+     * Constructor for the EnemyAI class.
+     *
+     * @param npcs      the index of the map's NPCs
+     * @param entities  the store holding the NPCs' attributes and positions
+     * @param blocked   the tiles that cannot be entered
+     * @param endSpots  the tiles enemies keep off
+     * @param enemyType the type tag of enemy NPCs in the index
+     */
+    public EnemyAI(SpatialIndex npcs, EntityStore entities, TileLayer blocked, Point[] endSpots, int enemyType) {
+        this.npcs = npcs;
+        this.entities = entities;
+        this.blocked = blocked;
+        this.endSpots = endSpots;
+        this.enemyType = enemyType;
+        this.width = blocked.getWidth();
+        this.height = blocked.getHeight();
+    }
+
+    /**
+     * Sets the listener told about every enemy that moves.
+     *
+     * @param moveListener the listener, or null for none
+     */
+    public void setMoveListener(MoveListener moveListener) {
+        this.moveListener = moveListener;
+    }
+
+    /**
+     * Moves every enemy within a square around the player.
+     *
+     * @param playerX      the player's x-coordinate
+     * @param playerY      the player's y-coordinate
+     * @param activeRadius how far from the player, in tiles, enemies are moved
+     * @param seed         a fresh random seed for this turn
+     * @return the number of enemies that moved
+     */
+    public int takeTurn(int playerX, int playerY, int activeRadius, long seed) {
+        this.playerX = playerX;
+        this.playerY = playerY;
+        this.turnSeed = seed;
+        int minY = Math.max(0, playerY - activeRadius);
+        int maxY = Math.min(height - 1, playerY + activeRadius);
+        gather(Math.max(0, playerX - activeRadius), minY, Math.min(width - 1, playerX + activeRadius), maxY);
+        if (count == 0) {
+            return 0;
+        }
+        reservations.clear(count);
+        if (count < PARALLEL_THRESHOLD) {
+            for (int i = 0; i < count; i++) {
+                plan(i);
+            }
+        } else {
+            ForkJoinPool.commonPool().invoke(new Planner(0, sortByBand(minY, maxY)));
+        }
+        return apply();
+    }
+
+    /**
+     * Collects the enemies inside a rectangle, and maps every NPC in and around it in the
+     * occupancy bits so that planning needs no lookups in the spatial index.
+     */
+    private void gather(int minX, int minY, int maxX, int maxY) {
+        count = 0;
+        occupiedMinX = Math.max(0, minX - OCCUPANCY_MARGIN);
+        occupiedMinY = Math.max(0, minY - OCCUPANCY_MARGIN);
+        occupiedWidth = Math.min(width - 1, maxX + OCCUPANCY_MARGIN) - occupiedMinX + 1;
+        occupiedHeight = Math.min(height - 1, maxY + OCCUPANCY_MARGIN) - occupiedMinY + 1;
+        int words = (int) (((long) occupiedWidth * occupiedHeight + 63) >>> 6);
+        if (occupied.length < words) {
+            occupied = new long[words];
+        } else {
+            Arrays.fill(occupied, 0, words, 0L);
+        }
+        npcs.queryRect(occupiedMinX, occupiedMinY, occupiedMinX + occupiedWidth - 1,
+                occupiedMinY + occupiedHeight - 1, -1, npc -> {
+            int x = npcs.getX(npc);
+            int y = npcs.getY(npc);
+            int bit = (y - occupiedMinY) * occupiedWidth + x - occupiedMinX;
+            occupied[bit >>> 6] |= 1L << bit;
+            if (npcs.getType(npc) != enemyType || x < minX || x > maxX || y < minY || y > maxY) {
+                return;
+            }
+            if (count == handles.length) {
+                int capacity = count * 2;
+                handles = Arrays.copyOf(handles, capacity);
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+                destinations = Arrays.copyOf(destinations, capacity);
+                order = Arrays.copyOf(order, capacity);
+            }
+            handles[count] = npc;
+            xs[count] = x;
+            ys[count] = y;
+            count++;
+        });
+    }
+
+    /**
+     * Orders the gathered enemies by band with a counting sort.
+     *
+     * @return the number of bands
+     */
+    private int sortByBand(int minY, int maxY) {
+        int bands = ((maxY - minY) >> REGION_SHIFT) + 1;
+        if (bandStarts.length < bands + 1) {
+            bandStarts = new int[bands + 1];
+        }
+        Arrays.fill(bandStarts, 0, bands + 1, 0);
+        for (int i = 0; i < count; i++) {
+            bandStarts[((ys[i] - minY) >> REGION_SHIFT) + 1]++;
+        }
+        for (int band = 0; band < bands; band++) {
+            bandStarts[band + 1] += bandStarts[band];
+        }
+        int[] next = Arrays.copyOf(bandStarts, bands);
+        for (int i = 0; i < count; i++) {
+            order[next[(ys[i] - minY) >> REGION_SHIFT]++] = i;
+        }
+        return bands;
+    }
+
+    /**
+     * Plans the enemies of a range of bands, splitting the range over the fork-join pool while
+     * it holds many enemies.
+     */
+    private final class Planner extends RecursiveAction {
+        private final int fromBand;
+        private final int toBand;
+
+        Planner(int fromBand, int toBand) {
+            this.fromBand = fromBand;
+            this.toBand = toBand;
+        }
+
+        @Override
+        protected void compute() {
+            int enemies = bandStarts[toBand] - bandStarts[fromBand];
+            if (toBand - fromBand > 1 && enemies > PARALLEL_THRESHOLD / 4) {
+                int middle = (fromBand + toBand) >>> 1;
+                invokeAll(new Planner(fromBand, middle), new Planner(middle, toBand));
+                return;
+            }
+            for (int i = bandStarts[fromBand]; i < bandStarts[toBand]; i++) {
+                plan(order[i]);
+            }
+        }
+    }
+
+    /**
+     * Plans one enemy's move and reserves its destination.
+     *
+     * @param i the enemy's index in this turn
+     */
+    private void plan(int i) {
+        int x = xs[i];
+        int y = ys[i];
+        int range = entities.getMovementRange(npcs.getValue(handles[i]));
+        long origin = tile(x, y);
+        int goalX;
+        int goalY;
+        if (Math.abs(playerX - x) <= CHASE_RADIUS && Math.abs(playerY - y) <= CHASE_RADIUS) {
+            goalX = playerX;
+            goalY = playerY;
+        } else {
+            // Wander towards a random tile within reach
+            long random = GameRandom.hash(turnSeed, origin);
+            goalX = x + (int) Long.remainderUnsigned(random, 2 * range + 1) - range;
+            goalY = y + (int) Long.remainderUnsigned(random >>> 32, 2 * range + 1) - range;
+        }
+        int cx = x;
+        int cy = y;
+        for (int step = 0; step < range; step++) {
+            int best = -1;
+            int bestDistance = Math.abs(goalX - cx) + Math.abs(goalY - cy);
+            for (int d = 0; d < DX.length; d++) {
+                int nx = cx + DX[d];
+                int ny = cy + DY[d];
+                int distance = Math.abs(goalX - nx) + Math.abs(goalY - ny);
+                if (distance < bestDistance && isOpen(nx, ny)) {
+                    best = d;
+                    bestDistance = distance;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            cx += DX[best];
+            cy += DY[best];
+        }
+        if (cx == x && cy == y) {
+            destinations[i] = -1;
+        } else {
+            destinations[i] = tile(cx, cy);
+            reservations.reserve(destinations[i], origin);
+        }
+    }
+
+    /**
+     * Checks whether an enemy may step onto a tile, as the map stood at the start of the turn.
+     */
+    private boolean isOpen(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height || blocked.get(x, y)
+                || (x == playerX && y == playerY) || isOccupied(x, y)) {
+            return false;
+        }
+        for (Point endSpot : endSpots) {
+            if (endSpot.x == x && endSpot.y == y) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a tile held an NPC at the start of the turn.
+     */
+    private boolean isOccupied(int x, int y) {
+        int dx = x - occupiedMinX;
+        int dy = y - occupiedMinY;
+        if (dx < 0 || dy < 0 || dx >= occupiedWidth || dy >= occupiedHeight) {
+            return npcs.find(x, y, -1) >= 0; // Only enemies with a very long range get this far
+        }
+        int bit = dy * occupiedWidth + dx;
+        return (occupied[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Moves the enemies that won their destinations.
+     *
+     * @return the number of enemies moved
+     */
+    private int apply() {
+        int moved = 0;
+        for (int i = 0; i < count; i++) {
+            long destination = destinations[i];
+            if (destination >= 0 && reservations.owner(destination) == tile(xs[i], ys[i])) {
+                int x = (int) (destination % width);
+                int y = (int) (destination / width);
+                npcs.move(handles[i], x, y);
+                entities.setPosition(npcs.getValue(handles[i]), x, y);
+                if (moveListener != null) {
+                    moveListener.enemyMoved(xs[i], ys[i], x, y);
+                }
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    private long tile(int x, int y) {
+        return (long) y * width + x;
+    }
+}
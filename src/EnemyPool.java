@@ -0,0 +1,94 @@
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * The EnemyPool class hands out {@link Enemy} objects for the enemies of one
+ * {@link EntityStore} and takes them back for reuse, so that duels allocate no enemies once the
+ * pool is warm. An Enemy is only a view over an entity, so a recycled one is simply pointed at
+ * the next entity. New enemy entities get the starting attributes of the enemy
+ * {@link Archetype} without constructing an Enemy.
+ *
+ * <p>Every enemy of a pool draws its choices from the pool's generator. A map reseeds the
+ * generator for each duel, and a simulation passes the stream of its batch. Like the store,
+ * the pool is not thread-safe.</p>
+ */
+public final class EnemyPool {
+
+    private final EntityStore store;
+    private final String name;
+    private final RandomGenerator random;
+    private Enemy[] free = new Enemy[4];
+    private int freeCount;
+    private int created;
+
+    /**
+     * Constructor for the EnemyPool class.
+     *
+     * @param store  the store that holds the enemies' attributes
+     * @param name   the name of the enemies
+     * @param random the source of the enemies' random choices
+     */
+    public EnemyPool(EntityStore store, String name, RandomGenerator random) {
+        this.store = store;
+        this.name = name;
+        this.random = random;
+    }
+
+    /**
+     * Creates an enemy entity with the attributes of a new enemy, without an Enemy object.
+     *
+     * @return the handle of the entity
+     */
+    public int createEntity() {
+        return store.spawn(EntityStore.ENEMY);
+    }
+
+    /**
+     * Gets an enemy that views an existing entity, such as an enemy NPC's.
+     *
+     * @param entity the handle of the entity
+     * @return the enemy, recycled if the pool has one
+     */
+    public Enemy acquire(int entity) {
+        if (freeCount == 0) {
+            created++;
+            return new Enemy(name, store, entity, random);
+        }
+        Enemy enemy = free[--freeCount];
+        free[freeCount] = null;
+        enemy.rebind(entity);
+        return enemy;
+    }
+
+    /**
+     * Gets an enemy on a new entity with the attributes of a new enemy. The caller releases the
+     * entity with {@link Character#release()} when the enemy is done with.
+     *
+     * @return the enemy
+     */
+    public Enemy spawn() {
+        return acquire(createEntity());
+    }
+
+    /**
+     * Takes an enemy back for reuse. Its entity is left alone, and the enemy must not be used
+     * by the caller afterwards.
+     *
+     * @param enemy an enemy handed out by this pool
+     */
+    public void recycle(Enemy enemy) {
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = enemy;
+    }
+
+    /**
+     * Gets the number of Enemy objects the pool has had to create.
+     *
+     * @return the count
+     */
+    public int getCreated() {
+        return created;
+    }
+}
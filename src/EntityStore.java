@@ -0,0 +1,373 @@
+import java.util.Arrays;
+
+/**
+ * The EntityStore class keeps the attributes of characters and NPCs in parallel primitive
+ * arrays, one slot per entity, instead of one heap object per entity. Entities are referred to
+ * by handles that stay valid until the entity is released; a handle carries a generation
+ * counter so a handle to a released slot is detected rather than silently reading its new
+ * occupant. {@link Character} objects are thin views over an entity in a store.
+ *
+ * <p>Stores are not thread-safe. Parallel simulations give each task its own store.</p>
+ */
+public class EntityStore {
+
+    // IDs of the built-in archetypes, the first entries of the archetype content file
+    public static final int KNIGHT = 0;
+    public static final int WIZARD = 1;
+    public static final int DEPRIVED = 2;
+    public static final int ENEMY = 3;
+    public static final int FRIENDLY_NPC = 4;
+
+    private static final int INDEX_BITS = 24;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int GENERATION_MASK = 0x7F; // Keeps handles positive
+    private static final int FREE = -1;
+
+    private int[] archetypes;
+    private int[] generations;
+    private int[] health;
+    private int[] maxHealth;
+    private int[] strength;
+    private int[] magic;
+    private int[] movementRange;
+    private int[] xs;
+    private int[] ys;
+    private int highWater;
+    private int size;
+    private int freeList = FREE; // Released slots, linked through the health column
+    private StatusEffects effects; // Created on the first use
+
+    /**
+     * Constructor for the EntityStore class.
+     *
+     * @param expectedEntities the number of entities to size the store for
+     */
+    public EntityStore(int expectedEntities) {
+        int capacity = Math.max(1, expectedEntities);
+        archetypes = new int[capacity];
+        generations = new int[capacity];
+        health = new int[capacity];
+        maxHealth = new int[capacity];
+        strength = new int[capacity];
+        magic = new int[capacity];
+        movementRange = new int[capacity];
+        xs = new int[capacity];
+        ys = new int[capacity];
+    }
+
+    /**
+     * Gets the ID of an archetype.
+     *
+     * @param name the archetype name, such as Knight or Enemy
+     * @return the archetype ID
+     */
+    public static int archetypeId(String name) {
+        return Archetype.named(name).getId();
+    }
+
+    /**
+     * Gets the name of an archetype.
+     *
+     * @param id the archetype ID
+     * @return the archetype name
+     */
+    public static String archetypeName(int id) {
+        return Archetype.get(id).getName();
+    }
+
+    /**
+     * Creates an entity with the starting attributes of its archetype, full health and a
+     * position of 0, 0.
+     *
+     * @param archetype the archetype ID
+     * @return the handle of the new entity
+     */
+    public int spawn(int archetype) {
+        Archetype template = Archetype.get(archetype);
+        int handle = create(archetype);
+        int index = index(handle);
+        health[index] = template.getHealth();
+        maxHealth[index] = template.getHealth();
+        strength[index] = template.getStrength();
+        magic[index] = template.getMagic();
+        movementRange[index] = template.getMovementRange();
+        return handle;
+    }
+
+    /**
+     * Creates an entity with all attributes zero.
+     *
+     * @param archetype the archetype ID
+     * @return the handle of the new entity
+     */
+    public int create(int archetype) {
+        int index;
+        if (freeList != FREE) {
+            index = freeList;
+            freeList = health[index];
+        } else {
+            if (highWater == archetypes.length) {
+                grow();
+            }
+            index = highWater++;
+        }
+        archetypes[index] = archetype;
+        health[index] = 0;
+        maxHealth[index] = 0;
+        strength[index] = 0;
+        magic[index] = 0;
+        movementRange[index] = 0;
+        xs[index] = 0;
+        ys[index] = 0;
+        size++;
+        return (generations[index] << INDEX_BITS) | index;
+    }
+
+    /**
+     * Releases an entity. Its handle becomes invalid and its slot is reused by later entities.
+     *
+     * @param handle the handle of the entity
+     */
+    public void release(int handle) {
+        int index = index(handle);
+        archetypes[index] = FREE;
+        generations[index] = (generations[index] + 1) & GENERATION_MASK;
+        health[index] = freeList;
+        freeList = index;
+        size--;
+    }
+
+    /**
+     * Checks whether a handle still refers to a live entity.
+     *
+     * @param handle the handle to check
+     * @return true if the entity has not been released
+     */
+    public boolean isAlive(int handle) {
+        int index = handle & INDEX_MASK;
+        return index < highWater && archetypes[index] != FREE && generations[index] == handle >>> INDEX_BITS;
+    }
+
+    /**
+     * Gets the number of live entities.
+     *
+     * @return the entity count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the archetype ID of an entity.
+     *
+     * @param handle the handle of the entity
+     * @return the archetype ID
+     */
+    public int getArchetype(int handle) {
+        return archetypes[index(handle)];
+    }
+
+    /**
+     * Gets the current health of an entity.
+     *
+     * @param handle the handle of the entity
+     * @return the current health
+     */
+    public int getHealth(int handle) {
+        return health[index(handle)];
+    }
+
+    /**
+     * Sets the current health of an entity.
+     *
+     * @param handle the handle of the entity
+     * @param value  the new current health
+     */
+    public void setHealth(int handle, int value) {
+        health[index(handle)] = value;
+    }
+
+    /**
+     * Gets the maximum health of an entity.
+     *
+     * @param handle the handle of the entity
+     * @return the maximum health
+     */
+    public int getMaxHealth(int handle) {
+        return maxHealth[index(handle)];
+    }
+
+    /**
+     * Sets the maximum health of an entity.
+     *
+     * @param handle the handle of the entity
+     * @param value  the new maximum health
+     */
+    public void setMaxHealth(int handle, int value) {
+        maxHealth[index(handle)] = value;
+    }
+
+    /**
+     * Gets the strength of an entity.
+     *
+     * @param handle the handle of the entity
+     * @return the strength
+     */
+    public int getStrength(int handle) {
+        return strength[index(handle)];
+    }
+
+    /**
+     * Sets the strength of an entity.
+     *
+     * @param handle the handle of the entity
+     * @param value  the new strength
+     */
+    public void setStrength(int handle, int value) {
+        strength[index(handle)] = value;
+    }
+
+    /**
+     * Gets the magic of an entity.
+     *
+     * @param handle the handle of the entity
+     * @return the magic
+     */
+    public int getMagic(int handle) {
+        return magic[index(handle)];
+    }
+
+    /**
+     * Gets the strength or the magic of an entity, as an attack that deals either reads it.
+     *
+     * @param handle    the handle of the entity
+     * @param attribute {@link StatusEffects#STRENGTH} or {@link StatusEffects#MAGIC}
+     * @return the attribute's value
+     */
+    public int getStrike(int handle, int attribute) {
+        int index = index(handle);
+        return attribute == StatusEffects.MAGIC ? magic[index] : strength[index];
+    }
+
+    /**
+     * Sets the magic of an entity.
+     *
+     * @param handle the handle of the entity
+     * @param value  the new magic
+     */
+    public void setMagic(int handle, int value) {
+        magic[index(handle)] = value;
+    }
+
+    /**
+     * Gets the movement range of an entity.
+     *
+     * @param handle the handle of the entity
+     * @return the movement range
+     */
+    public int getMovementRange(int handle) {
+        return movementRange[index(handle)];
+    }
+
+    /**
+     * Sets the movement range of an entity.
+     *
+     * @param handle the handle of the entity
+     * @param value  the new movement range
+     */
+    public void setMovementRange(int handle, int value) {
+        movementRange[index(handle)] = value;
+    }
+
+    /**
+     * Gets the x-coordinate of an entity.
+     *
+     * @param handle the handle of the entity
+     * @return the x-coordinate
+     */
+    public int getX(int handle) {
+        return xs[index(handle)];
+    }
+
+    /**
+     * Gets the y-coordinate of an entity.
+     *
+     * @param handle the handle of the entity
+     * @return the y-coordinate
+     */
+    public int getY(int handle) {
+        return ys[index(handle)];
+    }
+
+    /**
+     * Moves an entity to a tile.
+     *
+     * @param handle the handle of the entity
+     * @param x      the x-coordinate
+     * @param y      the y-coordinate
+     */
+    public void setPosition(int handle, int x, int y) {
+        int index = index(handle);
+        xs[index] = x;
+        ys[index] = y;
+    }
+
+    /**
+     * Gets the temporary effects on the store's entities, whose amounts the stored attributes
+     * include while they last.
+     *
+     * @return the status effects
+     */
+    public StatusEffects getEffects() {
+        if (effects == null) {
+            effects = new StatusEffects(this);
+        }
+        return effects;
+    }
+
+    /**
+     * Restores health to every live entity, up to its maximum health, in one linear sweep.
+     *
+     * @param amount the health to restore
+     */
+    public void regenerateHealth(int amount) {
+        int[] archetypes = this.archetypes;
+        int[] health = this.health;
+        int[] maxHealth = this.maxHealth;
+        for (int i = 0; i < highWater; i++) {
+            if (archetypes[i] != FREE && health[i] > 0) {
+                health[i] = Math.min(maxHealth[i], health[i] + amount);
+            }
+        }
+    }
+
+    /**
+     * Converts a handle to a slot index, rejecting handles of released entities.
+     *
+     * @param handle the handle
+     * @return the slot index
+     */
+    private int index(int handle) {
+        int index = handle & INDEX_MASK;
+        if (index >= highWater || archetypes[index] == FREE || generations[index] != handle >>> INDEX_BITS) {
+            throw new IllegalStateException("Stale entity handle: " + handle);
+        }
+        return index;
+    }
+
+    private void grow() {
+        int capacity = archetypes.length * 2;
+        if (capacity > INDEX_MASK + 1) {
+            throw new IllegalStateException("Entity store is full");
+        }
+        archetypes = Arrays.copyOf(archetypes, capacity);
+        generations = Arrays.copyOf(generations, capacity);
+        health = Arrays.copyOf(health, capacity);
+        maxHealth = Arrays.copyOf(maxHealth, capacity);
+        strength = Arrays.copyOf(strength, capacity);
+        magic = Arrays.copyOf(magic, capacity);
+        movementRange = Arrays.copyOf(movementRange, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+    }
+}
@@ -0,0 +1,250 @@
+import java.util.Arrays;
+
+/**
+ * The FieldOfView class computes which tiles the player can see, using symmetric shadowcasting
+ * over the blocked tiles of a {@link TileLayer}, and remembers every tile ever seen. Each of the
+ * four quadrants around the player is cast separately and sets its own bit on the tiles it
+ * sees, so when a tile near the player is blocked or opened only the one or two quadrants that
+ * contain it are cast again. The work is bounded by the radius, not by the size of the map.
+ *
+ * <p>The casting is symmetric: the player sees a floor tile exactly when that tile would see
+ * the player. Blocked tiles are seen but hide what is behind them, and tiles outside the map
+ * count as blocked.</p>
+ */
+public class FieldOfView {
+
+    private static final int NORTH = 0;
+    private static final int SOUTH = 1;
+    private static final int EAST = 2;
+    private static final int WEST = 3;
+    private static final byte ORIGIN = 1 << 4; // The player's own tile, seen by no quadrant
+
+    private final TileLayer blocked;
+    private final TileLayer explored;
+    private final int radius;
+    private final int size; // Width and height of the window around the origin
+    private final byte[] seenBy; // Bit per quadrant that sees the tile, for the window around the origin
+    private int originX = -1;
+    private int originY = -1;
+
+    /**
+     * Constructor for the FieldOfView class.
+     *
+     * @param blocked the tiles that block sight
+     * @param radius  how far the player can see, in tiles
+     */
+    public FieldOfView(TileLayer blocked, int radius) {
+        this.blocked = blocked;
+        this.explored = new TileLayer(blocked.getWidth(), blocked.getHeight());
+        this.radius = radius;
+        this.size = 2 * radius + 1;
+        this.seenBy = new byte[size * size];
+    }
+
+    /**
+     * Moves the viewer and casts every quadrant from the new position. Does nothing if the
+     * viewer has not moved.
+     *
+     * @param x the viewer's x-coordinate
+     * @param y the viewer's y-coordinate
+     * @return true if the field of view was recomputed
+     */
+    public boolean update(int x, int y) {
+        if (x == originX && y == originY) {
+            return false;
+        }
+        originX = x;
+        originY = y;
+        Arrays.fill(seenBy, (byte) 0);
+        seenBy[index(0, 0)] = ORIGIN;
+        explored.set(x, y, true);
+        for (int quadrant = NORTH; quadrant <= WEST; quadrant++) {
+            scan(quadrant, 1, -1, 1, 1, 1);
+        }
+        return true;
+    }
+
+    /**
+     * Casts again the quadrants that contain a tile whose blocking changed.
+     *
+     * @param x the tile's x-coordinate
+     * @param y the tile's y-coordinate
+     * @return true if the tile was within sight range and the field of view was recomputed
+     */
+    public boolean tileChanged(int x, int y) {
+        int dx = x - originX;
+        int dy = y - originY;
+        if (originX < 0 || Math.abs(dx) > radius || Math.abs(dy) > radius || (dx == 0 && dy == 0)) {
+            return false;
+        }
+        // Tiles on a diagonal belong to two quadrants
+        if (dy < 0 && Math.abs(dx) <= -dy) {
+            recast(NORTH);
+        }
+        if (dy > 0 && Math.abs(dx) <= dy) {
+            recast(SOUTH);
+        }
+        if (dx > 0 && Math.abs(dy) <= dx) {
+            recast(EAST);
+        }
+        if (dx < 0 && Math.abs(dy) <= -dx) {
+            recast(WEST);
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a tile is in sight.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @return true if the viewer sees the tile
+     */
+    public boolean isVisible(int x, int y) {
+        int dx = x - originX;
+        int dy = y - originY;
+        return originX >= 0 && Math.abs(dx) <= radius && Math.abs(dy) <= radius && seenBy[index(dx, dy)] != 0;
+    }
+
+    /**
+     * Copies which tiles are in sight, for the square of tiles within the radius of the viewer,
+     * row by row from its top-left tile. A tile is in sight if its byte is not zero.
+     *
+     * @param visible the bytes to copy to, at least {@code (2 * radius + 1)^2} of them
+     */
+    public void copyVisible(byte[] visible) {
+        System.arraycopy(seenBy, 0, visible, 0, seenBy.length);
+    }
+
+    /**
+     * Checks whether a tile has ever been in sight.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @return true if the tile has been explored
+     */
+    public boolean isExplored(int x, int y) {
+        return explored.get(x, y);
+    }
+
+    /**
+     * Checks whether any tile of a rectangle has ever been in sight, a word of 64 tiles at a time.
+     *
+     * @param minX the left column
+     * @param minY the top row
+     * @param maxX the right column
+     * @param maxY the bottom row
+     * @return true if at least one tile has been explored
+     */
+    public boolean anyExplored(int minX, int minY, int maxX, int maxY) {
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x = (x | (TileLayer.CHUNK_SIZE - 1)) + 1) {
+                int last = Math.min(maxX, x | (TileLayer.CHUNK_SIZE - 1));
+                long mask = (-1L >>> (TileLayer.CHUNK_SIZE - 1 - (last - x))) << x;
+                if ((explored.word(x, y) & mask) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the tiles that have ever been in sight.
+     *
+     * @return the explored tiles
+     */
+    public TileLayer getExplored() {
+        return explored;
+    }
+
+    /**
+     * Gets how far the viewer can see.
+     *
+     * @return the radius in tiles
+     */
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Clears one quadrant's bits and casts it again.
+     */
+    private void recast(int quadrant) {
+        byte keep = (byte) ~(1 << quadrant);
+        for (int i = 0; i < seenBy.length; i++) {
+            seenBy[i] &= keep;
+        }
+        scan(quadrant, 1, -1, 1, 1, 1);
+    }
+
+    /**
+     * Scans one row of a quadrant between two slopes and recurses into the rows behind it. A
+     * row is {@code depth} tiles away from the viewer, and its columns run across it; slopes
+     * are the fractions column / depth of the lines that bound the visible cone.
+     *
+     * @param quadrant the quadrant
+     * @param depth    the row's distance from the viewer
+     * @param startNum the numerator of the start slope
+     * @param startDen the denominator of the start slope, always positive
+     * @param endNum   the numerator of the end slope
+     * @param endDen   the denominator of the end slope, always positive
+     */
+    private void scan(int quadrant, int depth, int startNum, int startDen, int endNum, int endDen) {
+        if (depth > radius) {
+            return;
+        }
+        // Columns whose centres are inside the cone, rounding ties towards the cone
+        int minCol = Math.floorDiv(2 * depth * startNum + startDen, 2 * startDen);
+        int maxCol = -Math.floorDiv(-(2 * depth * endNum - endDen), 2 * endDen);
+        int limit = radius * radius + radius; // Rounds the edge of the sight circle
+        int previous = -1; // -1 before the first tile, 0 for floor, 1 for wall
+        for (int col = minCol; col <= maxCol; col++) {
+            int dx = dx(quadrant, depth, col);
+            int dy = dy(quadrant, depth, col);
+            int x = originX + dx;
+            int y = originY + dy;
+            boolean inRange = x >= 0 && y >= 0 && x < blocked.getWidth() && y < blocked.getHeight()
+                    && col * col + depth * depth <= limit;
+            boolean wall = !inRange || blocked.get(x, y);
+            boolean symmetric = col * startDen >= depth * startNum && col * endDen <= depth * endNum;
+            if (inRange && (wall || symmetric)) {
+                seenBy[index(dx, dy)] |= (byte) (1 << quadrant);
+                explored.set(x, y, true);
+            }
+            if (previous == 1 && !wall) {
+                // Leaving a wall: the cone starts again at this tile's near edge
+                startNum = 2 * col - 1;
+                startDen = 2 * depth;
+            }
+            if (previous == 0 && wall) {
+                // Entering a wall: the part of the cone before it continues on its own
+                scan(quadrant, depth + 1, startNum, startDen, 2 * col - 1, 2 * depth);
+            }
+            previous = wall ? 1 : 0;
+        }
+        if (previous == 0) {
+            scan(quadrant, depth + 1, startNum, startDen, endNum, endDen);
+        }
+    }
+
+    private static int dx(int quadrant, int depth, int col) {
+        return switch (quadrant) {
+            case NORTH, SOUTH -> col;
+            case EAST -> depth;
+            default -> -depth;
+        };
+    }
+
+    private static int dy(int quadrant, int depth, int col) {
+        return switch (quadrant) {
+            case NORTH -> -depth;
+            case SOUTH -> depth;
+            default -> col;
+        };
+    }
+
+    private int index(int dx, int dy) {
+        return (dy + radius) * size + dx + radius;
+    }
+}
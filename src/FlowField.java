@@ -0,0 +1,290 @@
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * The FlowField class is a distance map toward one target tile: for every tile it stores the
+ * number of 4-directional steps to the target, so any number of agents can look up their next
+ * step in O(1). When a tile is blocked or opened, only the distances that depend on it are
+ * recomputed instead of the whole field.
+ */
+public class FlowField {
+
+    /**
+     * The distance of tiles that cannot reach the target.
+     */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private static final int[] DX = {0, 0, -1, 1};
+    private static final int[] DY = {-1, 1, 0, 0};
+    private static final String[] MOVES = {"W", "S", "A", "D"};
+
+    private final TileLayer blocked;
+    private final int width;
+    private final int height;
+    private final int targetX;
+    private final int targetY;
+    private final int[] distance;
+
+    /**
+     * Constructor for the FlowField class. Builds the full field with a breadth-first search.
+     *
+     * @param blocked the tiles that cannot be entered
+     * @param targetX the x-coordinate of the target
+     * @param targetY the y-coordinate of the target
+     */
+    public FlowField(TileLayer blocked, int targetX, int targetY) {
+        this.blocked = blocked;
+        this.width = blocked.getWidth();
+        this.height = blocked.getHeight();
+        if ((long) width * height > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Map too large for a flow field: " + width + "x" + height);
+        }
+        this.targetX = targetX;
+        this.targetY = targetY;
+        this.distance = new int[width * height];
+        Arrays.fill(distance, UNREACHABLE);
+
+        int[] queue = new int[width * height];
+        int head = 0;
+        int tail = 0;
+        int target = targetY * width + targetX;
+        distance[target] = 0;
+        queue[tail++] = target;
+        while (head < tail) {
+            int tile = queue[head++];
+            int x = tile % width;
+            int y = tile / width;
+            int next = distance[tile] + 1;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + DX[d];
+                int ny = y + DY[d];
+                if (isOpen(nx, ny) && distance[ny * width + nx] == UNREACHABLE) {
+                    distance[ny * width + nx] = next;
+                    queue[tail++] = ny * width + nx;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the x-coordinate of the target.
+     *
+     * @return the target's x-coordinate
+     */
+    public int getTargetX() {
+        return targetX;
+    }
+
+    /**
+     * Gets the y-coordinate of the target.
+     *
+     * @return the target's y-coordinate
+     */
+    public int getTargetY() {
+        return targetY;
+    }
+
+    /**
+     * Gets the number of steps from a tile to the target.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @return the distance, or {@link #UNREACHABLE}
+     */
+    public int getDistance(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return UNREACHABLE;
+        }
+        return distance[y * width + x];
+    }
+
+    /**
+     * Gets the move that brings an agent on the given tile one step closer to the target.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @return the move (W, A, S or D), or null if the tile is the target or cannot reach it
+     */
+    public String nextMove(int x, int y) {
+        int here = getDistance(x, y);
+        if (here == 0 || here == UNREACHABLE) {
+            return null;
+        }
+        for (int d = 0; d < 4; d++) {
+            if (getDistance(x + DX[d], y + DY[d]) == here - 1) {
+                return MOVES[d];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Updates the field after a tile was blocked or opened in the tile layer.
+     *
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     */
+    public void tileChanged(int x, int y) {
+        if (x == targetX && y == targetY) {
+            return; // The target keeps distance 0 even if blocked
+        }
+        if (blocked.get(x, y)) {
+            tileBlocked(x, y);
+        } else {
+            tileOpened(x, y);
+        }
+    }
+
+    /**
+     * Invalidates every distance that relied on a newly blocked tile, then repairs them
+     * from the surrounding valid distances.
+     */
+    private void tileBlocked(int x, int y) {
+        int tile = y * width + x;
+        if (distance[tile] == UNREACHABLE) {
+            return;
+        }
+        distance[tile] = UNREACHABLE;
+
+        // Invalidation: a tile stays valid while some neighbour is one step closer to the target
+        IntQueue pending = new IntQueue();
+        IntQueue invalidated = new IntQueue();
+        pushNeighbours(pending, x, y);
+        while (!pending.isEmpty()) {
+            int t = pending.poll();
+            int d = distance[t];
+            if (d == UNREACHABLE || d == 0 || hasSupport(t, d)) {
+                continue;
+            }
+            distance[t] = UNREACHABLE;
+            invalidated.add(t);
+            int tx = t % width;
+            int ty = t / width;
+            for (int n = 0; n < 4; n++) {
+                int nx = tx + DX[n];
+                int ny = ty + DY[n];
+                if (isOpen(nx, ny) && distance[ny * width + nx] == d + 1) {
+                    pending.add(ny * width + nx);
+                }
+            }
+        }
+
+        // Repair: seed every invalidated tile from its valid neighbours and relax outward
+        PriorityQueue<Long> frontier = new PriorityQueue<>();
+        while (!invalidated.isEmpty()) {
+            int t = invalidated.poll();
+            int best = bestNeighbour(t);
+            if (best != UNREACHABLE) {
+                distance[t] = best + 1;
+                frontier.add(((long) (best + 1) << 32) | t);
+            }
+        }
+        relax(frontier);
+    }
+
+    /**
+     * Lowers the distances that improve now that a tile can be walked through.
+     */
+    private void tileOpened(int x, int y) {
+        int tile = y * width + x;
+        int best = bestNeighbour(tile);
+        if (best == UNREACHABLE || best + 1 >= distance[tile]) {
+            return;
+        }
+        distance[tile] = best + 1;
+        PriorityQueue<Long> frontier = new PriorityQueue<>();
+        frontier.add(((long) (best + 1) << 32) | tile);
+        relax(frontier);
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from the given tiles, lowering neighbour distances where possible.
+     *
+     * @param frontier entries of distance (high 32 bits) and tile index (low 32 bits)
+     */
+    private void relax(PriorityQueue<Long> frontier) {
+        while (!frontier.isEmpty()) {
+            long entry = frontier.poll();
+            int d = (int) (entry >>> 32);
+            int t = (int) entry;
+            if (d > distance[t]) {
+                continue; // Stale entry
+            }
+            int tx = t % width;
+            int ty = t / width;
+            for (int n = 0; n < 4; n++) {
+                int nx = tx + DX[n];
+                int ny = ty + DY[n];
+                if (isOpen(nx, ny) && distance[ny * width + nx] > d + 1) {
+                    distance[ny * width + nx] = d + 1;
+                    frontier.add(((long) (d + 1) << 32) | (ny * width + nx));
+                }
+            }
+        }
+    }
+
+    private boolean hasSupport(int tile, int d) {
+        int x = tile % width;
+        int y = tile / width;
+        for (int n = 0; n < 4; n++) {
+            if (getDistance(x + DX[n], y + DY[n]) == d - 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int bestNeighbour(int tile) {
+        int x = tile % width;
+        int y = tile / width;
+        int best = UNREACHABLE;
+        for (int n = 0; n < 4; n++) {
+            best = Math.min(best, getDistance(x + DX[n], y + DY[n]));
+        }
+        return best;
+    }
+
+    private void pushNeighbours(IntQueue queue, int x, int y) {
+        for (int n = 0; n < 4; n++) {
+            int nx = x + DX[n];
+            int ny = y + DY[n];
+            if (isOpen(nx, ny)) {
+                queue.add(ny * width + nx);
+            }
+        }
+    }
+
+    private boolean isOpen(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height && !blocked.get(x, y);
+    }
+
+    /**
+     * A growable FIFO queue of ints.
+     */
+    private static final class IntQueue {
+        private int[] items = new int[64];
+        private int head;
+        private int tail;
+
+        void add(int value) {
+            if (tail == items.length) {
+                // Slide the live items to the front, growing only when over half full
+                int count = tail - head;
+                int[] target = count * 2 > items.length ? new int[items.length * 2] : items;
+                System.arraycopy(items, head, target, 0, count);
+                items = target;
+                head = 0;
+                tail = count;
+            }
+            items[tail++] = value;
+        }
+
+        int poll() {
+            return items[head++];
+        }
+
+        boolean isEmpty() {
+            return head == tail;
+        }
+    }
+}
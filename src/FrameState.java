@@ -0,0 +1,327 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * The FrameState class holds what a frame of the map is drawn from: the level it shows, where
+ * the player stands, which tiles around the player are in sight or explored, the NPCs in sight,
+ * and the tiles the movement overlay tints. The simulation
+ * captures a state at the end of every tick and publishes it with a single volatile write, and
+ * the renderer draws from the latest published state, so painting never reads the map while
+ * the simulation changes it and the simulation never waits for painting.
+ *
+ * <p>A published state does not change. States are double-buffered by an {@link Exchange}:
+ * the simulation captures into the back state while the renderer reads the front one, and
+ * publishing swaps the two. A state the renderer is still drawing when it comes round as the
+ * back state again is left alone and a fresh one takes its place, so a steady simulation
+ * allocates nothing.</p>
+ *
+ * <p>Only the window of tiles the player can see is copied. Beyond it, explored tiles are read
+ * from the field of view's layer, which only ever gains tiles, so a frame may at worst show a
+ * tile explored by a later tick as explored already. The terrain is drawn from the static
+ * objects and end spots of the frame's level, never from whichever level the map has moved on
+ * to. The reachable area is computed by the simulation and only referenced, since areas do not
+ * change once found.</p>
+ */
+public final class FrameState {
+
+    private final Level level;
+    private final int radius;
+    private final int size; // Width and height of the window around the player
+    private final TileLayer explored;
+    private final byte[] visible; // Not zero for tiles in sight
+    private final long[] exploredBits;
+    private final AtomicInteger readers = new AtomicInteger();
+    private final IntConsumer collector = this::collect;
+    private int playerX;
+    private int playerY;
+    private int npcCount;
+    private int[] npcXs = new int[16];
+    private int[] npcYs = new int[16];
+    private int[] npcTypes = new int[16];
+    private Reachability.Area reachable;
+
+    // Set only while capturing
+    private SpatialIndex capturing;
+    private FieldOfView sight;
+
+    /**
+     * The Exchange class passes states from the simulation to the renderer. Only one thread
+     * may capture and publish; any thread may read.
+     */
+    public static final class Exchange {
+        private final Level level;
+        private final int radius;
+        private volatile FrameState front;
+        private FrameState back;
+
+        /**
+         * Constructor for the Exchange class. A map creates one for every level it plays.
+         *
+         * @param level  the level the states show
+         * @param radius how far the player can see, in tiles
+         */
+        public Exchange(Level level, int radius) {
+            this.level = level;
+            this.radius = radius;
+            this.front = new FrameState(level, radius);
+            this.back = new FrameState(level, radius);
+        }
+
+        /**
+         * Captures the level as it stands into the back state and publishes it. The level's
+         * field of view must be at the player's position.
+         *
+         * @param playerX   the player's x-coordinate
+         * @param playerY   the player's y-coordinate
+         * @param reachable the tiles the movement overlay tints, or null for no overlay
+         */
+        public void publish(int playerX, int playerY, Reachability.Area reachable) {
+            FrameState state = back;
+            if (state.readers.get() > 0) {
+                // Still being drawn from an earlier swap; never wait for it
+                state = new FrameState(level, radius);
+            }
+            state.capture(playerX, playerY, level.getFieldOfView(), level.getNPCs());
+            state.reachable = reachable;
+            back = front;
+            front = state;
+        }
+
+        /**
+         * Takes the latest published state for drawing. It does not change until it is handed
+         * back with {@link #release(FrameState)}.
+         *
+         * @return the state
+         */
+        public FrameState acquire() {
+            while (true) {
+                FrameState state = front;
+                state.readers.incrementAndGet();
+                // The simulation only captures into states it saw unread after swapping them out
+                if (front == state) {
+                    return state;
+                }
+                state.readers.decrementAndGet();
+            }
+        }
+
+        /**
+         * Hands back a state taken with {@link #acquire()}.
+         *
+         * @param state the state
+         */
+        public void release(FrameState state) {
+            state.readers.decrementAndGet();
+        }
+    }
+
+    private FrameState(Level level, int radius) {
+        this.level = level;
+        this.radius = radius;
+        this.size = 2 * radius + 1;
+        this.explored = level.getFieldOfView().getExplored();
+        this.visible = new byte[size * size];
+        this.exploredBits = new long[(size * size + 63) >>> 6];
+        this.playerX = -size; // Nothing is in sight until the first capture
+        this.playerY = -size;
+    }
+
+    /**
+     * Copies the tiles in the window around the player and the NPCs in sight. The field of
+     * view must be at the player's position. The explored tiles are copied a word of the layer
+     * at a time.
+     */
+    private void capture(int playerX, int playerY, FieldOfView sight, SpatialIndex npcs) {
+        this.playerX = playerX;
+        this.playerY = playerY;
+        sight.copyVisible(visible);
+        Arrays.fill(exploredBits, 0L);
+        int minX = Math.max(0, playerX - radius);
+        int maxX = Math.min(explored.getWidth() - 1, playerX + radius);
+        for (int dy = 0; dy < size; dy++) {
+            int y = playerY - radius + dy;
+            if (y < 0 || y >= explored.getHeight()) {
+                continue;
+            }
+            for (int x = minX; x <= maxX; x = (x | (TileLayer.CHUNK_SIZE - 1)) + 1) {
+                int count = Math.min(maxX, x | (TileLayer.CHUNK_SIZE - 1)) - x + 1;
+                long word = explored.word(x, y) >>> x; // Shifts count modulo 64
+                putBits(exploredBits, dy * size + x - playerX + radius, word, count);
+            }
+        }
+        npcCount = 0;
+        capturing = npcs;
+        this.sight = sight;
+        npcs.queryRect(playerX - radius, playerY - radius, playerX + radius, playerY + radius, -1, collector);
+        capturing = null;
+        this.sight = null;
+    }
+
+    /**
+     * Sets the bits of a run of tiles from the low bits of a word.
+     */
+    private static void putBits(long[] bits, int bit, long word, int count) {
+        if (count < 64) {
+            word &= (1L << count) - 1;
+        }
+        bits[bit >>> 6] |= word << bit;
+        int spill = (bit & 63) + count - 64;
+        if (spill > 0) {
+            bits[(bit >>> 6) + 1] |= word >>> (64 - (bit & 63));
+        }
+    }
+
+    private void collect(int npc) {
+        int x = capturing.getX(npc);
+        int y = capturing.getY(npc);
+        if (!sight.isVisible(x, y)) {
+            return; // Enemies out of sight stay hidden
+        }
+        if (npcCount == npcXs.length) {
+            int capacity = npcCount * 2;
+            npcXs = Arrays.copyOf(npcXs, capacity);
+            npcYs = Arrays.copyOf(npcYs, capacity);
+            npcTypes = Arrays.copyOf(npcTypes, capacity);
+        }
+        npcXs[npcCount] = x;
+        npcYs[npcCount] = y;
+        npcTypes[npcCount] = capturing.getType(npc);
+        npcCount++;
+    }
+
+    /**
+     * Gets the level the state shows, whose static objects and end spots the terrain is drawn
+     * from.
+     *
+     * @return the level
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Gets the column the player stood on.
+     *
+     * @return the player's x-coordinate
+     */
+    public int getPlayerX() {
+        return playerX;
+    }
+
+    /**
+     * Gets the row the player stood on.
+     *
+     * @return the player's y-coordinate
+     */
+    public int getPlayerY() {
+        return playerY;
+    }
+
+    /**
+     * Gets how far the player can see.
+     *
+     * @return the radius in tiles
+     */
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Checks whether a tile was in sight.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @return true if the player saw the tile
+     */
+    public boolean isVisible(int x, int y) {
+        int bit = windowBit(x, y);
+        return bit >= 0 && visible[bit] != 0;
+    }
+
+    /**
+     * Checks whether a tile had ever been in sight.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @return true if the tile was explored
+     */
+    public boolean isExplored(int x, int y) {
+        int bit = windowBit(x, y);
+        if (bit < 0) {
+            return explored.get(x, y); // Only the window can have changed since
+        }
+        return (exploredBits[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Checks whether any tile in a rectangle had ever been in sight, a word of the explored
+     * layer at a time.
+     *
+     * @param minX the left column
+     * @param minY the top row
+     * @param maxX the right column
+     * @param maxY the bottom row
+     * @return true if a tile in the rectangle was explored
+     */
+    public boolean anyExplored(int minX, int minY, int maxX, int maxY) {
+        return level.getFieldOfView().anyExplored(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Gets the tiles the movement overlay tints.
+     *
+     * @return the area the player could move to, or null if the overlay is hidden
+     */
+    public Reachability.Area getReachable() {
+        return reachable;
+    }
+
+    /**
+     * Gets the number of NPCs in sight.
+     *
+     * @return the NPC count
+     */
+    public int getNpcCount() {
+        return npcCount;
+    }
+
+    /**
+     * Gets the x-coordinate of an NPC in sight.
+     *
+     * @param i the NPC's index, below {@link #getNpcCount()}
+     * @return the x-coordinate
+     */
+    public int getNpcX(int i) {
+        return npcXs[i];
+    }
+
+    /**
+     * Gets the y-coordinate of an NPC in sight.
+     *
+     * @param i the NPC's index, below {@link #getNpcCount()}
+     * @return the y-coordinate
+     */
+    public int getNpcY(int i) {
+        return npcYs[i];
+    }
+
+    /**
+     * Gets the type tag of an NPC in sight.
+     *
+     * @param i the NPC's index, below {@link #getNpcCount()}
+     * @return the type tag the NPC has in the map's spatial index
+     */
+    public int getNpcType(int i) {
+        return npcTypes[i];
+    }
+
+    private int windowBit(int x, int y) {
+        int dx = x - playerX + radius;
+        int dy = y - playerY + radius;
+        if (dx < 0 || dy < 0 || dx >= size || dy >= size) {
+            return -1;
+        }
+        return dy * size + dx;
+    }
+}
@@ -0,0 +1,67 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The GameEvents class holds the game's custom JDK Flight Recorder events, which show moves,
+ * duels and painted frames on the same timeline as garbage collections and thread samples.
+ * Start a recording with {@code -XX:StartFlightRecording} and look for the "Arcane Pathways"
+ * category. While no recording is running the events cost next to nothing, because the JIT
+ * removes events that are never committed.
+ */
+final class GameEvents {
+
+    private GameEvents() {
+    }
+
+    /**
+     * A move handled by {@link GameMap#handleMovement(String, Character)}.
+     */
+    @Name("arcanepathways.Move")
+    @Label("Move")
+    @Category("Arcane Pathways")
+    @Description("A player move and what it led to")
+    @StackTrace(false)
+    static class Move extends Event {
+        @Label("Direction")
+        String direction;
+
+        @Label("Outcome")
+        @Description("Invalid, blocked, friendly NPC, encounter, step, level or victory")
+        String outcome;
+    }
+
+    /**
+     * A duel from the first turn to the last, including the time the player spent choosing.
+     */
+    @Name("arcanepathways.Duel")
+    @Label("Duel")
+    @Category("Arcane Pathways")
+    @StackTrace(false)
+    static class Duel extends Event {
+        @Label("Turns")
+        int turns;
+
+        @Label("Enemy First")
+        boolean enemyFirst;
+
+        @Label("Player Won")
+        boolean playerWon;
+    }
+
+    /**
+     * A painted frame of the map.
+     */
+    @Name("arcanepathways.Frame")
+    @Label("Frame")
+    @Category("Arcane Pathways")
+    @StackTrace(false)
+    static class Frame extends Event {
+        @Label("Tiles")
+        @Description("The number of tiles inside the clip")
+        int tiles;
+    }
+}
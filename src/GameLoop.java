@@ -0,0 +1,171 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The GameLoop class runs the simulation on its own thread at a fixed tick rate. Each tick
+ * drains the {@link InputQueue} and applies the moves to the {@link GameMap}. Rendering is not
+ * part of the tick: the map requests repaints of what changed and Swing paints them on the event
+ * dispatch thread, reporting each finished frame back through {@link #frameRendered()}.
+ */
+public class GameLoop implements Runnable {
+
+    /**
+     * Default number of ticks per second. At 120 Hz a key press waits at most about 8 ms for
+     * the next tick, which leaves room to paint the result within one 60 Hz frame.
+     */
+    public static final int DEFAULT_TICK_RATE = 120;
+
+    /**
+     * How far the loop may fall behind, in ticks, before it skips ticks instead of catching up.
+     */
+    private static final int MAX_CATCH_UP_TICKS = 5;
+
+    /**
+     * The MoveListener interface is told the result of every move the loop applies.
+     */
+    @FunctionalInterface
+    public interface MoveListener {
+        /**
+         * Called on the simulation thread after a move has been handled.
+         *
+         * @param move  the move (W, A, S or D)
+         * @param valid true if the move was valid, false if it was blocked or unknown
+         */
+        void moveHandled(String move, boolean valid);
+    }
+
+    private final GameMap gameMap;
+    private final Character character;
+    private final InputQueue input;
+    private final long tickNanos;
+    private final MoveListener listener;
+    private final LoopStats stats = new LoopStats();
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // Entry time of the oldest applied move whose result has not been painted yet, 0 if none
+    private final AtomicLong unpaintedInputAt = new AtomicLong();
+    private volatile boolean running = true;
+    private InputJournal journal;
+
+    /**
+     * Constructor for the GameLoop class.
+     *
+     * @param gameMap        the map the moves are applied to
+     * @param character      the player's character
+     * @param input          the queue the moves are read from
+     * @param ticksPerSecond the simulation rate
+     * @param listener       receives the result of every move
+     */
+    public GameLoop(GameMap gameMap, Character character, InputQueue input, int ticksPerSecond, MoveListener listener) {
+        if (ticksPerSecond <= 0) {
+            throw new IllegalArgumentException("ticksPerSecond must be positive: " + ticksPerSecond);
+        }
+        this.gameMap = gameMap;
+        this.character = character;
+        this.input = input;
+        this.tickNanos = TimeUnit.SECONDS.toNanos(1) / ticksPerSecond;
+        this.listener = listener;
+    }
+
+    /**
+     * Records every move the loop applies in a journal. Must be called before the loop starts.
+     *
+     * @param journal the journal to record to, or null to stop recording
+     */
+    public void setJournal(InputJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Runs a task on the simulation thread at the start of the next tick, between moves,
+     * such as saving the game.
+     *
+     * @param task the task to run
+     */
+    public void runOnLoop(Runnable task) {
+        tasks.add(task);
+    }
+
+    /**
+     * Starts the loop on a new thread.
+     *
+     * @return the simulation thread
+     */
+    public Thread start() {
+        Thread thread = new Thread(this, "game-loop");
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Asks the loop to stop after the current tick.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        long nextTick = System.nanoTime();
+        while (running) {
+            long tickStart = System.nanoTime();
+            tick();
+            stats.recordTick(System.nanoTime() - tickStart);
+
+            nextTick += tickNanos;
+            long behind = System.nanoTime() - nextTick;
+            if (behind > MAX_CATCH_UP_TICKS * tickNanos) {
+                // Drop the missed ticks rather than running them back to back
+                long skipped = behind / tickNanos;
+                stats.recordOverrun(skipped);
+                nextTick += skipped * tickNanos;
+            }
+            long wait = nextTick - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+
+    /**
+     * Runs one simulation step: runs the submitted tasks, then applies every move entered
+     * since the previous tick.
+     */
+    void tick() {
+        for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) {
+            task.run();
+        }
+        for (InputQueue.Input move = input.poll(); move != null; move = input.poll()) {
+            if (journal != null) {
+                // Journal the move before handling it, ahead of any duel choices it leads to
+                journal.recordMove(move.move());
+            }
+            boolean valid = gameMap.handleMovement(move.move(), character);
+            unpaintedInputAt.compareAndSet(0, move.enqueuedAt());
+            listener.moveHandled(move.move(), valid);
+        }
+    }
+
+    /**
+     * Records a painted frame. Called by the map on the event dispatch thread after painting.
+     */
+    public void frameRendered() {
+        long now = System.nanoTime();
+        stats.recordFrame(now);
+        long inputAt = unpaintedInputAt.getAndSet(0);
+        if (inputAt != 0) {
+            stats.recordInputLatency(now - inputAt);
+        }
+    }
+
+    /**
+     * Gets the tick, frame and latency statistics of the loop.
+     *
+     * @return the live statistics
+     */
+    public LoopStats getStats() {
+        return stats;
+    }
+}
@@ -1,119 +1,549 @@
 import javax.swing.*;
 import java.awt.*;
-import java.util.Random;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * The GameMap class represents the game's map, including player movement,
  * NPC interactions, static objects, and the game's end spots.
+ *
+ * <p>The map plays one {@link Level} of the world at a time. Stepping onto an end spot takes the
+ * player to the level it leads to, until the last level, where it wins the game. The levels come
+ * from a {@link LevelCache}, which starts generating the levels behind the end spots in the
+ * background as the player comes close to them.</p>
  */
 public class GameMap extends JPanel {
 
-    private final int rows = 12;
-    private final int cols = 16;
+    private static final int DEFAULT_ROWS = 12;
+    private static final int DEFAULT_COLS = 16;
+
+    private final int rows;
+    private final int cols;
     private final int tileSize = 48;
     private int playerX = 5;
     private int playerY = 5;
-    private Point[] friendlyNPCs;
-    private Point[] enemyNPCs;
-    private boolean[][] staticObjects;
+    private static final int FRIENDLY_NPC = Level.FRIENDLY_NPC;
+    private static final int ENEMY_NPC = Level.ENEMY_NPC;
+    private static final int ENCOUNTER_RADIUS = 0; // Tiles around an enemy that trigger a duel
+    private static final int SIGHT_RADIUS = 6; // Tiles the player can see in every direction
+    private static final int ENEMY_ACTIVE_RADIUS = 32; // Enemies farther from the player stay put
+    private static final Color FOG = new Color(0, 0, 0, 160); // Over explored tiles out of sight
+    private static final Color REACHABLE = new Color(0, 160, 255, 60); // Over tiles a move can end on
+    private static final Color TARGETED = new Color(0, 160, 255, 140); // Over the reachable tile under the mouse
+    private static final int DEFAULT_LEVELS = 5; // Levels deep the world goes
+    private static final int CACHED_LEVELS = 4; // Levels generated ahead of the player
+    private static final int PREFETCH_RADIUS = 2 * SIGHT_RADIUS; // End spots this close have their levels generated
+
+    // Outcomes of a move, for the metrics
+    private static final String[] MOVE_OUTCOMES = {"invalid", "blocked", "friendly", "encounter", "step", "level", "victory"};
+    private static final int MOVE_INVALID = 0;
+    private static final int MOVE_BLOCKED = 1;
+    private static final int MOVE_FRIENDLY = 2;
+    private static final int MOVE_ENCOUNTER = 3;
+    private static final int MOVE_STEP = 4;
+    private static final int MOVE_LEVEL = 5;
+    private static final int MOVE_VICTORY = 6;
+
+    // Shared by every map in the JVM; see Metrics#dump()
+    private static final Histogram MOVE_NANOS = Metrics.global().histogram("move.nanos");
+    private static final Histogram DUEL_NANOS = Metrics.global().histogram("duel.nanos");
+    private static final Histogram DUEL_TURNS = Metrics.global().histogram("duel.turns");
+    private static final Histogram FRAME_NANOS = Metrics.global().histogram("frame.nanos");
+    private static final Histogram ENEMY_TURN_NANOS = Metrics.global().histogram("enemy.turn.nanos");
+    private static final Histogram LEVEL_ENTER_NANOS = Metrics.global().histogram("level.enter.nanos");
+    private static final LongAdder BLOCKED_MOVES = Metrics.global().counter("moves.blocked");
+    private static final LongAdder NPC_INTERACTIONS = Metrics.global().counter("npc.interactions");
+    private static final LongAdder ENCOUNTERS = Metrics.global().counter("encounters");
+
+    // The parts of the level being played, taken over from it by useLevel(Level)
+    private Level level;
+    private SpatialIndex npcs; // Values are the NPCs' entities
+    private EntityStore entities;
+    private TileLayer staticObjects;
+    private Pathfinder pathfinder; // Paths and flow fields over the static objects
+    private FieldOfView fieldOfView; // What the player sees and has seen
+    private EnemyAI enemyAI;
+    private Reachability reachability; // Multi-tile moves, cached per position
+    private volatile int overlayRange; // Movement range shown in the overlay, 0 for none
+    private volatile Point hoveredTile; // Tile under the mouse, or null; set and read on the event dispatch thread
+    private int enemyActiveRadius = ENEMY_ACTIVE_RADIUS;
     private Point[] endSpots; // Array to hold end spots
+    private int cameraX; // Top-left tile of the viewport as of the last tick, for repaint regions
+    private int cameraY;
+    private volatile FrameState.Exchange frames; // What the renderer draws, published at the end of each tick
+
+    // Rendered chunks of grid, static objects and end spots, keyed by packed chunk coordinates.
+    // Only the event dispatch thread touches the cache; the simulation queues the tiles it changes.
+    private static final int TERRAIN_CHUNK_TILES = 8;
+    private static final int TERRAIN_CACHE_CHUNKS = 32;
+    private final Map<Long, BufferedImage> terrainCache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+            // Keep at least two screens' worth so scrolling back and forth stays cached
+            int visibleChunks = (getViewCols() / TERRAIN_CHUNK_TILES + 2) * (getViewRows() / TERRAIN_CHUNK_TILES + 2);
+            return size() > Math.max(TERRAIN_CACHE_CHUNKS, 2 * visibleChunks);
+        }
+    };
+    private final Queue<Long> changedTerrain = new ConcurrentLinkedQueue<>(); // Packed tile coordinates
+    private Level terrainLevel; // The level the cached chunks show
     private String[] npcTexts = {
             "Greetings, traveler! Your health increases.",
             "Beware of the dangers ahead! Your strength grows.",
             "You feel magical power surging through you. Your magic improves."
     };
 
-    private Random random = new Random();
+    private final LevelCache levels;
+    private int levelCount = DEFAULT_LEVELS;
+    private boolean prefetchLevels = true;
+    private final CombatLog combatLog = new CombatLog(64); // The most recent duel events
+    private final GameRandom gameRandom;
+    private final GameRandom.Generator random; // Friendly NPC boosts and duel initiative
+    private PlayerPolicy playerPolicy = this::chooseActionByDialog;
+    private boolean autoResolveDuels; // Settle duels from their odds instead of playing them out
+    private final GameRandom.Generator enemyRandom = new GameRandom.Generator(0); // Reseeded for each duel
+    private EnemyPool enemyPool;
+    private Runnable exitAction = () -> System.exit(0);
+    private GameNotifier notifier = GameNotifier.dialogs(this);
+    private Runnable frameListener;
 
     /**
      * Constructor for the GameMap class. Initializes the map with static objects,
      * friendly NPCs, enemy NPCs, and end spots.
      */
     public GameMap() {
-        setPreferredSize(new Dimension(cols * tileSize, rows * tileSize));
-        setBackground(Color.BLACK);
-        generateStaticObjects();
-        generateEndSpots(); // Initialize end spots first
-        generateFriendlyNPCs();
-        generateEnemyNPCs();
+        this(DEFAULT_COLS, DEFAULT_ROWS);
     }
 
     /**
-     * Generates static objects such as trees or bushes on the map.
+     * Constructor for a GameMap of a custom size. Static objects and NPCs are generated
+     * with the same density as on the default 16x12 map.
+     *
+     * @param cols the number of columns
+     * @param rows the number of rows
+     */
+    public GameMap(int cols, int rows) {
+        this(cols, rows, GameRandom.fromEntropy());
+    }
+
+    /**
+     * Constructor for a GameMap generated from a seed. The same size and seed always
+     * produce the same static objects and NPC positions, and the same moves then lead
+     * to the same friendly NPC boosts and duels.
+     *
+     * @param cols the number of columns
+     * @param rows the number of rows
+     * @param seed the master seed of the map's randomness
      */
-    private void generateStaticObjects() {
-        staticObjects = new boolean[rows][cols];
-        for (int i = 0; i < 20; i++) {
-            int x = random.nextInt(cols);
-            int y = random.nextInt(rows);
-            staticObjects[y][x] = true;
+    public GameMap(int cols, int rows, long seed) {
+        this(cols, rows, new GameRandom(seed));
+    }
+
+    /**
+     * Constructor for a GameMap that draws all of its randomness from the streams of a
+     * {@link GameRandom}.
+     *
+     * @param cols       the number of columns
+     * @param rows       the number of rows
+     * @param gameRandom the source of the map's randomness
+     */
+    public GameMap(int cols, int rows, GameRandom gameRandom) {
+        if (cols < 2 || rows < 2) {
+            throw new IllegalArgumentException("Map must be at least 2x2: " + cols + "x" + rows);
         }
+        this.cols = cols;
+        this.rows = rows;
+        this.gameRandom = gameRandom;
+        this.random = new GameRandom.Generator(gameRandom.seedFor(GameRandom.Stream.GAMEPLAY));
+        this.levels = new LevelCache(CACHED_LEVELS, this::generateLevel);
+        useLevel(generateLevel(0));
+        playerX = level.getSpawnX();
+        playerY = level.getSpawnY();
+        setUpView();
     }
 
     /**
-     * Generates friendly NPCs that can interact with the player.
+     * Constructor for a GameMap restored from a {@link WorldSnapshot}. Nothing is generated;
+     * the NPCs are added afterwards with {@link #restoreNPC(int, int, boolean)}.
+     *
+     * @param cols          the number of columns
+     * @param rows          the number of rows
+     * @param seed          the master seed the map was generated from
+     * @param gameplaySeed  the seed of the friendly NPC boosts and duel initiative from here on
+     * @param playerX       the player's x-coordinate
+     * @param playerY       the player's y-coordinate
+     * @param level         the ID of the level the player is on
+     * @param endSpots      the end spots
+     * @param staticObjects the tiles that hold static objects
+     * @param npcCount      the number of NPCs that will be restored
      */
-    private void generateFriendlyNPCs() {
-        friendlyNPCs = new Point[5];
-        for (int i = 0; i < friendlyNPCs.length; i++) {
-            int x, y;
-            do {
-                x = random.nextInt(cols);
-                y = random.nextInt(rows);
-            } while (staticObjects[y][x] || (x == playerX && y == playerY) || isEndSpot(x, y));
-            friendlyNPCs[i] = new Point(x, y);
+    GameMap(int cols, int rows, long seed, long gameplaySeed, int playerX, int playerY,
+            long level, Point[] endSpots, TileLayer staticObjects, int npcCount) {
+        this.cols = cols;
+        this.rows = rows;
+        this.gameRandom = new GameRandom(seed);
+        this.random = new GameRandom.Generator(gameplaySeed);
+        this.levels = new LevelCache(CACHED_LEVELS, this::generateLevel);
+        this.playerX = playerX;
+        this.playerY = playerY;
+        useLevel(Level.restore(level, playerX, playerY, endSpots, staticObjects, npcCount, SIGHT_RADIUS, enemyRandom));
+        setUpView();
+    }
+
+    /**
+     * Generates a level of the world. Called on a background thread when a level is prefetched,
+     * so it only reads what never changes.
+     *
+     * @param id the level's ID
+     * @return the level
+     */
+    private Level generateLevel(long id) {
+        return Level.generate(cols, rows, gameRandom, id, SIGHT_RADIUS, enemyRandom);
+    }
+
+    /**
+     * Makes a level the one the map plays, taking over its parts.
+     *
+     * @param level the level
+     */
+    private void useLevel(Level level) {
+        this.level = level;
+        staticObjects = level.getStaticObjects();
+        endSpots = level.getEndSpots();
+        pathfinder = level.getPathfinder();
+        fieldOfView = level.getFieldOfView();
+        npcs = level.getNPCs();
+        entities = level.getEntities();
+        enemyPool = level.getEnemyPool();
+        enemyAI = level.getEnemyAI();
+        reachability = level.getReachability();
+    }
+
+    /**
+     * Takes the player to the spawn point of another level, generating it unless it was
+     * prefetched, and shows it from the next frame on.
+     *
+     * @param id the level's ID
+     */
+    private void enterLevel(long id) {
+        long start = System.nanoTime();
+        useLevel(levels.take(id));
+        playerX = level.getSpawnX();
+        playerY = level.getSpawnY();
+        followPlayer();
+        publishLevel();
+        LEVEL_ENTER_NANOS.record(System.nanoTime() - start);
+        repaint(); // The first frame of the new level drops the terrain chunks of the one before
+    }
+
+    /**
+     * Starts generating the levels behind the end spots near the player, so that stepping onto
+     * one finds its level ready.
+     */
+    private void prefetchLevels() {
+        if (!prefetchLevels || level.getDepth() + 1 >= levelCount) {
+            return; // The end spots of the last level end the game
+        }
+        for (int i = 0; i < endSpots.length; i++) {
+            if (Math.abs(endSpots[i].x - playerX) <= PREFETCH_RADIUS && Math.abs(endSpots[i].y - playerY) <= PREFETCH_RADIUS) {
+                levels.prefetch(level.nextLevel(i));
+            }
         }
     }
 
     /**
-     * Generates enemy NPCs that the player can encounter in duels.
+     * Turns prefetching of the levels behind nearby end spots on or off. With prefetching off,
+     * the map holds no level but the one being played, and generates the next one when the
+     * player steps onto an end spot. Headless sessions turn it off to stay within their memory
+     * budget.
+     *
+     * @param prefetchLevels true to prefetch levels, the default
+     */
+    public void setLevelPrefetch(boolean prefetchLevels) {
+        this.prefetchLevels = prefetchLevels;
+    }
+
+    /**
+     * Sets how many levels deep the world goes. Reaching an end spot of the last level wins the
+     * game.
+     *
+     * @param levelCount the number of levels, at least one
      */
-    private void generateEnemyNPCs() {
-        enemyNPCs = new Point[5];
-        for (int i = 0; i < enemyNPCs.length; i++) {
-            int x, y;
-            do {
-                x = random.nextInt(cols);
-                y = random.nextInt(rows);
-            } while (staticObjects[y][x] || (x == playerX && y == playerY) || isEndSpot(x, y));
-            enemyNPCs[i] = new Point(x, y);
+    public void setLevelCount(int levelCount) {
+        if (levelCount < 1) {
+            throw new IllegalArgumentException("A world has at least one level: " + levelCount);
         }
+        this.levelCount = levelCount;
     }
 
     /**
-     * Generates end spots located at the two right corners of the map.
+     * Gets how many levels deep the world goes.
+     *
+     * @return the number of levels
+     */
+    public int getLevelCount() {
+        return levelCount;
+    }
+
+    /**
+     * Gets the level the player is on.
+     *
+     * @return the level
      */
-    private void generateEndSpots() {
-        endSpots = new Point[2];
-        endSpots[0] = new Point(cols - 1, 0);       // Top-right corner
-        endSpots[1] = new Point(cols - 1, rows - 1); // Bottom-right corner
+    public Level getLevel() {
+        return level;
     }
 
     /**
-     * Checks if the given coordinates correspond to an end spot.
+     * Gets the cache the map takes its levels from.
+     *
+     * @return the level cache
+     */
+    LevelCache getLevelCache() {
+        return levels;
+    }
+
+    /**
+     * Sizes the panel, publishes the first frame, and repaints it when the panel is resized.
+     */
+    private void setUpView() {
+        // The view is at most the size of the default map; larger maps scroll
+        setPreferredSize(new Dimension(Math.min(cols, DEFAULT_COLS) * tileSize, Math.min(rows, DEFAULT_ROWS) * tileSize));
+        setBackground(Color.BLACK);
+        followPlayer();
+        publishLevel();
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                // Painting centers its own camera on the frame's player, so the new size is all it needs
+                repaint();
+            }
+        });
+    }
+
+    /**
+     * Publishes the map as it stands for the renderer. Called by the simulation at the end of
+     * every tick, and by the tools that change the map outside of ticks.
+     */
+    private void publishFrame() {
+        frames.publish(playerX, playerY, reachableArea());
+    }
+
+    /**
+     * Starts drawing the level being played: publishes its first frame into a new exchange
+     * before handing the exchange to the renderer, so the renderer never draws an empty frame.
+     */
+    private void publishLevel() {
+        FrameState.Exchange exchange = new FrameState.Exchange(level, SIGHT_RADIUS);
+        exchange.publish(playerX, playerY, reachableArea());
+        frames = exchange;
+    }
+
+    /**
+     * Gets the tiles the movement overlay tints, found on the simulation thread so that the
+     * renderer only ever draws the area captured into a frame.
+     *
+     * @return the area, or null if the overlay is hidden
+     */
+    private Reachability.Area reachableArea() {
+        int range = overlayRange;
+        return range > 0 ? reachability.get(playerX, playerY, range) : null;
+    }
+
+    /**
+     * Publishes the map if a tile that changed outside of a tick may be drawn.
+     *
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     */
+    private void publishFrameIfInSight(int x, int y) {
+        if (Math.abs(x - playerX) <= SIGHT_RADIUS && Math.abs(y - playerY) <= SIGHT_RADIUS) {
+            publishFrame();
+        }
+    }
+
+    /**
+     * Gets the column the player stands on.
+     *
+     * @return the player's x-coordinate
+     */
+    public int getPlayerX() {
+        return playerX;
+    }
+
+    /**
+     * Gets the row the player stands on.
+     *
+     * @return the player's y-coordinate
+     */
+    public int getPlayerY() {
+        return playerY;
+    }
+
+    /**
+     * Gets the tiles that hold static objects. The layer must not be changed directly.
+     *
+     * @return the static object layer
+     */
+    TileLayer getStaticObjects() {
+        return staticObjects;
+    }
+
+    /**
+     * Gets the end spots of the map.
+     *
+     * @return the end spots; the array must not be changed
+     */
+    Point[] getEndSpots() {
+        return endSpots;
+    }
+
+    /**
+     * Gets the index of the NPCs on the map, whose values are the NPCs' entities.
+     *
+     * @return the NPC index
+     */
+    SpatialIndex getNPCs() {
+        return npcs;
+    }
+
+    /**
+     * Gets the store that holds the NPCs' entities.
+     *
+     * @return the entity store
+     */
+    EntityStore getEntities() {
+        return entities;
+    }
+
+    /**
+     * Gets the state of the generator of friendly NPC boosts and duel initiative, without
+     * drawing from it. A snapshot saves the state, so the saved and the restored game continue
+     * alike, and a journaled game still replays the same after saving.
+     *
+     * @return the seed that continues the generator where it stands
+     */
+    long getGameplayState() {
+        return random.getState();
+    }
+
+    /**
+     * Gets the master seed this map was generated from.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return gameRandom.getMasterSeed();
+    }
+
+    /**
+     * Gets the source of the map's randomness.
+     *
+     * @return the GameRandom whose streams the map draws from
+     */
+    public GameRandom getGameRandom() {
+        return gameRandom;
+    }
+
+    /**
+     * Places a restored NPC on the map with a new entity. Enemy entities start with the
+     * attributes of a new enemy; the caller restores the saved ones.
+     *
+     * @param x     the x-coordinate
+     * @param y     the y-coordinate
+     * @param enemy true for an enemy NPC, false for a friendly one
+     * @return the handle of the NPC's entity
+     */
+    int restoreNPC(int x, int y, boolean enemy) {
+        int entity = enemy ? enemyPool.createEntity() : entities.create(EntityStore.FRIENDLY_NPC);
+        spawnNPC(x, y, enemy ? ENEMY_NPC : FRIENDLY_NPC, entity);
+        publishFrameIfInSight(x, y);
+        return entity;
+    }
+
+    /**
+     * Places an NPC entity on the map.
+     *
+     * @param x      the x-coordinate
+     * @param y      the y-coordinate
+     * @param type   FRIENDLY_NPC or ENEMY_NPC
+     * @param entity the handle of the NPC's entity
+     */
+    private void spawnNPC(int x, int y, int type, int entity) {
+        entities.setPosition(entity, x, y);
+        npcs.insert(x, y, type, entity);
+        reachability.tileChanged(x, y);
+    }
+
+    /**
+     * Removes an NPC from the map and releases its entity.
+     *
+     * @param npc the NPC's handle in the spatial index
+     */
+    private void removeNPC(int npc) {
+        reachability.tileChanged(npcs.getX(npc), npcs.getY(npc));
+        entities.release(npcs.getValue(npc));
+        npcs.remove(npc);
+    }
+
+    /**
+     * Finds the end spot at the given coordinates.
      *
      * @param x the x-coordinate
      * @param y the y-coordinate
-     * @return true if the position is an end spot, false otherwise
+     * @return the index of the end spot, or -1 if the position is not an end spot
      */
-    private boolean isEndSpot(int x, int y) {
-        for (Point endSpot : endSpots) {
-            if (endSpot.x == x && endSpot.y == y) {
-                return true;
+    private int endSpotAt(int x, int y) {
+        for (int i = 0; i < endSpots.length; i++) {
+            if (endSpots[i].x == x && endSpots[i].y == y) {
+                return i;
             }
         }
-        return false;
+        return -1;
     }
 
     /**
      * Handles player movement on the map, checking for collisions, NPC interactions,
-     * and reaching end spots.
+     * and reaching end spots. Every move that is not blocked is a turn, which ages the
+     * player's status effects and ends by publishing the frame the renderer draws.
      *
      * @param move   the player's move input (W, A, S, D)
      * @param player the player's character
      * @return true if the movement is valid, false otherwise
      */
     public boolean handleMovement(String move, Character player) {
+        GameEvents.Move event = new GameEvents.Move();
+        event.begin();
+        long start = System.nanoTime();
+        int outcome = applyMove(move, player);
+        if (outcome != MOVE_INVALID && outcome != MOVE_BLOCKED) {
+            player.getStore().getEffects().tick();
+            publishFrame();
+            prefetchLevels();
+        }
+        MOVE_NANOS.record(System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.direction = move;
+            event.outcome = MOVE_OUTCOMES[outcome];
+            event.commit();
+        }
+        return outcome == MOVE_FRIENDLY || outcome == MOVE_STEP || outcome == MOVE_LEVEL || outcome == MOVE_VICTORY;
+    }
+
+    /**
+     * Applies a move for {@link #handleMovement(String, Character)}.
+     *
+     * @param move   the player's move input (W, A, S, D, or a target tile)
+     * @param player the player's character
+     * @return what the move led to, one of the MOVE_ constants
+     */
+    private int applyMove(String move, Character player) {
         int newX = playerX;
         int newY = playerY;
 
@@ -131,97 +561,251 @@ public class GameMap extends JPanel {
                 newX++;
                 break;
             default:
-                return false; // Invalid move
+                return applyTargetMove(move, player);
         }
 
         // Check boundaries and static objects
-        if (newX < 0 || newX >= cols || newY < 0 || newY >= rows || staticObjects[newY][newX]) {
-            return false; // Movement blocked
+        if (newX < 0 || newX >= cols || newY < 0 || newY >= rows || staticObjects.get(newX, newY)) {
+            BLOCKED_MOVES.increment();
+            return MOVE_BLOCKED;
         }
 
-        // Check if new position is an end spot
-        if (isEndSpot(newX, newY)) {
+        // Check if new position is an end spot, which leads to the next level or ends the last one
+        int endSpot = endSpotAt(newX, newY);
+        if (endSpot >= 0 && level.getDepth() + 1 < levelCount) {
+            enterLevel(level.nextLevel(endSpot));
+            String levelMessage = "You have reached level " + (level.getDepth() + 1) + " of " + levelCount + "!";
+            notifier.showMessage("New Level", levelMessage, JOptionPane.INFORMATION_MESSAGE);
+            notifier.log(levelMessage);
+            return MOVE_LEVEL;
+        }
+        if (endSpot >= 0) {
             String victoryMessage = "Congratulations! You have defeated Arcane Pathways!";
-            JOptionPane.showMessageDialog(this, victoryMessage, "Victory", JOptionPane.INFORMATION_MESSAGE);
-            System.out.println(victoryMessage); // Log to terminal
-            System.exit(0); // Terminate the game
+            notifier.showMessage("Victory", victoryMessage, JOptionPane.INFORMATION_MESSAGE);
+            notifier.log(victoryMessage);
+            exitAction.run(); // Terminate the game
+            // The game is over, so no NPC is met and no enemy takes a turn
+            moveSight(newX, newY);
+            return MOVE_VICTORY;
         }
 
         // Check for friendly NPC interaction
-        for (Point npc : friendlyNPCs) {
-            if (npc != null && npc.x == newX && npc.y == newY) {
-                interactWithFriendlyNPC(npc, player);
-                // Remove NPC after interaction
-                removeNPC(friendlyNPCs, npc);
-                return true;
-            }
+        int friendly = npcs.find(newX, newY, FRIENDLY_NPC);
+        if (friendly >= 0) {
+            NPC_INTERACTIONS.increment();
+            interactWithFriendlyNPC(friendly, player);
+            // Remove NPC after interaction
+            removeNPC(friendly);
+            repaintTile(newX, newY);
+            return MOVE_FRIENDLY;
+        }
+
+        // Check for enemy proximity (same tile or within ENCOUNTER_RADIUS)
+        int enemyNpc = npcs.findInRect(newX - ENCOUNTER_RADIUS, newY - ENCOUNTER_RADIUS,
+                newX + ENCOUNTER_RADIUS, newY + ENCOUNTER_RADIUS, ENEMY_NPC);
+        if (enemyNpc >= 0) {
+            ENCOUNTERS.increment();
+            String encounterMessage = "An enemy has appeared!";
+            notifier.showMessage("Enemy Encounter", encounterMessage, JOptionPane.WARNING_MESSAGE);
+            notifier.log(encounterMessage);
+
+            boolean enemyFirst = random.nextBoolean();
+            String turnMessage = enemyFirst ? "The enemy strikes first!" : "You strike first!";
+            notifier.showMessage(enemyFirst ? "Enemy's Turn" : "Your Turn", turnMessage, JOptionPane.INFORMATION_MESSAGE);
+            notifier.log(turnMessage);
+
+            // Duel the enemy NPC's own entity, with the entity's own stream of choices on this level
+            int entity = npcs.getValue(enemyNpc);
+            enemyRandom.reseed(gameRandom.seedFor(GameRandom.Stream.ENEMY_COMBAT, (level.getId() << 32) | entity));
+            Enemy enemy = enemyPool.acquire(entity);
+            startDuel(player, enemy, enemyFirst);
+            enemyPool.recycle(enemy);
+
+            // Remove enemy NPC after the duel
+            repaintTile(npcs.getX(enemyNpc), npcs.getY(enemyNpc));
+            removeNPC(enemyNpc);
+
+            return MOVE_ENCOUNTER; // Player does not move into enemy's space
         }
 
-        // Check for enemy proximity (same tile or adjacent)
-        for (Point npc : enemyNPCs) {
-            if (npc != null && isAdjacent(newX, newY, npc.x, npc.y)) {
-                String encounterMessage = "An enemy has appeared!";
-                JOptionPane.showMessageDialog(this, encounterMessage, "Enemy Encounter", JOptionPane.WARNING_MESSAGE);
-                System.out.println(encounterMessage); // Log to terminal
+        // Move player, then let the enemies take their turn
+        moveSight(newX, newY);
+        moveEnemies();
+        return MOVE_STEP;
+    }
+
+    /**
+     * Applies a move to a tile within the player's movement range: the player walks the
+     * shortest way through free tiles, and the last step onto the target is handled like any
+     * single step, so it may talk to an NPC, start a duel or reach an end spot.
+     *
+     * @param move   the target as made by {@link #targetMove(int, int)}
+     * @param player the player's character
+     * @return what the last step led to, or {@link #MOVE_BLOCKED} if the target is out of reach
+     */
+    private int applyTargetMove(String move, Character player) {
+        int comma = move.indexOf(',');
+        if (comma < 0) {
+            return MOVE_INVALID;
+        }
+        int x;
+        int y;
+        try {
+            x = Integer.parseInt(move, 0, comma, 10);
+            y = Integer.parseInt(move, comma + 1, move.length(), 10);
+        } catch (NumberFormatException e) {
+            return MOVE_INVALID;
+        }
+        String path = reachability.get(playerX, playerY, player.getMovementRange()).pathTo(x, y);
+        if (path == null) {
+            BLOCKED_MOVES.increment();
+            return MOVE_BLOCKED;
+        }
+        // The tiles before the target are free, so walking them takes no turn
+        int last = path.length() - 1;
+        for (int i = 0; i < last; i++) {
+            switch (path.charAt(i)) {
+                case 'W' -> moveSight(playerX, playerY - 1);
+                case 'S' -> moveSight(playerX, playerY + 1);
+                case 'A' -> moveSight(playerX - 1, playerY);
+                default -> moveSight(playerX + 1, playerY);
+            }
+        }
+        return applyMove(path.substring(last), player);
+    }
 
-                boolean enemyFirst = random.nextBoolean();
-                String turnMessage = enemyFirst ? "The enemy strikes first!" : "You strike first!";
-                JOptionPane.showMessageDialog(this, turnMessage, enemyFirst ? "Enemy's Turn" : "Your Turn", JOptionPane.INFORMATION_MESSAGE);
-                System.out.println(turnMessage); // Log to terminal
+    /**
+     * Makes the move that takes the player to a tile within the movement range, for
+     * {@link #handleMovement(String, Character)}.
+     *
+     * @param x the target's x-coordinate
+     * @param y the target's y-coordinate
+     * @return the move
+     */
+    public static String targetMove(int x, int y) {
+        return x + "," + y;
+    }
 
-                // Create a new Enemy instance for the duel
-                Enemy enemy = new Enemy("Goblin");
-                startDuel(player, enemy, enemyFirst);
+    /**
+     * Gets the tiles the player can move to from the current position.
+     *
+     * @param range the player's movement range
+     * @return the reachable area
+     */
+    public Reachability.Area getReachableArea(int range) {
+        return reachability.get(playerX, playerY, range);
+    }
 
-                // Remove enemy NPC after the duel
-                removeNPC(enemyNPCs, npc);
+    /**
+     * Shows the tiles the player can move to over the map. The area follows the player: the
+     * simulation looks it up in the reachability cache when it publishes a frame, and painting
+     * draws it from the frame. Call it from the thread that runs the game, or before the game
+     * starts.
+     *
+     * @param range the player's movement range, or 0 to hide the overlay
+     */
+    public void setMovementOverlay(int range) {
+        this.overlayRange = range;
+        publishFrame();
+        repaint();
+    }
 
-                return false; // Player does not move into enemy's space
+    /**
+     * Marks the tile under the mouse, which the overlay highlights if it can be moved to.
+     *
+     * @param tile the tile, or null if the mouse left the map
+     */
+    public void setHoveredTile(Point tile) {
+        Point previous = hoveredTile;
+        hoveredTile = tile;
+        // The mouse is handled on the event dispatch thread, so the tiles are placed by the painted frame
+        FrameState frame = frames.acquire();
+        try {
+            int frameCameraX = cameraFor(frame.getPlayerX(), getViewCols(), cols);
+            int frameCameraY = cameraFor(frame.getPlayerY(), getViewRows(), rows);
+            if (previous != null) {
+                repaint((previous.x - frameCameraX) * tileSize, (previous.y - frameCameraY) * tileSize, tileSize + 1, tileSize + 1);
+            }
+            if (tile != null) {
+                repaint((tile.x - frameCameraX) * tileSize, (tile.y - frameCameraY) * tileSize, tileSize + 1, tileSize + 1);
             }
+        } finally {
+            frames.release(frame);
         }
+    }
 
-        // Move player
-        playerX = newX;
-        playerY = newY;
-        return true;
+    /**
+     * Finds the tile under a point of the panel.
+     *
+     * @param x the point's x-coordinate in pixels
+     * @param y the point's y-coordinate in pixels
+     * @return the tile, or null if the point is outside the map
+     */
+    public Point tileAt(int x, int y) {
+        FrameState frame = frames.acquire();
+        int col;
+        int row;
+        try {
+            col = cameraFor(frame.getPlayerX(), getViewCols(), cols) + Math.floorDiv(x, tileSize);
+            row = cameraFor(frame.getPlayerY(), getViewRows(), rows) + Math.floorDiv(y, tileSize);
+        } finally {
+            frames.release(frame);
+        }
+        if (col < 0 || row < 0 || col >= cols || row >= rows) {
+            return null;
+        }
+        return new Point(col, row);
+    }
+
+    /**
+     * Moves the enemies around the player, as happens after every step of the player. Also
+     * used by benchmarks to run enemy turns on their own.
+     *
+     * @return the number of enemies that moved
+     */
+    int moveEnemies() {
+        long start = System.nanoTime();
+        int moved = enemyAI.takeTurn(playerX, playerY, enemyActiveRadius, random.nextLong());
+        ENEMY_TURN_NANOS.record(System.nanoTime() - start);
+        if (moved > 0) {
+            repaintSight(playerX, playerY); // Enemies out of sight are not drawn
+        }
+        return moved;
     }
 
     /**
-     * Checks if two points are adjacent (one grid away) on the map.
+     * Sets how far from the player enemies move each turn. Used by tools and benchmarks that
+     * drive many enemies at once.
      *
-     * @param x1 the x-coordinate of the first point
-     * @param y1 the y-coordinate of the first point
-     * @param x2 the x-coordinate of the second point
-     * @param y2 the y-coordinate of the second point
-     * @return true if adjacent, false otherwise
+     * @param radius the radius in tiles
      */
-    private boolean isAdjacent(int x1, int y1, int x2, int y2) {
-        return Math.abs(x1 - x2) <= 0 && Math.abs(y1 - y2) <= 0;
+    void setEnemyActiveRadius(int radius) {
+        this.enemyActiveRadius = radius;
     }
 
     /**
      * Handles interactions with friendly NPCs, providing random attribute boosts to the player.
      *
-     * @param npc    the friendly NPC to interact with
+     * @param npc    the handle of the friendly NPC to interact with
      * @param player the player's character
      */
-    private void interactWithFriendlyNPC(Point npc, Character player) {
+    private void interactWithFriendlyNPC(int npc, Character player) {
         int choice = random.nextInt(3); // 0: Health, 1: Strength, 2: Magic
         String boostType;
         String boostMessage = "";
         switch (choice) {
             case 0:
-                player.health += 10;
+                player.setHealth(player.getHealth() + 10);
                 boostType = "health";
                 boostMessage = "+10 Health";
                 break;
             case 1:
-                player.strength += 2;
+                player.setStrength(player.getStrength() + 2);
                 boostType = "strength";
                 boostMessage = "+2 Strength";
                 break;
             case 2:
-                player.magic += 2;
+                player.setMagic(player.getMagic() + 2);
                 boostType = "magic";
                 boostMessage = "+2 Magic";
                 break;
@@ -229,8 +813,8 @@ public class GameMap extends JPanel {
                 boostType = "unknown";
         }
         String message = "Friendly NPC interaction! Your " + boostType + " has increased.";
-        JOptionPane.showMessageDialog(this, message, "Friendly NPC", JOptionPane.INFORMATION_MESSAGE);
-        System.out.println(message + " (" + boostMessage + ")"); // Log to terminal
+        notifier.showMessage("Friendly NPC", message, JOptionPane.INFORMATION_MESSAGE);
+        notifier.log(message + " (" + boostMessage + ")");
     }
 
     /**
@@ -241,232 +825,729 @@ public class GameMap extends JPanel {
      * @param enemyFirst  true if the enemy attacks first, false if the player attacks first
      */
     private void startDuel(Character player, Enemy enemy, boolean enemyFirst) {
+        GameEvents.Duel event = new GameEvents.Duel();
+        event.begin();
+        long start = System.nanoTime();
+        int turns = autoResolveDuels ? resolveDuel(player, enemy, enemyFirst) : fightDuel(player, enemy, enemyFirst);
+        DUEL_NANOS.record(System.nanoTime() - start);
+        DUEL_TURNS.record(turns);
+        event.end();
+        if (event.shouldCommit()) {
+            event.turns = turns;
+            event.enemyFirst = enemyFirst;
+            event.playerWon = player.getHealth() > 0 && enemy.getHealth() <= 0;
+            event.commit();
+        }
+    }
+
+    /**
+     * Plays the turns of a duel for {@link #startDuel(Character, Enemy, boolean)}.
+     *
+     * @param player      the player's character
+     * @param enemy       the enemy character
+     * @param enemyFirst  true if the enemy attacks first, false if the player attacks first
+     * @return the number of turns played, counting a forfeit as a turn
+     */
+    private int fightDuel(Character player, Enemy enemy, boolean enemyFirst) {
+        int turns = 0;
         boolean playerTurn = !enemyFirst;
-        String duelStartMessage = "Duel started between " + player.getName() + " and " + enemy.getName() + "!";
-        System.out.println(duelStartMessage); // Log to terminal
+        notifier.logEvent(combatLog, combatLog.record(player, enemy, CombatLog.DUEL_STARTED, 0));
         while (player.getHealth() > 0 && enemy.getHealth() > 0) {
+            turns++;
             if (playerTurn) {
                 // Player's turn: present options based on archetype
-                String[] options = getPlayerOptions(player);
-                int choice = JOptionPane.showOptionDialog(this,
-                        "Choose your action:",
-                        "Your Turn",
-                        JOptionPane.DEFAULT_OPTION,
-                        JOptionPane.INFORMATION_MESSAGE,
-                        null,
-                        options,
-                        options[0]);
-
-                if (choice == JOptionPane.CLOSED_OPTION) {
+                String[] options = DuelRules.getPlayerOptions(player);
+                int choice = playerPolicy.chooseAction(player, enemy, options);
+
+                if (choice == PlayerPolicy.FORFEIT) {
                     // Player closed the dialog; treat as forfeiting the duel
                     String forfeitMessage = "You have forfeited the duel!";
-                    JOptionPane.showMessageDialog(this, forfeitMessage, "Forfeit", JOptionPane.WARNING_MESSAGE);
-                    System.out.println(forfeitMessage); // Log to terminal
-                    enemy.health = 0;
+                    notifier.showMessage("Forfeit", forfeitMessage, JOptionPane.WARNING_MESSAGE);
+                    notifier.log(forfeitMessage);
+                    enemy.setHealth(0);
                     break;
                 }
 
-                String action = options[choice];
-                String attackResult = executePlayerAction(player, enemy, action);
-                JOptionPane.showMessageDialog(this, attackResult, "Player Action", JOptionPane.INFORMATION_MESSAGE);
-                System.out.println(attackResult); // Log to terminal
+                long event = DuelRules.executePlayerAction(player, enemy, choice, combatLog);
+                notifier.combatEvent("Player Action", combatLog, event);
 
                 if (enemy.getHealth() <= 0) {
                     String victoryMessage = "You defeated the enemy!";
-                    JOptionPane.showMessageDialog(this, victoryMessage, "Victory", JOptionPane.INFORMATION_MESSAGE);
-                    System.out.println(victoryMessage); // Log to terminal
-                    return;
+                    notifier.showMessage("Victory", victoryMessage, JOptionPane.INFORMATION_MESSAGE);
+                    notifier.log(victoryMessage);
+                    return turns;
                 }
             } else {
                 // Enemy's turn: enemy attacks
-                String attackResult = enemy.attack(player);
-                JOptionPane.showMessageDialog(this, attackResult, "Enemy Action", JOptionPane.INFORMATION_MESSAGE);
-                System.out.println(attackResult); // Log to terminal
+                long event = enemy.attack(player, combatLog);
+                notifier.combatEvent("Enemy Action", combatLog, event);
 
                 if (player.getHealth() <= 0) {
                     String defeatMessage = "You were defeated by the enemy.";
-                    JOptionPane.showMessageDialog(this, defeatMessage, "Defeat", JOptionPane.ERROR_MESSAGE);
-                    System.out.println(defeatMessage); // Log to terminal
-                    System.exit(0);
+                    notifier.showMessage("Defeat", defeatMessage, JOptionPane.ERROR_MESSAGE);
+                    notifier.log(defeatMessage);
+                    exitAction.run();
                 }
             }
             // Toggle turn
+            DuelRules.endTurn(player, enemy);
             playerTurn = !playerTurn;
         }
+        return turns;
     }
 
     /**
-     * Provides attack options based on the player's archetype.
+     * Settles a duel at once for {@link #startDuel(Character, Enemy, boolean)}, with the player
+     * always attacking: one ending is drawn from the duel's exact odds, on the enemy's own
+     * stream of choices, and both sides are left as it says. Duels the odds cannot cover are
+     * played out as usual.
      *
-     * @param player the player's character
-     * @return an array of action options
-     */
-    private String[] getPlayerOptions(Character player) {
-        switch (player.getArchetype()) {
-            case "Knight":
-                return new String[]{"Sword Slash", "Shield Block"};
-            case "Wizard":
-                return new String[]{"Fireball", "Magic Shield"};
-            case "Deprived":
-                return new String[]{"Basic Attack", "Magic Strike"};
-            default:
-                return new String[]{"Attack"};
+     * @param player     the player's character
+     * @param enemy      the enemy character
+     * @param enemyFirst true if the enemy attacks first, false if the player attacks first
+     * @return the number of turns the duel took
+     */
+    private int resolveDuel(Character player, Enemy enemy, boolean enemyFirst) {
+        DuelOdds odds = DuelOdds.of(player, enemy, enemyFirst);
+        if (odds == null) {
+            return fightDuel(player, enemy, enemyFirst);
         }
+        int ending = odds.sample(enemy.getRandom());
+        int turns = odds.getTurns(ending);
+        player.setHealth(odds.getPlayerHealth(ending));
+        enemy.setHealth(odds.getEnemyHealth(ending));
+        DuelRules.endTurns(player, enemy, turns);
+        notifier.logEvent(combatLog, combatLog.record(player, enemy, CombatLog.DUEL_AUTO_RESOLVED,
+                CombatLog.autoResolved(turns, odds.getPlayerWinProbability())));
+
+        if (enemy.getHealth() <= 0) {
+            String victoryMessage = "You defeated the enemy!";
+            notifier.showMessage("Victory", victoryMessage, JOptionPane.INFORMATION_MESSAGE);
+            notifier.log(victoryMessage);
+        } else {
+            String defeatMessage = "You were defeated by the enemy.";
+            notifier.showMessage("Defeat", defeatMessage, JOptionPane.ERROR_MESSAGE);
+            notifier.log(defeatMessage);
+            exitAction.run();
+        }
+        return turns;
     }
 
     /**
-     * Executes the player's chosen action and applies its effects.
+     * Chooses whether encounters are settled at once from the duel's odds, with the player
+     * always attacking, or played out turn by turn with the player policy.
      *
-     * @param player the player's character
-     * @param enemy  the enemy character
-     * @param action the chosen action
-     * @return a description of the action performed
-     */
-    private String executePlayerAction(Character player, Enemy enemy, String action) {
-        switch (player.getArchetype()) {
-            case "Knight":
-                return executeKnightAction((Knight) player, enemy, action);
-            case "Wizard":
-                return executeWizardAction((Wizard) player, enemy, action);
-            case "Deprived":
-                return executeDeprivedAction((Deprived) player, enemy, action);
-            default:
-                return player.attack(enemy);
+     * @param autoResolveDuels true to settle duels at once
+     */
+    public void setAutoResolveDuels(boolean autoResolveDuels) {
+        this.autoResolveDuels = autoResolveDuels;
+    }
+
+    /**
+     * Checks whether encounters are settled at once from the duel's odds.
+     *
+     * @return true if duels are auto-resolved
+     */
+    public boolean isAutoResolveDuels() {
+        return autoResolveDuels;
+    }
+
+    /**
+     * Asks the player to choose a duel action through a dialog.
+     *
+     * @param player  the player's character
+     * @param enemy   the enemy character
+     * @param options the actions available to the player
+     * @return the index of the chosen option, or {@link PlayerPolicy#FORFEIT} if the dialog was closed
+     */
+    private int chooseActionByDialog(Character player, Enemy enemy, String[] options) {
+        int choice = JOptionPane.showOptionDialog(this,
+                "Choose your action:",
+                "Your Turn",
+                JOptionPane.DEFAULT_OPTION,
+                JOptionPane.INFORMATION_MESSAGE,
+                null,
+                options,
+                options[0]);
+        return choice == JOptionPane.CLOSED_OPTION ? PlayerPolicy.FORFEIT : choice;
+    }
+
+    /**
+     * Replaces the policy that chooses the player's duel actions. By default the player
+     * is asked through a dialog.
+     *
+     * @param playerPolicy the policy to use for subsequent duels
+     */
+    public void setPlayerPolicy(PlayerPolicy playerPolicy) {
+        this.playerPolicy = playerPolicy;
+    }
+
+    /**
+     * Gets the policy that chooses the player's duel actions.
+     *
+     * @return the current player policy
+     */
+    public PlayerPolicy getPlayerPolicy() {
+        return playerPolicy;
+    }
+
+    /**
+     * Replaces what happens when the game ends, by victory at an end spot or defeat in a duel.
+     * By default the program exits; a headless replay only notes that the game is over.
+     *
+     * @param exitAction the action to run when the game ends
+     */
+    public void setExitAction(Runnable exitAction) {
+        this.exitAction = exitAction;
+    }
+
+    /**
+     * Replaces the notifier that receives the game's messages. By default messages are
+     * shown as dialogs and logged to the terminal.
+     *
+     * @param notifier the notifier to use
+     */
+    public void setNotifier(GameNotifier notifier) {
+        this.notifier = notifier;
+    }
+
+    /**
+     * Sets a callback that is run on the event dispatch thread after every painted frame.
+     *
+     * @param frameListener the callback, or null for none
+     */
+    public void setFrameListener(Runnable frameListener) {
+        this.frameListener = frameListener;
+    }
+
+    /**
+     * Moves the player to the given tile without any checks. Used by tools and benchmarks
+     * that need a known starting position.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     */
+    void setPlayerPosition(int x, int y) {
+        moveSight(x, y);
+        publishFrame();
+    }
+
+    /**
+     * Places or removes a static object on the given tile.
+     *
+     * @param x       the x-coordinate
+     * @param y       the y-coordinate
+     * @param blocked true to place a static object, false to remove it
+     */
+    void setStaticObject(int x, int y, boolean blocked) {
+        pathfinder.setBlocked(x, y, blocked);
+        reachability.tileChanged(x, y);
+        invalidateTerrain(x, y);
+        if (fieldOfView.tileChanged(x, y)) {
+            repaintSight(playerX, playerY);
         }
+        publishFrameIfInSight(x, y);
     }
 
     /**
-     * Executes a Knight's action.
+     * Places a friendly NPC on the given tile.
      *
-     * @param knight the Knight character
-     * @param enemy  the enemy character
-     * @param action the chosen action
-     * @return a description of the action performed
+     * @param x the x-coordinate
+     * @param y the y-coordinate
      */
-    private String executeKnightAction(Knight knight, Enemy enemy, String action) {
-        switch (action) {
-            case "Sword Slash":
-                return knight.attack(enemy);
-            case "Shield Block":
-                // Shield Block could reduce incoming damage next turn
-                // For simplicity, we'll implement it as a temporary strength boost
-                knight.strength += 2; // Temporary boost
-                String shieldMessage = knight.getName() + " uses Shield Block! Strength temporarily increased by 2.";
-                System.out.println(shieldMessage); // Log to terminal
-                return shieldMessage;
-            default:
-                return knight.attack(enemy);
+    void addFriendlyNPC(int x, int y) {
+        spawnNPC(x, y, FRIENDLY_NPC, entities.create(EntityStore.FRIENDLY_NPC));
+        repaintTile(x, y);
+        publishFrameIfInSight(x, y);
+    }
+
+    /**
+     * Adds an enemy NPC with the attributes of a new enemy to the given tile.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     */
+    void addEnemyNPC(int x, int y) {
+        spawnNPC(x, y, ENEMY_NPC, enemyPool.createEntity());
+        repaintTile(x, y);
+        publishFrameIfInSight(x, y);
+    }
+
+    /**
+     * Removes any static object and NPC from the given tile.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     */
+    void clearTile(int x, int y) {
+        pathfinder.setBlocked(x, y, false);
+        reachability.tileChanged(x, y);
+        for (int npc = npcs.find(x, y, -1); npc >= 0; npc = npcs.find(x, y, -1)) {
+            removeNPC(npc);
+        }
+        invalidateTerrain(x, y);
+        if (fieldOfView.tileChanged(x, y)) {
+            repaintSight(playerX, playerY);
         }
+        publishFrameIfInSight(x, y);
     }
 
     /**
-     * Executes a Wizard's action.
+     * Gets the log of the most recent duel events.
      *
-     * @param wizard the Wizard character
-     * @param enemy  the enemy character
-     * @param action the chosen action
-     * @return a description of the action performed
+     * @return the combat log
      */
-    private String executeWizardAction(Wizard wizard, Enemy enemy, String action) {
-        switch (action) {
-            case "Fireball":
-                return wizard.attack(enemy);
-            case "Magic Shield":
-                // Magic Shield could reduce incoming damage next turn
-                // For simplicity, we'll implement it as a temporary magic boost
-                wizard.magic += 3; // Temporary boost
-                String shieldMessage = wizard.getName() + " casts Magic Shield! Magic temporarily increased by 3.";
-                System.out.println(shieldMessage); // Log to terminal
-                return shieldMessage;
-            default:
-                return wizard.attack(enemy);
+    public CombatLog getCombatLog() {
+        return combatLog;
+    }
+
+    /**
+     * Gets the player's field of view and the tiles explored so far.
+     *
+     * @return the field of view
+     */
+    public FieldOfView getFieldOfView() {
+        return fieldOfView;
+    }
+
+    /**
+     * Gets the pathfinder over this map's static objects.
+     *
+     * @return the pathfinder
+     */
+    public Pathfinder getPathfinder() {
+        return pathfinder;
+    }
+
+    /**
+     * Gets the shared flow field toward one of the end spots.
+     *
+     * @param index the index of the end spot
+     * @return the flow field, built on first use and kept up to date as tiles change
+     */
+    public FlowField getEndSpotFlowField(int index) {
+        Point endSpot = endSpots[index];
+        return pathfinder.flowFieldTo(endSpot.x, endSpot.y);
+    }
+
+    /**
+     * Gets the number of columns visible in the viewport.
+     *
+     * @return the viewport width in tiles
+     */
+    private int getViewCols() {
+        int width = getWidth() > 0 ? getWidth() : getPreferredSize().width;
+        return Math.min(cols, (width + tileSize - 1) / tileSize);
+    }
+
+    /**
+     * Gets the number of rows visible in the viewport.
+     *
+     * @return the viewport height in tiles
+     */
+    private int getViewRows() {
+        int height = getHeight() > 0 ? getHeight() : getPreferredSize().height;
+        return Math.min(rows, (height + tileSize - 1) / tileSize);
+    }
+
+    /**
+     * Centers the camera on the player, keeping the viewport inside the map.
+     *
+     * @return true if the camera moved
+     */
+    private boolean followPlayer() {
+        int newCameraX = cameraFor(playerX, getViewCols(), cols);
+        int newCameraY = cameraFor(playerY, getViewRows(), rows);
+        if (newCameraX == cameraX && newCameraY == cameraY) {
+            return false;
         }
+        cameraX = newCameraX;
+        cameraY = newCameraY;
+        return true;
     }
 
     /**
-     * Executes a Deprived character's action.
+     * Gets the first tile of the viewport along one axis, centered on the player but kept
+     * inside the map.
      *
-     * @param deprived the Deprived character
-     * @param enemy    the enemy character
-     * @param action   the chosen action
-     * @return a description of the action performed
+     * @param player    the player's coordinate along the axis
+     * @param viewTiles the size of the viewport in tiles
+     * @param mapTiles  the size of the map in tiles
+     * @return the first tile in view
      */
-    private String executeDeprivedAction(Deprived deprived, Enemy enemy, String action) {
-        switch (action) {
-            case "Basic Attack":
-                return deprived.attack(enemy);
-            case "Magic Strike":
-                // For simplicity, using the same attack method with possibly different messaging
-                return deprived.attack(enemy); // You can customize this further if desired
-            default:
-                return deprived.attack(enemy);
+    private static int cameraFor(int player, int viewTiles, int mapTiles) {
+        return Math.max(0, Math.min(mapTiles - viewTiles, player - viewTiles / 2));
+    }
+
+    /**
+     * Moves the player, updates what the player sees, and repaints what changed on screen.
+     *
+     * @param x the new x-coordinate
+     * @param y the new y-coordinate
+     */
+    private void moveSight(int x, int y) {
+        int oldX = playerX;
+        int oldY = playerY;
+        playerX = x;
+        playerY = y;
+        boolean sightChanged = fieldOfView.update(x, y);
+        if (followPlayer()) {
+            repaint(); // Every visible tile moved on screen
+        } else if (sightChanged) {
+            // Tiles leaving sight dim and tiles entering it clear up
+            repaintSight(oldX, oldY);
+            repaintSight(x, y);
+        } else {
+            repaintTile(oldX, oldY);
+            repaintTile(x, y);
         }
     }
 
     /**
-     * Optionally removes an NPC from the specified array after interaction.
+     * Repaints the tiles the player could see from the given tile.
      *
-     * @param npcs the array of NPCs
-     * @param npc  the NPC to remove
+     * @param x the x-coordinate
+     * @param y the y-coordinate
      */
-    private void removeNPC(Point[] npcs, Point npc) {
-        for (int i = 0; i < npcs.length; i++) {
-            if (npcs[i] != null && npcs[i].equals(npc)) {
-                npcs[i] = null;
-                break;
+    private void repaintSight(int x, int y) {
+        int radius = fieldOfView.getRadius();
+        repaint((x - radius - cameraX) * tileSize, (y - radius - cameraY) * tileSize,
+                (2 * radius + 1) * tileSize + 1, (2 * radius + 1) * tileSize + 1);
+    }
+
+    /**
+     * Schedules a repaint of a single tile, including the grid line on its right and bottom edges.
+     *
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     */
+    private void repaintTile(int x, int y) {
+        repaint((x - cameraX) * tileSize, (y - cameraY) * tileSize, tileSize + 1, tileSize + 1);
+    }
+
+    /**
+     * Queues a tile whose static object changed to be re-rendered in the cached terrain chunks
+     * before the next paint, and repaints it.
+     *
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     */
+    private void invalidateTerrain(int x, int y) {
+        changedTerrain.add(chunkKey(x, y));
+        repaintTile(x, y);
+    }
+
+    /**
+     * Readies the cached terrain chunks for a frame: drops them all if they show another level
+     * than the frame, and re-renders the queued tiles. Called on the event dispatch thread
+     * before painting.
+     *
+     * @param level the level being drawn
+     */
+    private void renderChangedTerrain(Level level) {
+        if (level != terrainLevel) {
+            terrainCache.clear();
+            terrainLevel = level;
+        }
+        for (Long tile = changedTerrain.poll(); tile != null; tile = changedTerrain.poll()) {
+            rerenderTerrain(level, (int) (long) tile, (int) (tile >>> 32));
+        }
+    }
+
+    /**
+     * Re-renders a tile in the cached terrain chunks. A tile's left and top grid lines also
+     * border the chunks to its left and above.
+     *
+     * @param level the level being drawn
+     * @param x     the x-coordinate of the tile
+     * @param y     the y-coordinate of the tile
+     */
+    private void rerenderTerrain(Level level, int x, int y) {
+        int chunkX = x / TERRAIN_CHUNK_TILES;
+        int chunkY = y / TERRAIN_CHUNK_TILES;
+        int firstChunkX = x % TERRAIN_CHUNK_TILES == 0 ? Math.max(0, chunkX - 1) : chunkX;
+        int firstChunkY = y % TERRAIN_CHUNK_TILES == 0 ? Math.max(0, chunkY - 1) : chunkY;
+        for (int cy = firstChunkY; cy <= chunkY; cy++) {
+            for (int cx = firstChunkX; cx <= chunkX; cx++) {
+                BufferedImage chunk = terrainCache.get(chunkKey(cx, cy));
+                if (chunk != null) {
+                    Graphics2D g = chunk.createGraphics();
+                    try {
+                        g.translate(-cx * TERRAIN_CHUNK_TILES * tileSize, -cy * TERRAIN_CHUNK_TILES * tileSize);
+                        renderTerrain(g, level, x, y, x, y);
+                    } finally {
+                        g.dispose();
+                    }
+                }
             }
         }
     }
 
-    @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
+    private static long chunkKey(int chunkX, int chunkY) {
+        return ((long) chunkY << 32) | chunkX;
+    }
+
+    /**
+     * Gets the rendered terrain of a chunk of tiles, rendering it if it is not cached.
+     *
+     * @param level  the level being drawn
+     * @param chunkX the chunk column
+     * @param chunkY the chunk row
+     * @return the chunk image, including the grid line on its right and bottom edges
+     */
+    private BufferedImage getTerrainChunk(Level level, int chunkX, int chunkY) {
+        long key = chunkKey(chunkX, chunkY);
+        BufferedImage chunk = terrainCache.get(key);
+        if (chunk == null) {
+            int size = TERRAIN_CHUNK_TILES * tileSize + 1;
+            GraphicsConfiguration config = getGraphicsConfiguration();
+            chunk = config != null
+                    ? config.createCompatibleImage(size, size)
+                    : new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = chunk.createGraphics();
+            try {
+                int minCol = chunkX * TERRAIN_CHUNK_TILES;
+                int minRow = chunkY * TERRAIN_CHUNK_TILES;
+                g.translate(-minCol * tileSize, -minRow * tileSize);
+                renderTerrain(g, level, minCol, minRow,
+                        Math.min(cols, minCol + TERRAIN_CHUNK_TILES) - 1, Math.min(rows, minRow + TERRAIN_CHUNK_TILES) - 1);
+            } finally {
+                g.dispose();
+            }
+            terrainCache.put(key, chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * Renders a rectangle of terrain tiles in map pixel coordinates. Drawing is clipped to the
+     * tiles themselves, including the shared grid line on their right and bottom edges, so
+     * neighbouring tiles are untouched.
+     *
+     * @param g      the graphics to draw on
+     * @param level  the level whose static objects and end spots are drawn
+     * @param minCol the first column, inclusive
+     * @param minRow the first row, inclusive
+     * @param maxCol the last column, inclusive
+     * @param maxRow the last row, inclusive
+     */
+    private void renderTerrain(Graphics2D g, Level level, int minCol, int minRow, int maxCol, int maxRow) {
+        TileLayer staticObjects = level.getStaticObjects();
+        g.setClip(minCol * tileSize, minRow * tileSize,
+                (maxCol - minCol + 1) * tileSize + 1, (maxRow - minRow + 1) * tileSize + 1);
+        // The neighbours to the right and below own the far grid lines
+        int lastCol = Math.min(cols - 1, maxCol + 1);
+        int lastRow = Math.min(rows - 1, maxRow + 1);
+
+        g.setColor(getBackground());
+        g.fillRect(minCol * tileSize, minRow * tileSize,
+                (maxCol - minCol + 1) * tileSize + 1, (maxRow - minRow + 1) * tileSize + 1);
 
         // Draw grid
         g.setColor(Color.LIGHT_GRAY);
-        for (int row = 0; row < rows; row++) {
-            for (int col = 0; col < cols; col++) {
+        for (int row = minRow; row <= lastRow; row++) {
+            for (int col = minCol; col <= lastCol; col++) {
                 g.drawRect(col * tileSize, row * tileSize, tileSize, tileSize);
             }
         }
 
         // Draw static objects
         g.setColor(Color.GREEN);
-        for (int row = 0; row < rows; row++) {
-            for (int col = 0; col < cols; col++) {
-                if (staticObjects[row][col]) {
+        for (int row = minRow; row <= lastRow; row++) {
+            for (int col = minCol; col <= lastCol; col++) {
+                if (staticObjects.get(col, row)) {
                     g.fillRect(col * tileSize, row * tileSize, tileSize, tileSize);
                 }
             }
         }
 
-        // Draw friendly NPCs
-        g.setColor(Color.BLUE);
-        for (Point npc : friendlyNPCs) {
-            if (npc != null) {
-                g.fillRect(npc.x * tileSize, npc.y * tileSize, tileSize, tileSize);
+        // Draw end spots
+        g.setColor(new Color(128, 0, 128)); // Purple color
+        for (Point endSpot : level.getEndSpots()) {
+            if (endSpot.x >= minCol && endSpot.x <= maxCol && endSpot.y >= minRow && endSpot.y <= maxRow) {
+                g.fillOval(endSpot.x * tileSize, endSpot.y * tileSize, tileSize, tileSize);
+            }
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        GameEvents.Frame event = new GameEvents.Frame();
+        event.begin();
+        long start = System.nanoTime();
+        int tiles = paintMap(g);
+        FRAME_NANOS.record(System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.tiles = tiles;
+            event.commit();
+        }
+        if (frameListener != null) {
+            frameListener.run();
+        }
+    }
+
+    /**
+     * Paints the latest published frame for {@link #paintComponent(Graphics)}, holding it so the
+     * simulation does not capture into it meanwhile.
+     *
+     * @param g the graphics to paint with
+     * @return the number of tiles inside the clip
+     */
+    private int paintMap(Graphics g) {
+        super.paintComponent(g);
+        FrameState frame = frames.acquire();
+        try {
+            renderChangedTerrain(frame.getLevel());
+            return paintFrame(g, frame);
+        } finally {
+            frames.release(frame);
+        }
+    }
+
+    /**
+     * Paints the part of the map inside the clip from a published frame. The camera is
+     * centered on the frame's player for the panel's current size.
+     *
+     * @param g     the graphics to paint with
+     * @param frame the frame to draw
+     * @return the number of tiles inside the clip
+     */
+    private int paintFrame(Graphics g, FrameState frame) {
+        int cameraX = cameraFor(frame.getPlayerX(), getViewCols(), cols);
+        int cameraY = cameraFor(frame.getPlayerY(), getViewRows(), rows);
+
+        // Only the tiles inside the clip need drawing; after a move that is just a few tiles
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        int minCol = Math.max(0, cameraX + clip.x / tileSize);
+        int minRow = Math.max(0, cameraY + clip.y / tileSize);
+        int maxCol = Math.min(cols - 1, cameraX + (clip.x + clip.width - 1) / tileSize);
+        int maxRow = Math.min(rows - 1, cameraY + (clip.y + clip.height - 1) / tileSize);
+        if (minCol > maxCol || minRow > maxRow) {
+            return 0;
+        }
+
+        // Draw from map pixel coordinates from here on
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            g2.translate(-cameraX * tileSize, -cameraY * tileSize);
+
+            // Draw cached terrain, skipping chunks that have never been seen
+            for (int chunkY = minRow / TERRAIN_CHUNK_TILES; chunkY <= maxRow / TERRAIN_CHUNK_TILES; chunkY++) {
+                for (int chunkX = minCol / TERRAIN_CHUNK_TILES; chunkX <= maxCol / TERRAIN_CHUNK_TILES; chunkX++) {
+                    int chunkCol = chunkX * TERRAIN_CHUNK_TILES;
+                    int chunkRow = chunkY * TERRAIN_CHUNK_TILES;
+                    if (frame.anyExplored(chunkCol, chunkRow, Math.min(cols, chunkCol + TERRAIN_CHUNK_TILES) - 1,
+                            Math.min(rows, chunkRow + TERRAIN_CHUNK_TILES) - 1)) {
+                        g2.drawImage(getTerrainChunk(frame.getLevel(), chunkX, chunkY), chunkCol * tileSize, chunkRow * tileSize, null);
+                    }
+                }
+            }
+
+            // Black out unexplored tiles and dim explored tiles out of sight
+            paintFog(g2, frame, minCol, minRow, maxCol, maxRow);
+
+            // Tint the tiles a move can end on
+            if (frame.getReachable() != null) {
+                paintReachable(g2, frame, minCol, minRow, maxCol, maxRow);
+            }
+
+            // Draw the NPCs in sight; the frame holds no others
+            for (int i = 0; i < frame.getNpcCount(); i++) {
+                int x = frame.getNpcX(i);
+                int y = frame.getNpcY(i);
+                if (x < minCol || x > maxCol || y < minRow || y > maxRow) {
+                    continue;
+                }
+                if (frame.getNpcType(i) == FRIENDLY_NPC) {
+                    g2.setColor(Color.BLUE);
+                    g2.fillRect(x * tileSize, y * tileSize, tileSize, tileSize);
+                } else {
+                    g2.setColor(Color.MAGENTA);
+                    g2.fillOval(x * tileSize, y * tileSize, tileSize, tileSize);
+                }
             }
+
+            // Draw player
+            g2.setColor(Color.RED);
+            g2.fillOval(frame.getPlayerX() * tileSize, frame.getPlayerY() * tileSize, tileSize, tileSize);
+        } finally {
+            g2.dispose();
         }
+        return (maxCol - minCol + 1) * (maxRow - minRow + 1);
+    }
 
-        // Draw end spots
-        g.setColor(new Color(128, 0, 128)); // Purple color
-        for (Point endSpot : endSpots) {
-            g.fillOval(endSpot.x * tileSize, endSpot.y * tileSize, tileSize, tileSize);
+    /**
+     * Paints the movement overlay over a range of tiles. Only tiles in sight are tinted, so the
+     * overlay gives nothing away about the fog.
+     *
+     * @param g      the graphics to paint with, in map pixel coordinates
+     * @param frame  the frame being drawn, with the area the overlay shows
+     * @param minCol the left column
+     * @param minRow the top row
+     * @param maxCol the right column
+     * @param maxRow the bottom row
+     */
+    private void paintReachable(Graphics2D g, FrameState frame, int minCol, int minRow, int maxCol, int maxRow) {
+        int playerX = frame.getPlayerX();
+        int playerY = frame.getPlayerY();
+        Reachability.Area area = frame.getReachable();
+        int range = area.getRange();
+        Point hovered = hoveredTile;
+        for (int row = Math.max(minRow, playerY - range); row <= Math.min(maxRow, playerY + range); row++) {
+            for (int col = Math.max(minCol, playerX - range); col <= Math.min(maxCol, playerX + range); col++) {
+                if (area.contains(col, row) && frame.isVisible(col, row)) {
+                    boolean targeted = hovered != null && hovered.x == col && hovered.y == row;
+                    g.setColor(targeted ? TARGETED : REACHABLE);
+                    g.fillRect(col * tileSize + 1, row * tileSize + 1, tileSize - 1, tileSize - 1);
+                }
+            }
         }
+    }
 
-        // Draw enemy NPCs as hidden (e.g., with a different color or not at all)
-        // Uncomment the following lines if you want to visualize enemy positions
-        /*
-        g.setColor(Color.MAGENTA);
-        for (Point npc : enemyNPCs) {
-            if (npc != null) {
-                g.fillOval(npc.x * tileSize, npc.y * tileSize, tileSize, tileSize);
+    /**
+     * Paints the fog of war over a range of tiles, one fill per run of equally fogged tiles.
+     *
+     * @param g      the graphics to paint with, in map pixel coordinates
+     * @param frame  the frame being drawn
+     * @param minCol the left column
+     * @param minRow the top row
+     * @param maxCol the right column
+     * @param maxRow the bottom row
+     */
+    private void paintFog(Graphics2D g, FrameState frame, int minCol, int minRow, int maxCol, int maxRow) {
+        for (int row = minRow; row <= maxRow; row++) {
+            int runStart = minCol;
+            Color runColor = fogAt(frame, minCol, row);
+            for (int col = minCol + 1; col <= maxCol + 1; col++) {
+                Color color = col <= maxCol ? fogAt(frame, col, row) : null;
+                if (col > maxCol || color != runColor) {
+                    if (runColor != null) {
+                        g.setColor(runColor);
+                        g.fillRect(runStart * tileSize, row * tileSize, (col - runStart) * tileSize, tileSize);
+                    }
+                    runStart = col;
+                    runColor = color;
+                }
             }
         }
-        */
+    }
 
-        // Draw player
-        g.setColor(Color.RED);
-        g.fillOval(playerX * tileSize, playerY * tileSize, tileSize, tileSize);
+    /**
+     * Gets the fog over a tile.
+     *
+     * @param frame the frame being drawn
+     * @param x     the x-coordinate
+     * @param y     the y-coordinate
+     * @return black if unexplored, {@link #FOG} if explored but out of sight, or null if in sight
+     */
+    private Color fogAt(FrameState frame, int x, int y) {
+        if (frame.isVisible(x, y)) {
+            return null;
+        }
+        return frame.isExplored(x, y) ? FOG : Color.BLACK;
     }
-}
\ No newline at end of file
+}
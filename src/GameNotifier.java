@@ -0,0 +1,93 @@
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * The GameNotifier interface receives the messages the game reports to the player, such as
+ * encounter announcements and duel results. Swing front ends show them as dialogs, while
+ * headless runs can discard them with {@link #SILENT}.
+ */
+public interface GameNotifier {
+
+    /**
+     * A notifier that discards every message.
+     */
+    GameNotifier SILENT = new GameNotifier() {
+        @Override
+        public void showMessage(String title, String message, int messageType) {
+        }
+
+        @Override
+        public void log(String message) {
+        }
+
+        @Override
+        public void combatEvent(String title, CombatLog log, long event) {
+            // Never formatted
+        }
+
+        @Override
+        public void logEvent(CombatLog log, long event) {
+            // Never formatted
+        }
+    };
+
+    /**
+     * Shows a message that the player has to acknowledge.
+     *
+     * @param title       the title of the message
+     * @param message     the message text
+     * @param messageType a {@link JOptionPane} message type
+     */
+    void showMessage(String title, String message, int messageType);
+
+    /**
+     * Logs a message to the terminal.
+     *
+     * @param message the message text
+     */
+    void log(String message);
+
+    /**
+     * Reports a combat event. The event is only formatted as text if the notifier shows or logs it.
+     *
+     * @param title the title of the message
+     * @param log   the log holding the event
+     * @param event the sequence number of the event
+     */
+    default void combatEvent(String title, CombatLog log, long event) {
+        String message = log.format(event);
+        showMessage(title, message, JOptionPane.INFORMATION_MESSAGE);
+        log(message);
+    }
+
+    /**
+     * Logs a combat event without showing it. The event is only formatted as text if the
+     * notifier logs it.
+     *
+     * @param log   the log holding the event
+     * @param event the sequence number of the event
+     */
+    default void logEvent(CombatLog log, long event) {
+        log(log.format(event));
+    }
+
+    /**
+     * Creates a notifier that shows dialogs over the given component and logs to standard output.
+     *
+     * @param parent the component the dialogs are centered on
+     * @return the notifier
+     */
+    static GameNotifier dialogs(Component parent) {
+        return new GameNotifier() {
+            @Override
+            public void showMessage(String title, String message, int messageType) {
+                JOptionPane.showMessageDialog(parent, message, title, messageType);
+            }
+
+            @Override
+            public void log(String message) {
+                System.out.println(message);
+            }
+        };
+    }
+}
@@ -0,0 +1,178 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * The GameRandom class is the single source of randomness in a game. It is created from one
+ * master seed and hands out independent {@link SplittableRandom} streams, one per subsystem
+ * and, where work is spread over many entities or threads, one per entity. Each stream's seed
+ * is derived from the master seed and the stream's identity alone, so the same master seed
+ * always gives the same game, no matter in which order or on which threads streams are used,
+ * and no two users ever share a generator.
+ */
+public final class GameRandom {
+
+    /**
+     * The subsystems that draw random numbers, each from its own stream.
+     */
+    public enum Stream {
+        /** Static objects and NPC placement. */
+        MAP_GENERATION,
+        /** Friendly NPC boosts and who strikes first in a duel. */
+        GAMEPLAY,
+        /** The player character's own choices in combat. */
+        PLAYER_COMBAT,
+        /** Enemies' choices in combat, one stream per enemy entity. */
+        ENEMY_COMBAT,
+        /** The archetype picked when the player asks for a random one. */
+        CHARACTER_SELECTION,
+        /** Headless duel simulations, one stream per batch of duels. */
+        SIMULATION
+    }
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final long masterSeed;
+
+    /**
+     * Constructor for the GameRandom class.
+     *
+     * @param masterSeed the seed every stream is derived from
+     */
+    public GameRandom(long masterSeed) {
+        this.masterSeed = masterSeed;
+    }
+
+    /**
+     * Creates a GameRandom with an unpredictable master seed, for a new game.
+     *
+     * @return the new GameRandom
+     */
+    public static GameRandom fromEntropy() {
+        return new GameRandom(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Gets the master seed, which is all it takes to reproduce the game's randomness.
+     *
+     * @return the master seed
+     */
+    public long getMasterSeed() {
+        return masterSeed;
+    }
+
+    /**
+     * Derives the seed of a subsystem's stream, for code that seeds its own generators.
+     *
+     * @param stream the subsystem
+     * @return the seed
+     */
+    public long seedFor(Stream stream) {
+        return mix(masterSeed + (stream.ordinal() + 1) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Creates a subsystem's stream. Every call starts the stream over, so a subsystem creates
+     * it once and keeps it.
+     *
+     * @param stream the subsystem
+     * @return the stream
+     */
+    public SplittableRandom stream(Stream stream) {
+        return new SplittableRandom(seedFor(stream));
+    }
+
+    /**
+     * Creates the stream of one entity, or one batch of work, within a subsystem.
+     *
+     * @param stream the subsystem
+     * @param id     the entity's identifier, such as its handle
+     * @return the stream
+     */
+    public SplittableRandom stream(Stream stream, long id) {
+        return new SplittableRandom(seedFor(stream, id));
+    }
+
+    /**
+     * Derives the seed of one entity's stream within a subsystem, for reseeding a
+     * {@link Generator} instead of creating a stream.
+     *
+     * @param stream the subsystem
+     * @param id     the entity's identifier, such as its handle
+     * @return the seed
+     */
+    public long seedFor(Stream stream, long id) {
+        return hash(seedFor(stream), id);
+    }
+
+    /**
+     * The Generator class draws the same numbers as a {@link SplittableRandom} created with the
+     * same seed, but can be reseeded in place. Objects that are recycled, like the enemies of an
+     * {@link EnemyPool}, keep one generator and reseed it instead of creating a stream each time.
+     */
+    public static final class Generator implements RandomGenerator {
+        private long seed;
+
+        /**
+         * Constructor for the Generator class.
+         *
+         * @param seed the initial seed
+         */
+        public Generator(long seed) {
+            this.seed = seed;
+        }
+
+        /**
+         * Starts the generator over from a seed.
+         *
+         * @param seed the seed
+         */
+        public void reseed(long seed) {
+            this.seed = seed;
+        }
+
+        /**
+         * Gets the generator's state without drawing from it.
+         *
+         * @return the seed that a new generator continues this one's numbers from
+         */
+        public long getState() {
+            return seed;
+        }
+
+        @Override
+        public long nextLong() {
+            seed += GOLDEN_GAMMA;
+            return mix(seed);
+        }
+
+        @Override
+        public int nextInt() {
+            // The 32-bit finalizer of SplittableRandom, which the bounded and boolean draws use
+            seed += GOLDEN_GAMMA;
+            long z = (seed ^ (seed >>> 33)) * 0x62A9D9ED799705F5L;
+            return (int) (((z ^ (z >>> 28)) * 0xCB24D0A5C88C35B3L) >>> 32);
+        }
+    }
+
+    /**
+     * Derives a random-looking number from a seed and an identifier, for hot loops that need
+     * one random number per entity and cannot afford a generator each.
+     *
+     * @param seed the seed, such as one drawn from a stream once per turn
+     * @param id   the identifier, such as an entity's tile
+     * @return the derived number
+     */
+    static long hash(long seed, long id) {
+        return mix(seed + (id + 1) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Scrambles a seed with the SplitMix64 finalizer, so that nearby inputs give unrelated seeds.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
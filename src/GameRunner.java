@@ -1,6 +1,13 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Scanner;
+import java.util.random.RandomGenerator;
 
 /**
  * The GameRunner class serves as the main entry point for the Arcane Pathways game.
@@ -12,6 +19,11 @@ public class GameRunner {
     private JTextArea displayArea;
     private Character character;
     private GameMap gameMap;
+    private GameLoop gameLoop;
+    private InputJournal journal;
+    private final Scanner scanner = new Scanner(System.in);
+    private final GameRandom gameRandom = seedFromProperty();
+    private boolean restored; // Loaded from a snapshot rather than generated from the seeds
 
     final int originalTileSize = 16;
     final int scale = 3;
@@ -24,9 +36,21 @@ public class GameRunner {
      * the window, character selection, and game map, and starts the game loop.
      */
     public GameRunner() {
+        this(null);
+    }
+
+    /**
+     * Constructor for a GameRunner that continues a saved game. If the snapshot cannot be
+     * loaded, a new game is started instead.
+     *
+     * @param snapshot the snapshot to load, or null to start a new game
+     */
+    public GameRunner(Path snapshot) {
         setupWindow();
-        chooseCharacter();
-        showGameMap();
+        if (snapshot == null || !loadGame(snapshot)) {
+            chooseCharacter();
+            showGameMap();
+        }
         startGameLoop();
     }
 
@@ -54,8 +78,6 @@ public class GameRunner {
      * Allows the user to choose a character archetype and name their character.
      */
     private void chooseCharacter() {
-        Scanner scanner = new Scanner(System.in);
-
         System.out.print("Choose your character archetype (Deprived, Knight, Wizard, or RANDOM): ");
         displayArea.append("Choose your character archetype (Deprived, Knight, Wizard, or RANDOM):\n");
         String archetype = scanner.nextLine().trim().toLowerCase();
@@ -66,27 +88,20 @@ public class GameRunner {
 
         switch (archetype) {
             case "wizard":
-                character = new Wizard(name);
-                break;
             case "knight":
-                character = new Knight(name);
-                break;
             case "deprived":
-                character = new Deprived(name);
+                character = Character.create(archetype, name, playerRandom());
                 break;
             case "random":
-                int randomChoice = (int) (Math.random() * 3);
-                switch (randomChoice) {
-                    case 0 -> character = new Wizard(name);
-                    case 1 -> character = new Knight(name);
-                    case 2 -> character = new Deprived(name);
-                }
+                int randomChoice = gameRandom.stream(GameRandom.Stream.CHARACTER_SELECTION).nextInt(3);
+                String[] archetypes = {"Wizard", "Knight", "Deprived"};
+                character = Character.create(archetypes[randomChoice], name, playerRandom());
                 archetype = character.getArchetype();
                 break;
             default:
                 System.out.println("Invalid choice! Defaulting to Deprived.");
                 displayArea.append("Invalid choice! Defaulting to Deprived.\n");
-                character = new Deprived(name);
+                character = Character.create("Deprived", name, playerRandom());
                 archetype = "Deprived";
         }
 
@@ -96,50 +111,258 @@ public class GameRunner {
         displayArea.append("\n" + character.getProfile() + "\n");
     }
 
+    /**
+     * Creates the source of a new game's randomness. The master seed can be fixed with the
+     * arcane.seed system property to play the same game again.
+     *
+     * @return the GameRandom for the game
+     */
+    private static GameRandom seedFromProperty() {
+        Long seed = Long.getLong("arcane.seed");
+        return seed != null ? new GameRandom(seed) : GameRandom.fromEntropy();
+    }
+
+    /**
+     * Creates the stream of the player character's own random choices in combat.
+     *
+     * @return the stream
+     */
+    private RandomGenerator playerRandom() {
+        return gameRandom.stream(GameRandom.Stream.PLAYER_COMBAT);
+    }
+
     /**
      * Displays the game map on the game window.
      */
     private void showGameMap() {
-        gameMap = new GameMap();
+        gameMap = new GameMap(maxScreenCol, maxScreenRow, gameRandom);
         window.add(gameMap, BorderLayout.CENTER);
         window.revalidate();
         window.repaint();
     }
 
     /**
-     * Starts the game loop, allowing the player to move their character on the map.
+     * Loads a saved game and displays its map on the game window.
+     *
+     * @param snapshot the snapshot to load
+     * @return true if the game was loaded
      */
-    private void startGameLoop() {
-        Scanner scanner = new Scanner(System.in);
+    private boolean loadGame(Path snapshot) {
+        WorldSnapshot.World world;
+        try {
+            world = WorldSnapshot.load(snapshot);
+        } catch (IOException e) {
+            String errorMessage = "Could not load " + snapshot + ": " + e.getMessage();
+            System.out.println(errorMessage);
+            displayArea.append(errorMessage + "\n");
+            return false;
+        }
+        character = world.player();
+        gameMap = world.map();
+        restored = true;
+        String welcomeMessage = "\nWelcome back, " + character.getName() + " the " + character.getArchetype() + "!\n";
+        displayArea.append(welcomeMessage);
+        System.out.println(welcomeMessage); // Log to terminal
+        displayArea.append("\n" + character.getProfile() + "\n");
+        window.add(gameMap, BorderLayout.CENTER);
+        window.revalidate();
+        window.repaint();
+        return true;
+    }
+
+    /**
+     * Saves the game between moves on the simulation thread.
+     *
+     * @param snapshot the snapshot file to write
+     */
+    private void saveGame(Path snapshot) {
+        gameLoop.runOnLoop(() -> {
+            try {
+                Files.createDirectories(snapshot.getParent());
+                WorldSnapshot.save(snapshot, gameMap, character);
+                System.out.println("Game saved to " + snapshot); // Log to terminal
+            } catch (IOException e) {
+                System.out.println("Could not save the game: " + e.getMessage());
+            }
+        });
+    }
 
-        String instructions = "Move your character with: W (up), S (down), A (left), D (right)";
+    /**
+     * Starts the game loop, allowing the player to move their character on the map with the
+     * keyboard or by typing moves in the terminal. Typing STATS prints the loop's timing statistics
+     * and the game's metrics, SAVE saves the game to saves/quicksave.snapshot, and AUTO switches
+     * between playing duels out and settling them at once.
+     */
+    private void startGameLoop() {
+        String instructions = "Move your character with: W (up), S (down), A (left), D (right),"
+                + " or click a highlighted tile to move up to " + character.getMovementRange() + " tiles";
         System.out.println(instructions);
         displayArea.append(instructions + "\n");
-        while (true) {
-            System.out.print("Enter your move: ");
-            displayArea.append("Enter your move: ");
-            String move = scanner.nextLine().trim().toUpperCase();
-
-            if (!gameMap.handleMovement(move, character)) {
-                String invalidMoveMessage = "Invalid move! Either blocked or invalid direction.";
-                System.out.println(invalidMoveMessage);
-                displayArea.append(invalidMoveMessage + "\n");
-            } else {
-                String updatedProfile = character.getProfile();
-                displayArea.setText(updatedProfile + "\n");
-                System.out.println(updatedProfile); // Log updated profile to terminal
+
+        InputQueue input = new InputQueue();
+        bindMoveKeys(input);
+        bindMouse(input);
+        gameLoop = new GameLoop(gameMap, character, input, GameLoop.DEFAULT_TICK_RATE, this::showMoveResult);
+        gameMap.setFrameListener(gameLoop::frameRendered);
+        if (!restored) {
+            startJournal(); // A journal replays from the seeds, which a loaded game has moved on from
+        }
+        gameLoop.start();
+        readMovesFromTerminal(input);
+    }
+
+    /**
+     * Records the session in a journal under the journals directory, so it can be replayed with
+     * {@link JournalReplay}. The game still runs if the journal cannot be created.
+     */
+    private void startJournal() {
+        InputJournal.Header header = new InputJournal.Header(gameRandom.getMasterSeed(), maxScreenCol, maxScreenRow,
+                character.getArchetype(), character.getName());
+        Path path = Path.of("journals", "session-" + Long.toHexString(gameRandom.getMasterSeed()) + ".journal");
+        try {
+            Files.createDirectories(path.getParent());
+            journal = new InputJournal(path, header);
+        } catch (IOException e) {
+            System.out.println("Could not start the session journal: " + e.getMessage());
+            return;
+        }
+        gameMap.setPlayerPolicy(journal.recording(gameMap.getPlayerPolicy()));
+        gameLoop.setJournal(journal);
+        // Trim the journal on the way out; it stays readable even if this never runs
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            gameLoop.stop();
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.out.println("Could not close the session journal: " + e.getMessage());
+            }
+        }, "journal-close"));
+        System.out.println("Recording session to " + path); // Log to terminal
+    }
+
+    /**
+     * Binds W, A, S, D and the arrow keys to moves on the input queue.
+     *
+     * @param input the queue the moves are sent to
+     */
+    private void bindMoveKeys(InputQueue input) {
+        InputMap inputMap = gameMap.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
+        ActionMap actionMap = gameMap.getActionMap();
+        String[][] bindings = {{"W", "UP"}, {"A", "LEFT"}, {"S", "DOWN"}, {"D", "RIGHT"}};
+        for (String[] binding : bindings) {
+            String move = binding[0];
+            inputMap.put(KeyStroke.getKeyStroke("pressed " + move), move);
+            inputMap.put(KeyStroke.getKeyStroke("pressed " + binding[1]), move);
+            actionMap.put(move, new AbstractAction() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    input.offer(move);
+                }
+            });
+        }
+    }
+
+    /**
+     * Shows the tiles the character can move to, highlights the one under the mouse, and sends
+     * a move to the tile that is clicked.
+     *
+     * @param input the queue the moves are sent to
+     */
+    private void bindMouse(InputQueue input) {
+        gameMap.setMovementOverlay(character.getMovementRange());
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                gameMap.setHoveredTile(gameMap.tileAt(e.getX(), e.getY()));
+            }
+
+            @Override
+            public void mouseExited(MouseEvent e) {
+                gameMap.setHoveredTile(null);
             }
 
-            window.repaint();
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                Point tile = gameMap.tileAt(e.getX(), e.getY());
+                if (tile != null && SwingUtilities.isLeftMouseButton(e)) {
+                    input.offer(GameMap.targetMove(tile.x, tile.y));
+                }
+            }
+        };
+        gameMap.addMouseListener(mouse);
+        gameMap.addMouseMotionListener(mouse);
+    }
+
+    /**
+     * Reads moves typed in the terminal on a background thread and sends them to the input queue.
+     *
+     * @param input the queue the moves are sent to
+     */
+    private void readMovesFromTerminal(InputQueue input) {
+        Thread reader = new Thread(() -> {
+            while (true) {
+                System.out.print("Enter your move: ");
+                if (!scanner.hasNextLine()) {
+                    return; // Terminal closed; the keyboard still works
+                }
+                String move = scanner.nextLine().trim().toUpperCase();
+                if (move.equals("STATS")) {
+                    System.out.println(gameLoop.getStats());
+                    System.out.print(Metrics.global().dump());
+                } else if (move.equals("SAVE")) {
+                    saveGame(Path.of("saves", "quicksave.snapshot"));
+                } else if (move.equals("AUTO")) {
+                    toggleAutoResolve();
+                } else {
+                    input.offer(move);
+                }
+            }
+        }, "terminal-input");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Switches duels between playing them out and settling them at once from their odds, between
+     * moves on the simulation thread so that the journal records the switch in its place.
+     */
+    private void toggleAutoResolve() {
+        gameLoop.runOnLoop(() -> {
+            boolean autoResolve = !gameMap.isAutoResolveDuels();
+            gameMap.setAutoResolveDuels(autoResolve);
+            if (journal != null) {
+                journal.recordAutoResolve(autoResolve);
+            }
+            String message = autoResolve ? "Duels are now settled at once, always attacking." : "Duels are now played out.";
+            System.out.println(message); // Log to terminal
+            SwingUtilities.invokeLater(() -> displayArea.append(message + "\n"));
+        });
+    }
+
+    /**
+     * Reports the result of a move. Called on the simulation thread.
+     *
+     * @param move  the move that was handled
+     * @param valid true if the player moved or interacted, false if the move was invalid
+     */
+    private void showMoveResult(String move, boolean valid) {
+        if (!valid) {
+            String invalidMoveMessage = "Invalid move! Either blocked or invalid direction.";
+            System.out.println(invalidMoveMessage);
+            SwingUtilities.invokeLater(() -> displayArea.append(invalidMoveMessage + "\n"));
+        } else {
+            String updatedProfile = character.getProfile();
+            System.out.println(updatedProfile); // Log updated profile to terminal
+            SwingUtilities.invokeLater(() -> displayArea.setText(updatedProfile + "\n"));
         }
     }
 
     /**
      * The main method to launch the game.
      *
-     * @param args command-line arguments (not used)
+     * @param args optionally the path of a saved game to continue
      */
     public static void main(String[] args) {
-        new GameRunner();
+        new GameRunner(args.length > 0 ? Path.of(args[0]) : null);
     }
 }
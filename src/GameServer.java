@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The GameServer class hosts many games at once without a window. Every client that connects
+ * to its local socket gets a {@link GameSession} on a virtual thread of its own, with its own
+ * map and character and a cap on how large a map it may ask for. Sessions block on their
+ * sockets freely, since a parked virtual thread costs a few kilobytes of heap rather than a
+ * platform thread, so the number of sessions is bounded by memory, not by threads.
+ */
+public class GameServer implements AutoCloseable {
+
+    /** The port the server listens on when none is given. */
+    public static final int DEFAULT_PORT = 7777;
+    /** The most heap one session's map may take when no budget is given: enough for 256x256. */
+    public static final long DEFAULT_SESSION_BUDGET = 4L * 1024 * 1024;
+
+    private static final int BACKLOG = 4096;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessions = Executors.newVirtualThreadPerTaskExecutor();
+    private final ServerStats stats = new ServerStats();
+    private final long sessionBudget;
+
+    /**
+     * Constructor for the GameServer class. Binds to the loopback address only, since the
+     * protocol has no authentication.
+     *
+     * @param port          the port to listen on, or 0 for any free port
+     * @param sessionBudget the most heap, in bytes, one session's map may take
+     * @throws IOException if the port cannot be bound
+     */
+    public GameServer(int port, long sessionBudget) throws IOException {
+        this.serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+        this.sessionBudget = sessionBudget;
+    }
+
+    /**
+     * Accepts clients until the server is closed, starting a session for each.
+     *
+     * @throws IOException if accepting fails for a reason other than the server closing
+     */
+    public void serve() throws IOException {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+            socket.setTcpNoDelay(true); // Replies are single short lines
+            sessions.execute(new GameSession(socket, stats, sessionBudget));
+        }
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Gets the statistics of the server's sessions.
+     *
+     * @return the statistics
+     */
+    public ServerStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Stops accepting clients. Sessions already connected play on until their clients leave.
+     *
+     * @throws IOException if the socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        sessions.shutdown();
+    }
+
+    /**
+     * Runs a server and prints its statistics and the game's metrics every ten seconds.
+     *
+     * @param args optionally the port, and the per-session memory budget in bytes
+     * @throws IOException if the server cannot be started
+     */
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        long budget = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_SESSION_BUDGET;
+        try (GameServer server = new GameServer(port, budget)) {
+            System.out.println("Arcane Pathways server listening on port " + server.getPort());
+            Thread.ofPlatform().daemon().start(() -> {
+                while (true) {
+                    try {
+                        TimeUnit.SECONDS.sleep(10);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    System.out.println(server.getStats());
+                    System.out.print(Metrics.global().dump());
+                }
+            });
+            server.serve();
+        }
+    }
+}
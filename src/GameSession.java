@@ -0,0 +1,323 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The GameSession class plays games with one client of a {@link GameServer} over a line-based
+ * text protocol. Each session runs on its own virtual thread and owns its map and character, so
+ * sessions share nothing but the server's statistics. Blocking on the socket only parks the
+ * virtual thread, which lets one JVM hold thousands of sessions.
+ *
+ * <p>The client sends one command per line:</p>
+ * <ul>
+ *     <li>{@code NEW <archetype> <name> [<cols> <rows> [<seed>]]} starts a game, answered with
+ *     {@code OK <x> <y> <cols> <rows> <seed>}</li>
+ *     <li>{@code W}, {@code A}, {@code S} or {@code D} moves, answered with {@code OK <x> <y> <health>},
+ *     {@code BLOCKED <x> <y>} or {@code GAMEOVER <health>}</li>
+ *     <li>{@code GO <x> <y>} moves to a tile within the character's movement range, answered like
+ *     a single step</li>
+ *     <li>{@code AUTO ON} or {@code AUTO OFF} switches between settling duels at once from their
+ *     odds, always attacking, and playing them out, answered with {@code OK}</li>
+ *     <li>{@code PROFILE} answers with {@code OK} and the character's attributes</li>
+ *     <li>{@code QUIT} answers with {@code BYE} and closes the connection</li>
+ * </ul>
+ * <p>The game's messages arrive as {@code MSG <text>} lines before the answer. In a duel the
+ * server sends {@code CHOOSE <index>=<action> ...} and waits for an index or {@code FORFEIT}.
+ * Problems are answered with {@code ERROR <reason>}.</p>
+ */
+class GameSession implements Runnable {
+
+    private static final int MAX_LINE_LENGTH = 256;
+    private static final int DEFAULT_COLS = 16;
+    private static final int DEFAULT_ROWS = 12;
+
+    // Rough heap cost of a map, for the memory budget: the worst case of generation, which may
+    // route paths to the end spots with two ints per tile and a deque, plus NPCs and a fixed part.
+    // Sessions do not prefetch levels, so a level change adds only the level being left, which
+    // is held while the next one generates: its NPCs and its static and explored tile bits
+    private static final long BYTES_PER_TILE = 24;
+    private static final long BYTES_PER_LEFT_TILE = 1;
+    private static final long BYTES_PER_NPC = 128;
+    private static final long BYTES_PER_MAP = 64 * 1024;
+    private static final int TILES_PER_NPC = 192 / 10; // Ten NPCs on the default 16x12 map
+
+    private final Socket socket;
+    private final ServerStats stats;
+    private final long memoryBudget;
+    private BufferedReader in;
+    private BufferedWriter out;
+    private GameMap map;
+    private Character player;
+    private boolean gameOver;
+    private long choiceWaitNanos; // Time spent waiting for duel choices during the current move
+
+    /**
+     * Constructor for the GameSession class.
+     *
+     * @param socket       the client's connection
+     * @param stats        the statistics the session reports to
+     * @param memoryBudget the most heap, in bytes, one game's map may take
+     */
+    GameSession(Socket socket, ServerStats stats, long memoryBudget) {
+        this.socket = socket;
+        this.stats = stats;
+        this.memoryBudget = memoryBudget;
+    }
+
+    @Override
+    public void run() {
+        stats.sessionOpened();
+        try (socket) {
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            reply("WELCOME Arcane Pathways");
+            for (String line = readLine(); line != null; line = readLine()) {
+                if (!handle(line.trim())) {
+                    break;
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // The client went away or broke the protocol; nothing to clean up but the socket
+        } finally {
+            stats.sessionClosed();
+        }
+    }
+
+    /**
+     * Handles one command.
+     *
+     * @param line the command line
+     * @return false if the session should end
+     * @throws IOException if the client cannot be written to
+     */
+    private boolean handle(String line) throws IOException {
+        String[] words = line.split(" +");
+        String command = words[0].toUpperCase();
+        switch (command) {
+            case "W", "A", "S", "D" -> move(command);
+            case "GO" -> {
+                if (words.length != 3) {
+                    reply("ERROR Usage: GO <x> <y>");
+                    return true;
+                }
+                try {
+                    move(GameMap.targetMove(Integer.parseInt(words[1]), Integer.parseInt(words[2])));
+                } catch (NumberFormatException e) {
+                    reply("ERROR Coordinates must be numbers");
+                }
+            }
+            case "NEW" -> newGame(words);
+            case "AUTO" -> {
+                if (map == null) {
+                    reply("ERROR No game; send NEW first");
+                } else if (words.length != 2 || !words[1].equalsIgnoreCase("ON") && !words[1].equalsIgnoreCase("OFF")) {
+                    reply("ERROR Usage: AUTO ON|OFF");
+                } else {
+                    map.setAutoResolveDuels(words[1].equalsIgnoreCase("ON"));
+                    reply("OK");
+                }
+            }
+            case "PROFILE" -> {
+                if (player == null) {
+                    reply("ERROR No game; send NEW first");
+                } else {
+                    reply("OK " + player.getProfile().replace('\n', ' '));
+                }
+            }
+            case "QUIT" -> {
+                reply("BYE");
+                return false;
+            }
+            default -> reply("ERROR Unknown command: " + command);
+        }
+        return true;
+    }
+
+    /**
+     * Starts a new game, replacing the current one.
+     *
+     * @param words the words of the NEW command
+     * @throws IOException if the client cannot be written to
+     */
+    private void newGame(String[] words) throws IOException {
+        if (words.length != 3 && words.length != 5 && words.length != 6) {
+            reply("ERROR Usage: NEW <archetype> <name> [<cols> <rows> [<seed>]]");
+            return;
+        }
+        int cols;
+        int rows;
+        GameRandom gameRandom;
+        try {
+            cols = words.length > 3 ? Integer.parseInt(words[3]) : DEFAULT_COLS;
+            rows = words.length > 3 ? Integer.parseInt(words[4]) : DEFAULT_ROWS;
+            gameRandom = words.length > 5 ? new GameRandom(Long.parseLong(words[5])) : GameRandom.fromEntropy();
+        } catch (NumberFormatException e) {
+            reply("ERROR Not a number: " + e.getMessage());
+            return;
+        }
+        if (cols < 2 || rows < 2 || estimateBytes(cols, rows) > memoryBudget) {
+            reply("ERROR Map size outside the session's memory budget: " + cols + "x" + rows);
+            return;
+        }
+        Character character;
+        try {
+            character = Character.create(words[1], words[2], gameRandom.stream(GameRandom.Stream.PLAYER_COMBAT));
+        } catch (IllegalArgumentException e) {
+            reply("ERROR " + e.getMessage());
+            return;
+        }
+        map = new GameMap(cols, rows, gameRandom);
+        map.setNotifier(new GameNotifier() {
+            @Override
+            public void showMessage(String title, String message, int messageType) {
+                // Every message shown is also logged, so sending the log is enough
+            }
+
+            @Override
+            public void log(String message) {
+                send("MSG " + message);
+            }
+        });
+        map.setExitAction(() -> gameOver = true);
+        map.setPlayerPolicy(this::askForChoice);
+        map.setLevelPrefetch(false); // Keep within the memory budget and off the shared fork-join pool
+        player = character;
+        gameOver = false;
+        stats.gameStarted();
+        reply("OK " + map.getPlayerX() + " " + map.getPlayerY() + " " + cols + " " + rows + " " + map.getSeed());
+    }
+
+    /**
+     * Applies a move and answers with its result.
+     *
+     * @param move W, A, S or D
+     * @throws IOException if the client cannot be written to
+     */
+    private void move(String move) throws IOException {
+        if (map == null) {
+            reply("ERROR No game; send NEW first");
+            return;
+        }
+        long start = System.nanoTime();
+        choiceWaitNanos = 0;
+        boolean valid = map.handleMovement(move, player);
+        if (gameOver) {
+            reply("GAMEOVER " + player.getHealth());
+            map = null; // Let the finished game be collected while the client decides
+            player = null;
+        } else if (valid) {
+            reply("OK " + map.getPlayerX() + " " + map.getPlayerY() + " " + player.getHealth());
+        } else {
+            reply("BLOCKED " + map.getPlayerX() + " " + map.getPlayerY());
+        }
+        stats.recordMove(System.nanoTime() - start - choiceWaitNanos);
+    }
+
+    /**
+     * Asks the client to choose a duel action.
+     *
+     * @param player  the player's character
+     * @param enemy   the enemy character
+     * @param options the actions available to the player
+     * @return the index of the chosen option, or {@link PlayerPolicy#FORFEIT}
+     */
+    private int askForChoice(Character player, Enemy enemy, String[] options) {
+        StringBuilder prompt = new StringBuilder("CHOOSE");
+        for (int i = 0; i < options.length; i++) {
+            prompt.append(' ').append(i).append('=').append(options[i].replace(' ', '_'));
+        }
+        long waitStart = System.nanoTime();
+        try {
+            while (true) {
+                reply(prompt.toString());
+                String answer = readLine();
+                if (answer == null) {
+                    throw new IOException("Client left during a duel");
+                }
+                answer = answer.trim();
+                if (answer.equalsIgnoreCase("FORFEIT")) {
+                    return PlayerPolicy.FORFEIT;
+                }
+                try {
+                    int choice = Integer.parseInt(answer);
+                    if (choice >= 0 && choice < options.length) {
+                        return choice;
+                    }
+                } catch (NumberFormatException e) {
+                    // Fall through and ask again
+                }
+                send("ERROR Expected an action index or FORFEIT");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            choiceWaitNanos += System.nanoTime() - waitStart;
+        }
+    }
+
+    /**
+     * Estimates the most heap a game on a map of the given size takes, which is when the player
+     * changes levels: the next level is generated while the one being left is still held.
+     *
+     * @param cols the number of columns
+     * @param rows the number of rows
+     * @return the estimate in bytes
+     */
+    static long estimateBytes(int cols, int rows) {
+        long tiles = (long) cols * rows;
+        long npcBytes = tiles / TILES_PER_NPC * BYTES_PER_NPC;
+        return tiles * BYTES_PER_TILE + npcBytes + tiles * BYTES_PER_LEFT_TILE + npcBytes + BYTES_PER_MAP;
+    }
+
+    /**
+     * Reads a line, refusing lines long enough to be an attack on the server's memory.
+     *
+     * @return the line, or null at the end of the stream
+     * @throws IOException if the line is too long or the client cannot be read
+     */
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int c = in.read(); c != '\n'; c = in.read()) {
+            if (c < 0) {
+                return line.isEmpty() ? null : line.toString();
+            }
+            if (line.length() == MAX_LINE_LENGTH) {
+                throw new IOException("Line too long");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * Queues a line for the client without sending it yet.
+     *
+     * @param line the line
+     */
+    private void send(String line) {
+        try {
+            out.write(line);
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sends a line along with any queued ones.
+     *
+     * @param line the line
+     * @throws IOException if the client cannot be written to
+     */
+    private void reply(String line) throws IOException {
+        send(line);
+        out.flush();
+    }
+}
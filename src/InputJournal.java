@@ -0,0 +1,327 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The InputJournal class records a game session in a compact, append-only binary file so that
+ * it can be replayed exactly by {@link JournalReplay}. The header holds everything needed to
+ * rebuild the starting state: the {@link GameRandom} master seed, the map size and the player's
+ * archetype and name. It
+ * is followed by one byte per event, the letter of each move or the index of each duel choice.
+ * A move to a tile within the player's movement range takes a {@link #TARGET} byte followed by
+ * the tile's coordinates as variable-length integers, and switching duels between playing them
+ * out and settling them from their odds takes an {@link #AUTO_RESOLVE} byte and a byte for on
+ * or off.
+ *
+ * <p>The file is written through a memory-mapped region that is remapped as the journal grows,
+ * so recording an event is a single store into memory. Unwritten space reads as zero, which
+ * marks the end of the journal even if the game exits without closing it.</p>
+ *
+ * <p>Moves and duel choices are both recorded on the game loop thread, which keeps them in the
+ * order they happened. Events recorded after the journal is closed are dropped.</p>
+ */
+public class InputJournal implements AutoCloseable {
+
+    /**
+     * Event byte that marks the end of the journal.
+     */
+    public static final int END = 0;
+
+    /**
+     * Flag of duel choice events; the low bits hold the index of the chosen option.
+     */
+    public static final int CHOICE = 0x80;
+
+    /**
+     * Event byte of a forfeited duel.
+     */
+    public static final int FORFEIT = 0xFF;
+
+    /**
+     * Event byte of a move to a target tile, followed by its x- and y-coordinates.
+     */
+    public static final int TARGET = 'T';
+
+    /**
+     * Event byte of switching the auto-resolving of duels, followed by 1 for on or 0 for off.
+     */
+    public static final int AUTO_RESOLVE = 'R';
+
+    private static final int MAGIC = 0x41504A31; // "APJ1"
+    private static final int VERSION = 4;
+    private static final int OLDEST_VERSION = 2; // Journals without target moves read the same
+    private static final int REGION_BYTES = 1 << 16;
+
+    /**
+     * The starting state of a recorded session.
+     *
+     * @param seed      the master seed of the game's randomness
+     * @param cols      the number of map columns
+     * @param rows      the number of map rows
+     * @param archetype the player's archetype
+     * @param name      the player's name
+     */
+    public record Header(long seed, int cols, int rows, String archetype, String name) {
+    }
+
+    private final FileChannel channel;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long events;
+    private boolean closed;
+
+    /**
+     * Constructor for the InputJournal class. Creates or replaces the journal file and writes
+     * its header.
+     *
+     * @param path   the journal file
+     * @param header the starting state of the session
+     * @throws IOException if the file cannot be written
+     */
+    public InputJournal(Path path, Header header) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        region = channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_BYTES);
+        region.putInt(MAGIC);
+        region.put((byte) VERSION);
+        region.putLong(header.seed());
+        region.putInt(header.cols());
+        region.putInt(header.rows());
+        putString(region, header.archetype());
+        putString(region, header.name());
+    }
+
+    /**
+     * Records a move. Anything other than W, A, S, D or a target tile made by
+     * {@link GameMap#targetMove(int, int)} leaves the game unchanged and is skipped.
+     *
+     * @param move the move
+     */
+    public void recordMove(String move) {
+        switch (move) {
+            case "W", "A", "S", "D" -> append(move.charAt(0));
+            default -> {
+                int comma = move.indexOf(',');
+                if (comma < 0) {
+                    return; // Invalid moves have no effect to replay
+                }
+                try {
+                    appendTarget(Integer.parseInt(move, 0, comma, 10),
+                            Integer.parseInt(move, comma + 1, move.length(), 10));
+                } catch (NumberFormatException e) {
+                    // Neither has a malformed target
+                }
+            }
+        }
+    }
+
+    /**
+     * Records switching duels between playing them out and settling them from their odds.
+     *
+     * @param autoResolve true if duels are settled from their odds from now on
+     */
+    public synchronized void recordAutoResolve(boolean autoResolve) {
+        if (closed) {
+            return;
+        }
+        put(AUTO_RESOLVE);
+        put(autoResolve ? 1 : 0);
+        events++;
+    }
+
+    /**
+     * Records the player's choice in a duel.
+     *
+     * @param choice the index of the chosen option, or {@link PlayerPolicy#FORFEIT}
+     */
+    public void recordChoice(int choice) {
+        if (choice == PlayerPolicy.FORFEIT) {
+            append(FORFEIT);
+        } else if (choice >= 0 && choice < FORFEIT - CHOICE) {
+            append(CHOICE | choice);
+        } else {
+            throw new IllegalArgumentException("Choice cannot be journaled: " + choice);
+        }
+    }
+
+    /**
+     * Wraps a player policy so that every choice it makes is recorded.
+     *
+     * @param policy the policy that makes the choices
+     * @return the recording policy
+     */
+    public PlayerPolicy recording(PlayerPolicy policy) {
+        return (player, enemy, options) -> {
+            int choice = policy.chooseAction(player, enemy, options);
+            recordChoice(choice);
+            return choice;
+        };
+    }
+
+    /**
+     * Gets the number of events recorded.
+     *
+     * @return the event count
+     */
+    public synchronized long getEvents() {
+        return events;
+    }
+
+    /**
+     * Flushes the journal to disk and trims the file to the recorded events.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        long length = regionStart + region.position();
+        region.force();
+        channel.truncate(length);
+        channel.close();
+    }
+
+    private synchronized void append(int event) {
+        if (closed) {
+            return;
+        }
+        put(event);
+        events++;
+    }
+
+    /**
+     * Appends a target move as one event, so that no other event can land between its bytes.
+     */
+    private synchronized void appendTarget(int x, int y) {
+        if (closed || x < 0 || y < 0) {
+            return; // Tiles off the map are never reachable
+        }
+        put(TARGET);
+        putVarint(x);
+        putVarint(y);
+        events++;
+    }
+
+    /**
+     * Writes a non-negative integer seven bits at a time, low bits first, with the top bit of
+     * each byte set while more follow.
+     */
+    private void putVarint(int value) {
+        while (value >= 0x80) {
+            put(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        put(value);
+    }
+
+    private void put(int b) {
+        if (!region.hasRemaining()) {
+            // Map the next region; the file grows to cover it
+            try {
+                regionStart += region.capacity();
+                region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, REGION_BYTES);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot extend journal", e);
+            }
+        }
+        region.put((byte) b);
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Opens a journal for reading.
+     *
+     * @param path the journal file
+     * @return a reader positioned at the first event
+     * @throws IOException if the file cannot be read or is not a journal
+     */
+    public static Reader read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new Reader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * The Reader class reads the header and then the events of a journal in order.
+     */
+    public static final class Reader {
+        private final MappedByteBuffer buffer;
+        private final Header header;
+
+        private Reader(MappedByteBuffer buffer) throws IOException {
+            this.buffer = buffer;
+            try {
+                if (buffer.getInt() != MAGIC) {
+                    throw new IOException("Not a game journal");
+                }
+                int version = buffer.get();
+                if (version < OLDEST_VERSION || version > VERSION) {
+                    throw new IOException("Unsupported journal version: " + version);
+                }
+                header = new Header(buffer.getLong(), buffer.getInt(), buffer.getInt(),
+                        getString(buffer), getString(buffer));
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Truncated journal header", e);
+            }
+        }
+
+        /**
+         * Gets the starting state of the recorded session.
+         *
+         * @return the header
+         */
+        public Header getHeader() {
+            return header;
+        }
+
+        /**
+         * Reads the next event.
+         *
+         * @return the event byte, from 1 to 255, or {@link #END} after the last event
+         */
+        public int next() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : END;
+        }
+
+        /**
+         * Reads a coordinate that follows a {@link #TARGET} event.
+         *
+         * @return the coordinate
+         * @throws IllegalStateException if the journal ends in the middle of it
+         */
+        public int nextVarint() {
+            int value = 0;
+            for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+                if (!buffer.hasRemaining()) {
+                    throw new IllegalStateException("Journal ends inside a target move");
+                }
+                int b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Malformed target move");
+        }
+    }
+}
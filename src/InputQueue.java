@@ -0,0 +1,38 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The InputQueue class carries player moves from the input sources (Swing key bindings and the
+ * terminal) to the simulation thread. It is lock-free, so a key press never waits on a tick in
+ * progress, and every move is stamped with the time it was entered to measure input latency.
+ */
+public class InputQueue {
+
+    /**
+     * A move entered by the player.
+     *
+     * @param move       the move (W, A, S or D)
+     * @param enqueuedAt the {@link System#nanoTime()} at which the move was entered
+     */
+    public record Input(String move, long enqueuedAt) {
+    }
+
+    private final ConcurrentLinkedQueue<Input> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Adds a move to the queue. Safe to call from any thread.
+     *
+     * @param move the move (W, A, S or D)
+     */
+    public void offer(String move) {
+        queue.offer(new Input(move, System.nanoTime()));
+    }
+
+    /**
+     * Removes the oldest move from the queue.
+     *
+     * @return the move, or null if the queue is empty
+     */
+    public Input poll() {
+        return queue.poll();
+    }
+}
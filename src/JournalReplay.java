@@ -0,0 +1,119 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JournalReplay class replays a session recorded by {@link InputJournal} without a window.
+ * It rebuilds the map and the player's character from the journal's master seed and feeds the
+ * recorded moves and duel choices straight into {@link GameMap#handleMovement(String, Character)},
+ * with no tick rate or dialogs in between, so a long session replays in milliseconds. Replays are
+ * used to reproduce bugs and to profile the simulation on real input.
+ */
+public class JournalReplay {
+
+    /**
+     * The outcome of a replay.
+     *
+     * @param moves        the number of moves replayed
+     * @param validMoves   the number of moves that moved the player or triggered an interaction
+     * @param duelChoices  the number of duel choices replayed
+     * @param gameOver     true if the session ended in victory or defeat
+     * @param player       the player's character after the last move
+     * @param playerX      the player's final x-coordinate
+     * @param playerY      the player's final y-coordinate
+     * @param elapsedNanos the time the replay took
+     */
+    public record Result(int moves, int validMoves, int duelChoices, boolean gameOver, Character player,
+                         int playerX, int playerY, long elapsedNanos) {
+
+        @Override
+        public String toString() {
+            return String.format("Replayed %d moves (%d valid) and %d duel choices in %.3f ms%s%n"
+                            + "Player at %d,%d%n%s",
+                    moves, validMoves, duelChoices, elapsedNanos / 1e6, gameOver ? "; the game ended" : "",
+                    playerX, playerY, player.getProfile());
+        }
+    }
+
+    /**
+     * Replays a journal as fast as possible.
+     *
+     * @param path the journal file
+     * @return the outcome of the replay
+     * @throws IOException if the journal cannot be read
+     */
+    public static Result replay(Path path) throws IOException {
+        InputJournal.Reader reader = InputJournal.read(path);
+        InputJournal.Header header = reader.getHeader();
+        long start = System.nanoTime();
+
+        GameRandom gameRandom = new GameRandom(header.seed());
+        GameMap gameMap = new GameMap(header.cols(), header.rows(), gameRandom);
+        Character player = Character.create(header.archetype(), header.name(),
+                gameRandom.stream(GameRandom.Stream.PLAYER_COMBAT));
+        boolean[] gameOver = new boolean[1];
+        int[] duelChoices = new int[1];
+        gameMap.setNotifier(GameNotifier.SILENT);
+        gameMap.setExitAction(() -> gameOver[0] = true);
+        gameMap.setPlayerPolicy((p, enemy, options) -> {
+            int event = reader.next();
+            duelChoices[0]++;
+            if (event == InputJournal.FORFEIT) {
+                return PlayerPolicy.FORFEIT;
+            }
+            int choice = event & ~InputJournal.CHOICE;
+            if ((event & InputJournal.CHOICE) == 0 || choice >= options.length) {
+                throw new IllegalStateException("Journal out of step: expected a duel choice, found " + event);
+            }
+            return choice;
+        });
+
+        int moves = 0;
+        int validMoves = 0;
+        for (int event = reader.next(); event != InputJournal.END && !gameOver[0]; event = reader.next()) {
+            if (event == InputJournal.AUTO_RESOLVE) {
+                gameMap.setAutoResolveDuels(reader.next() != 0);
+                continue;
+            }
+            String move = switch (event) {
+                case 'W' -> "W";
+                case 'A' -> "A";
+                case 'S' -> "S";
+                case 'D' -> "D";
+                case InputJournal.TARGET -> GameMap.targetMove(reader.nextVarint(), reader.nextVarint());
+                default -> throw new IllegalStateException("Journal out of step: expected a move, found " + event);
+            };
+            moves++;
+            if (gameMap.handleMovement(move, player)) {
+                validMoves++;
+            }
+        }
+        return new Result(moves, validMoves, duelChoices[0], gameOver[0], player,
+                gameMap.getPlayerX(), gameMap.getPlayerY(), System.nanoTime() - start);
+    }
+
+    /**
+     * Replays a journal and prints the outcome.
+     *
+     * @param args the journal file, and optionally the number of times to replay it for timing
+     * @throws IOException if the journal cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: java JournalReplay <journal> [repetitions]");
+            return;
+        }
+        Path path = Path.of(args[0]);
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        Result result = replay(path);
+        long fastest = result.elapsedNanos();
+        for (int i = 1; i < repetitions; i++) {
+            fastest = Math.min(fastest, replay(path).elapsedNanos());
+        }
+        System.out.println(result);
+        if (repetitions > 1) {
+            System.out.println("Fastest of " + repetitions + " replays: "
+                    + TimeUnit.NANOSECONDS.toMicros(fastest) + " us");
+        }
+    }
+}
@@ -11,19 +11,13 @@ public class Knight extends Character {
         super(name, "Knight");
     }
 
-    @Override
-    protected void initializeAttributes() {
-        this.health = 120;
-        this.strength = 15;
-        this.magic = 5;
-        this.movementRange = 2; // Knights can move 2 blocks per turn
-    }
-
-    @Override
-    public String attack(Character target) {
-        // Knight performs a sword slash
-        int damage = this.strength;
-        target.health -= damage;
-        return this.name + " slashes " + target.getName() + " with a mighty sword for " + damage + " damage!";
+    /**
+     * Constructor for a Knight stored as a new entity in the given store.
+     *
+     * @param name  the name of the knight
+     * @param store the store that holds its attributes
+     */
+    public Knight(String name, EntityStore store) {
+        super(name, "Knight", store);
     }
 }
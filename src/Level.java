@@ -0,0 +1,283 @@
+import java.awt.Point;
+import java.util.random.RandomGenerator;
+
+/**
+ * The Level class holds one level of the world: its static objects, its NPCs and their entities,
+ * its end spots, and the structures the map keeps over them for paths, sight, enemy turns and
+ * multi-tile moves. A level is built in full before the map plays it, so it can be generated on
+ * a background thread while the player is still on the level before; the map then takes over its
+ * parts and is the only one to change them.
+ *
+ * <p>Levels form a tree. Each end spot of a level leads to a level of its own, one deeper, so a
+ * level is identified by the path taken to it: the first level is 0, and end spot {@code i} of
+ * level {@code n} leads to level {@code n * endSpots + i + 1}. A level is generated from the
+ * master seed and its ID alone, so the same world unfolds the same way whichever path is taken
+ * and whenever its levels are generated.</p>
+ */
+public final class Level {
+
+    /** Type tag of friendly NPCs in a level's spatial index. */
+    static final int FRIENDLY_NPC = 0;
+    /** Type tag of enemy NPCs in a level's spatial index. */
+    static final int ENEMY_NPC = 1;
+
+    private static final int DEFAULT_ROWS = 12;
+    private static final int DEFAULT_COLS = 16;
+    private static final double STATIC_OBJECT_DENSITY = 20.0 / (DEFAULT_ROWS * DEFAULT_COLS); // 20 on the default map
+    private static final int DEFAULT_SPAWN = 5; // Column and row of the spawn point on maps that fit it
+
+    private final long id;
+    private final int depth;
+    private final int spawnX;
+    private final int spawnY;
+    private final Point[] endSpots;
+    private final TileLayer staticObjects;
+    private final Pathfinder pathfinder;
+    private final FieldOfView fieldOfView;
+    private final SpatialIndex npcs; // Values are the NPCs' entities
+    private final EntityStore entities;
+    private final EnemyPool enemyPool;
+    private final EnemyAI enemyAI;
+    private final Reachability reachability;
+
+    private Level(long id, Point[] endSpots, TileLayer staticObjects, int sightRadius,
+                  int npcCapacity, RandomGenerator enemyRandom) {
+        this.id = id;
+        int depth = 0;
+        for (long ancestor = id; ancestor > 0; ancestor = (ancestor - 1) / endSpots.length) {
+            depth++;
+        }
+        this.depth = depth;
+        Point spawn = spawnPoint(staticObjects.getWidth(), staticObjects.getHeight());
+        this.spawnX = spawn.x;
+        this.spawnY = spawn.y;
+        this.endSpots = endSpots;
+        this.staticObjects = staticObjects;
+        this.pathfinder = new Pathfinder(staticObjects);
+        this.fieldOfView = new FieldOfView(staticObjects, sightRadius);
+        this.npcs = new SpatialIndex(npcCapacity);
+        this.entities = new EntityStore(npcCapacity);
+        this.enemyPool = new EnemyPool(entities, "Goblin", enemyRandom);
+        this.enemyAI = new EnemyAI(npcs, entities, staticObjects, endSpots, ENEMY_NPC);
+        this.reachability = new Reachability(staticObjects, npcs, endSpots);
+        // Enemy moves drop the cached areas they affect
+        enemyAI.setMoveListener((fromX, fromY, toX, toY) -> {
+            reachability.tileChanged(fromX, fromY);
+            reachability.tileChanged(toX, toY);
+        });
+    }
+
+    /**
+     * Generates a level: end spots in the two right corners, static objects that leave a way
+     * from the spawn point to every end spot, and friendly and enemy NPCs on free tiles the
+     * player can reach, with the same densities as on the default 16x12 map.
+     *
+     * @param cols        the number of columns
+     * @param rows        the number of rows
+     * @param gameRandom  the source of the world's randomness
+     * @param id          the level's ID
+     * @param sightRadius how far the player can see, in tiles
+     * @param enemyRandom the generator the level's enemies draw their choices from
+     * @return the level, with the player's sight at its spawn point
+     */
+    public static Level generate(int cols, int rows, GameRandom gameRandom, long id, int sightRadius,
+                                 RandomGenerator enemyRandom) {
+        // The first level keeps the seed a map has always been generated from
+        long seed = id == 0 ? gameRandom.seedFor(GameRandom.Stream.MAP_GENERATION)
+                : gameRandom.seedFor(GameRandom.Stream.MAP_GENERATION, id);
+        MapGenerator generator = new MapGenerator(cols, rows, seed);
+        Point spawn = spawnPoint(cols, rows);
+        Point[] endSpots = {
+                new Point(cols - 1, 0),       // Top-right corner
+                new Point(cols - 1, rows - 1) // Bottom-right corner
+        };
+        TileLayer staticObjects = generator.generateStaticObjects(STATIC_OBJECT_DENSITY, spawn, endSpots);
+        int friendlyCount = scaledCount(5, cols, rows);
+        int enemyCount = scaledCount(5, cols, rows);
+        Level level = new Level(id, endSpots, staticObjects, sightRadius, friendlyCount + enemyCount, enemyRandom);
+        level.fieldOfView.update(spawn.x, spawn.y);
+        int[] tiles = generator.pickFreeTiles(friendlyCount + enemyCount);
+        for (int i = 0; i < tiles.length; i++) {
+            int x = tiles[i] % cols;
+            int y = tiles[i] / cols;
+            if (i < friendlyCount) {
+                level.placeNPC(x, y, FRIENDLY_NPC, level.entities.create(EntityStore.FRIENDLY_NPC));
+            } else {
+                level.placeNPC(x, y, ENEMY_NPC, level.enemyPool.createEntity());
+            }
+        }
+        return level;
+    }
+
+    /**
+     * Rebuilds a saved level from its static objects, without NPCs; the map restores those.
+     *
+     * @param id            the level's ID
+     * @param playerX       the x-coordinate the player was saved at, where sight starts from
+     * @param playerY       the y-coordinate the player was saved at
+     * @param endSpots      the end spots
+     * @param staticObjects the tiles that hold static objects
+     * @param npcCount      the number of NPCs that will be restored
+     * @param sightRadius   how far the player can see, in tiles
+     * @param enemyRandom   the generator the level's enemies draw their choices from
+     * @return the level
+     */
+    public static Level restore(long id, int playerX, int playerY, Point[] endSpots,
+                                TileLayer staticObjects, int npcCount, int sightRadius, RandomGenerator enemyRandom) {
+        Level level = new Level(id, endSpots, staticObjects, sightRadius, Math.max(1, npcCount), enemyRandom);
+        level.fieldOfView.update(playerX, playerY);
+        return level;
+    }
+
+    /**
+     * Gets the tile the player enters a level on, kept inside maps smaller than 6x6.
+     */
+    private static Point spawnPoint(int cols, int rows) {
+        return new Point(Math.min(DEFAULT_SPAWN, cols - 1), Math.min(DEFAULT_SPAWN, rows - 1));
+    }
+
+    /**
+     * Scales a count of generated objects on the default map to the size of a level.
+     *
+     * @param countOnDefaultMap the number of objects on a 16x12 map
+     * @param cols              the number of columns
+     * @param rows              the number of rows
+     * @return the number of objects to generate
+     */
+    private static int scaledCount(int countOnDefaultMap, int cols, int rows) {
+        long scaled = (long) countOnDefaultMap * rows * cols / (DEFAULT_ROWS * DEFAULT_COLS);
+        return (int) Math.max(1, scaled);
+    }
+
+    private void placeNPC(int x, int y, int type, int entity) {
+        entities.setPosition(entity, x, y);
+        npcs.insert(x, y, type, entity);
+    }
+
+    /**
+     * Gets the ID of the level an end spot leads to.
+     *
+     * @param endSpot the index of the end spot
+     * @return the ID of the next level
+     */
+    public long nextLevel(int endSpot) {
+        return id * endSpots.length + endSpot + 1;
+    }
+
+    /**
+     * Gets the level's ID.
+     *
+     * @return the ID, 0 for the first level
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Gets how many levels lie before this one.
+     *
+     * @return the depth, 0 for the first level
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Gets the column the player enters the level on.
+     *
+     * @return the spawn point's x-coordinate
+     */
+    public int getSpawnX() {
+        return spawnX;
+    }
+
+    /**
+     * Gets the row the player enters the level on.
+     *
+     * @return the spawn point's y-coordinate
+     */
+    public int getSpawnY() {
+        return spawnY;
+    }
+
+    /**
+     * Gets the end spots of the level.
+     *
+     * @return the end spots; the array must not be changed
+     */
+    public Point[] getEndSpots() {
+        return endSpots;
+    }
+
+    /**
+     * Gets the tiles that hold static objects.
+     *
+     * @return the static object layer
+     */
+    public TileLayer getStaticObjects() {
+        return staticObjects;
+    }
+
+    /**
+     * Gets the pathfinder over the level's static objects.
+     *
+     * @return the pathfinder
+     */
+    public Pathfinder getPathfinder() {
+        return pathfinder;
+    }
+
+    /**
+     * Gets the player's field of view on the level.
+     *
+     * @return the field of view
+     */
+    public FieldOfView getFieldOfView() {
+        return fieldOfView;
+    }
+
+    /**
+     * Gets the index of the level's NPCs, whose values are the NPCs' entities.
+     *
+     * @return the NPC index
+     */
+    public SpatialIndex getNPCs() {
+        return npcs;
+    }
+
+    /**
+     * Gets the store that holds the NPCs' entities.
+     *
+     * @return the entity store
+     */
+    public EntityStore getEntities() {
+        return entities;
+    }
+
+    /**
+     * Gets the pool of the level's enemies.
+     *
+     * @return the enemy pool
+     */
+    public EnemyPool getEnemyPool() {
+        return enemyPool;
+    }
+
+    /**
+     * Gets the AI that moves the level's enemies.
+     *
+     * @return the enemy AI
+     */
+    public EnemyAI getEnemyAI() {
+        return enemyAI;
+    }
+
+    /**
+     * Gets the cache of the tiles multi-tile moves can reach.
+     *
+     * @return the reachability cache
+     */
+    public Reachability getReachability() {
+        return reachability;
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongFunction;
+
+/**
+ * The LevelCache class hands the map the levels of the world, generating each one lazily the
+ * first time it is needed. Levels can be prefetched: their generation starts on the fork-join
+ * pool while the player is still on the level before, so that by the time the player reaches
+ * the end spot the next level is ready and entering it takes no more than a lookup.
+ *
+ * <p>The cache holds the levels that are being generated or are ready, in least recently used
+ * order, and drops the eldest beyond its capacity, so prefetched levels the player never goes
+ * to do not pile up. A level is taken out of the cache when the map enters it; from then on the
+ * map owns it. The cache itself is used from the simulation thread only.</p>
+ */
+public final class LevelCache {
+
+    private final LongFunction<Level> generator;
+    private final Map<Long, CompletableFuture<Level>> levels;
+    private int prefetched; // Levels taken that were already generated in the background
+    private int generated; // Levels taken that had to be generated on the spot
+
+    /**
+     * Constructor for the LevelCache class.
+     *
+     * @param capacity  the most levels to keep besides the one being played
+     * @param generator generates the level with a given ID; called on a background thread when
+     *                  prefetching, so it must not touch the level being played
+     */
+    public LevelCache(int capacity, LongFunction<Level> generator) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.generator = generator;
+        this.levels = new LinkedHashMap<>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CompletableFuture<Level>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Starts generating a level in the background, unless it is already cached.
+     *
+     * @param id the level's ID
+     */
+    public void prefetch(long id) {
+        if (!levels.containsKey(id)) {
+            levels.put(id, CompletableFuture.supplyAsync(() -> generator.apply(id), ForkJoinPool.commonPool()));
+        }
+    }
+
+    /**
+     * Takes a level out of the cache to be played, waiting for its prefetch to finish if it is
+     * still running, or generating it on the caller's thread if it was never prefetched.
+     *
+     * @param id the level's ID
+     * @return the level
+     */
+    public Level take(long id) {
+        CompletableFuture<Level> level = levels.remove(id);
+        if (level == null) {
+            generated++;
+            return generator.apply(id);
+        }
+        prefetched++;
+        return level.join();
+    }
+
+    /**
+     * Checks whether a level is cached, prefetched or ready.
+     *
+     * @param id the level's ID
+     * @return true if taking the level will not generate it from the start
+     */
+    public boolean contains(long id) {
+        return levels.containsKey(id);
+    }
+
+    /**
+     * Gets the number of levels taken that had been prefetched.
+     *
+     * @return the count
+     */
+    public int getPrefetched() {
+        return prefetched;
+    }
+
+    /**
+     * Gets the number of levels taken that had to be generated when they were entered.
+     *
+     * @return the count
+     */
+    public int getGenerated() {
+        return generated;
+    }
+}
@@ -0,0 +1,103 @@
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The LoopStats class collects timing statistics of the {@link GameLoop}: how long ticks take,
+ * how many were late, how often frames are painted, and how long it takes from a key press until
+ * the frame showing its result has been painted. Ticks are recorded on the simulation thread and
+ * frames on the Swing event dispatch thread, so all counters are thread-safe.
+ */
+public class LoopStats {
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder ticks = new LongAdder();
+    private final LongAdder tickNanos = new LongAdder();
+    private final AtomicLong maxTickNanos = new AtomicLong();
+    private final LongAdder overruns = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder frameIntervalNanos = new LongAdder();
+    private final AtomicLong lastFrameNanos = new AtomicLong();
+    private final LongAdder latencies = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private volatile long lastLatencyNanos;
+
+    /**
+     * Records a completed tick.
+     *
+     * @param durationNanos the time the tick took
+     */
+    public void recordTick(long durationNanos) {
+        ticks.increment();
+        tickNanos.add(durationNanos);
+        maxTickNanos.accumulateAndGet(durationNanos, Math::max);
+    }
+
+    /**
+     * Records that the loop fell behind and skipped the given number of ticks.
+     *
+     * @param skipped the number of skipped ticks
+     */
+    public void recordOverrun(long skipped) {
+        overruns.add(skipped);
+    }
+
+    /**
+     * Records a painted frame.
+     *
+     * @param nowNanos the {@link System#nanoTime()} at which painting finished
+     */
+    public void recordFrame(long nowNanos) {
+        frames.increment();
+        long previous = lastFrameNanos.getAndSet(nowNanos);
+        if (previous != 0) {
+            frameIntervalNanos.add(nowNanos - previous);
+        }
+    }
+
+    /**
+     * Records the time from a key press until its result was on screen.
+     *
+     * @param nanos the latency
+     */
+    public void recordInputLatency(long nanos) {
+        latencies.increment();
+        latencyNanos.add(nanos);
+        maxLatencyNanos.accumulateAndGet(nanos, Math::max);
+        lastLatencyNanos = nanos;
+    }
+
+    /**
+     * Gets the number of ticks per second since the loop started.
+     *
+     * @return the measured tick rate
+     */
+    public double getTickRate() {
+        return ticks.sum() * 1e9 / Math.max(1, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Gets the mean input-to-screen latency.
+     *
+     * @return the mean latency in milliseconds
+     */
+    public double getMeanInputLatencyMillis() {
+        long count = latencies.sum();
+        return count == 0 ? 0 : latencyNanos.sum() / 1e6 / count;
+    }
+
+    @Override
+    public String toString() {
+        long tickCount = ticks.sum();
+        long frameCount = frames.sum();
+        return String.format(Locale.ROOT,
+                "Ticks: %d (%.1f/s), tick time mean %.3f ms max %.3f ms, skipped %d%n" +
+                        "Frames: %d, frame interval mean %.2f ms%n" +
+                        "Input latency: mean %.2f ms max %.2f ms last %.2f ms (%d moves)",
+                tickCount, getTickRate(),
+                tickCount == 0 ? 0 : tickNanos.sum() / 1e6 / tickCount, maxTickNanos.get() / 1e6, overruns.sum(),
+                frameCount, frameCount < 2 ? 0 : frameIntervalNanos.sum() / 1e6 / (frameCount - 1),
+                getMeanInputLatencyMillis(), maxLatencyNanos.get() / 1e6, lastLatencyNanos / 1e6, latencies.sum());
+    }
+}
@@ -0,0 +1,415 @@
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * The MapGenerator class procedurally generates the contents of a map from a seed, so the same
+ * seed always produces the same map. Static objects are scattered chunk by chunk in parallel,
+ * each chunk drawing from its own {@link SplittableRandom} stream, and a linear-time flood fill
+ * then checks that every end spot can be reached from the spawn point, clearing a path if the
+ * objects walled one off. NPC tiles are sampled uniformly from the free, reachable tiles
+ * without rejection sampling.
+ *
+ * <p>Like {@link TileLayer}, the generator keeps one bit per tile in 64-tile words, so the
+ * flood fill and the layer it hands out work a word at a time.</p>
+ */
+public class MapGenerator {
+
+    private static final int WORD_SHIFT = 6;
+    private static final int WORD_MASK = Long.SIZE - 1;
+    private static final int MAX_TILES = 1 << 29; // Keeps tile indices and ranks within int
+
+    private final int cols;
+    private final int rows;
+    private final int wordsPerRow;
+    private final long lastWordMask; // The bits of a row's last word that are on the map
+    private final long seed;
+    private final SplittableRandom terrainRandom;
+    private final SplittableRandom placementRandom;
+
+    // The tiles reachable in the last generated layer, with its spawn point and end spots
+    private long[] reachable;
+    private Point spawn;
+    private Point[] endSpots;
+
+    /**
+     * Constructor for the MapGenerator class.
+     *
+     * @param cols the number of columns
+     * @param rows the number of rows
+     * @param seed the seed the map is generated from
+     */
+    public MapGenerator(int cols, int rows, long seed) {
+        if ((long) cols * rows > MAX_TILES) {
+            throw new IllegalArgumentException("Map too large to generate: " + cols + "x" + rows);
+        }
+        this.cols = cols;
+        this.rows = rows;
+        this.wordsPerRow = (cols + WORD_MASK) >>> WORD_SHIFT;
+        this.lastWordMask = (cols & WORD_MASK) == 0 ? -1L : (1L << cols) - 1;
+        this.seed = seed;
+        SplittableRandom root = new SplittableRandom(seed);
+        this.terrainRandom = root.split();
+        this.placementRandom = root.split();
+    }
+
+    /**
+     * Gets the seed the map is generated from.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Scatters static objects over the map, keeping the spawn point and end spots free and
+     * every end spot reachable from the spawn point.
+     *
+     * @param density  the fraction of tiles to block, between 0 and 1
+     * @param spawn    the player's spawn point
+     * @param endSpots the end spots
+     * @return the layer of static objects
+     */
+    public TileLayer generateStaticObjects(double density, Point spawn, Point[] endSpots) {
+        // Chunks are one word wide, so no two chunks ever write to the same word
+        int chunksX = wordsPerRow;
+        int chunksY = (rows + WORD_MASK) >>> WORD_SHIFT;
+        // Streams are split off in chunk order so the result does not depend on thread scheduling
+        SplittableRandom[] streams = new SplittableRandom[chunksX * chunksY];
+        for (int i = 0; i < streams.length; i++) {
+            streams[i] = terrainRandom.split();
+        }
+        long[] blocked = new long[rows * wordsPerRow];
+        IntStream.range(0, streams.length).parallel().forEach(chunk ->
+                scatterChunk(chunk % chunksX, chunk / chunksX, density, streams[chunk], blocked));
+        setBit(blocked, spawn.x, spawn.y, false);
+        for (Point endSpot : endSpots) {
+            setBit(blocked, endSpot.x, endSpot.y, false);
+        }
+
+        long[] visited = floodFill(blocked, spawn);
+        for (Point endSpot : endSpots) {
+            if (!testBit(visited, endSpot.x, endSpot.y)) {
+                connectEndSpots(blocked, spawn, endSpots);
+                visited = floodFill(blocked, spawn);
+                break;
+            }
+        }
+        this.reachable = visited;
+        this.spawn = spawn;
+        this.endSpots = endSpots;
+
+        TileLayer staticObjects = new TileLayer(cols, rows);
+        for (int y = 0; y < rows; y++) {
+            for (int w = 0; w < wordsPerRow; w++) {
+                long bits = blocked[y * wordsPerRow + w];
+                if (bits != 0) {
+                    staticObjects.setWord(w << WORD_SHIFT, y, bits);
+                }
+            }
+        }
+        return staticObjects;
+    }
+
+    /**
+     * Picks distinct tiles that are free and reachable from the spawn point in the last
+     * generated layer, excluding the spawn point and end spots. Fewer tiles are returned
+     * if the map does not have enough of them.
+     *
+     * @param count the number of tiles to pick
+     * @return the picked tiles as {@code y * cols + x}, in random order
+     */
+    public int[] pickFreeTiles(int count) {
+        if (reachable == null) {
+            throw new IllegalStateException("Static objects have not been generated");
+        }
+        long[] free = reachable;
+        reachable = null; // The reserved tiles are cleared below, so the grid is used up
+        setBit(free, spawn.x, spawn.y, false);
+        for (Point endSpot : endSpots) {
+            setBit(free, endSpot.x, endSpot.y, false);
+        }
+
+        // rank[w] is the number of free tiles before word w
+        int[] rank = new int[free.length + 1];
+        for (int w = 0; w < free.length; w++) {
+            rank[w + 1] = rank[w] + Long.bitCount(free[w]);
+        }
+        int freeCount = rank[free.length];
+        int picked = Math.min(count, freeCount);
+
+        // Floyd's algorithm samples distinct ranks in time proportional to the sample size
+        long[] chosen = new long[(freeCount + WORD_MASK) >>> WORD_SHIFT];
+        int[] tiles = new int[picked];
+        int n = 0;
+        for (int j = freeCount - picked; j < freeCount; j++) {
+            int r = placementRandom.nextInt(j + 1);
+            if ((chosen[r >>> WORD_SHIFT] & (1L << r)) != 0) {
+                r = j; // Already in the sample, so take j itself
+            }
+            chosen[r >>> WORD_SHIFT] |= 1L << r;
+            tiles[n++] = r;
+        }
+        // Map the ranks to tiles in one sweep over the words
+        Arrays.sort(tiles);
+        int w = -1;
+        long word = 0;
+        int lowest = 0; // The rank of the lowest set bit left in word
+        for (int i = 0; i < picked; i++) {
+            int r = tiles[i];
+            if (w < 0 || r >= rank[w + 1]) {
+                do {
+                    w++;
+                } while (rank[w + 1] <= r);
+                word = free[w];
+                lowest = rank[w];
+            }
+            for (; lowest < r; lowest++) {
+                word &= word - 1;
+            }
+            int y = w / wordsPerRow;
+            tiles[i] = y * cols + ((w - y * wordsPerRow) << WORD_SHIFT) + Long.numberOfTrailingZeros(word);
+        }
+        // The sample is uniform as a set but sorted, so shuffle it
+        for (int i = picked - 1; i > 0; i--) {
+            int j = placementRandom.nextInt(i + 1);
+            int swap = tiles[i];
+            tiles[i] = tiles[j];
+            tiles[j] = swap;
+        }
+        return tiles;
+    }
+
+    /**
+     * Blocks the static object tiles of one chunk. Floyd's sampling algorithm picks the tiles
+     * in time proportional to their number, using the grid itself as the set of picked tiles.
+     *
+     * @param chunkX  the chunk column
+     * @param chunkY  the chunk row
+     * @param density the fraction of tiles to block
+     * @param random  the chunk's random stream
+     * @param blocked the grid to mark the tiles in
+     */
+    private void scatterChunk(int chunkX, int chunkY, double density, SplittableRandom random, long[] blocked) {
+        int minX = chunkX << WORD_SHIFT;
+        int minY = chunkY << WORD_SHIFT;
+        int width = Math.min(Long.SIZE, cols - minX);
+        int height = Math.min(Long.SIZE, rows - minY);
+        int area = width * height;
+        int count = (int) Math.round(area * density);
+        for (int j = area - count; j < area; j++) {
+            int local = random.nextInt(j + 1);
+            if (testBit(blocked, minX + local % width, minY + local / width)) {
+                local = j; // Already picked, so take j itself
+            }
+            setBit(blocked, minX + local % width, minY + local / width, true);
+        }
+    }
+
+    /**
+     * Marks every tile reachable from the spawn point with a scanline flood fill. Each run of
+     * free tiles in a row is found and filled a word at a time, and only the first tile of each
+     * free run touching it in the rows above and below is queued.
+     *
+     * @param blocked the blocked tiles
+     * @param spawn   the player's spawn point
+     * @return the reachable tiles
+     */
+    private long[] floodFill(long[] blocked, Point spawn) {
+        long[] visited = new long[blocked.length];
+        IntStack stack = new IntStack();
+        stack.push(spawn.y * cols + spawn.x);
+        while (!stack.isEmpty()) {
+            int tile = stack.pop();
+            int y = tile / cols;
+            int x = tile - y * cols;
+            if (testBit(visited, x, y)) {
+                continue;
+            }
+            int row = y * wordsPerRow;
+            int left = runStart(blocked, row, x);
+            int right = runEnd(blocked, row, x);
+            for (int w = left >>> WORD_SHIFT; w <= right >>> WORD_SHIFT; w++) {
+                visited[row + w] |= rangeMask(w, left, right);
+            }
+            if (y > 0) {
+                pushRunStarts(blocked, visited, y - 1, left, right, stack);
+            }
+            if (y < rows - 1) {
+                pushRunStarts(blocked, visited, y + 1, left, right, stack);
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Finds the first column of the run of free tiles containing a tile.
+     */
+    private int runStart(long[] blocked, int row, int x) {
+        int w = x >>> WORD_SHIFT;
+        long bits = blocked[row + w] & ((1L << x) - 1); // Blocked tiles left of x
+        while (bits == 0) {
+            if (--w < 0) {
+                return 0;
+            }
+            bits = blocked[row + w];
+        }
+        return (w << WORD_SHIFT) + Long.SIZE - Long.numberOfLeadingZeros(bits);
+    }
+
+    /**
+     * Finds the last column of the run of free tiles containing a tile.
+     */
+    private int runEnd(long[] blocked, int row, int x) {
+        int w = x >>> WORD_SHIFT;
+        long bits = (blocked[row + w] | ~wordMask(w)) & (-1L << x); // Blocked tiles from x on
+        while (bits == 0) {
+            if (++w == wordsPerRow) {
+                return cols - 1;
+            }
+            bits = blocked[row + w] | ~wordMask(w);
+        }
+        return (w << WORD_SHIFT) + Long.numberOfTrailingZeros(bits) - 1;
+    }
+
+    /**
+     * Queues the first tile of every unvisited free run in a row that overlaps the given columns.
+     */
+    private void pushRunStarts(long[] blocked, long[] visited, int y, int left, int right, IntStack stack) {
+        int row = y * wordsPerRow;
+        long carry = 0; // Whether the last tile of the previous word was open
+        for (int w = left >>> WORD_SHIFT; w <= right >>> WORD_SHIFT; w++) {
+            long open = ~blocked[row + w] & ~visited[row + w] & rangeMask(w, left, right);
+            long starts = open & ~((open << 1) | carry);
+            carry = open >>> WORD_MASK;
+            while (starts != 0) {
+                stack.push(y * cols + (w << WORD_SHIFT) + Long.numberOfTrailingZeros(starts));
+                starts &= starts - 1;
+            }
+        }
+    }
+
+    /**
+     * Clears static objects so that every end spot can be reached from the spawn point.
+     * A 0-1 breadth-first search, where entering a blocked tile costs 1, finds for each end
+     * spot the path through the fewest static objects, and only those objects are removed.
+     *
+     * @param blocked  the blocked tiles
+     * @param spawn    the player's spawn point
+     * @param endSpots the end spots
+     */
+    private void connectEndSpots(long[] blocked, Point spawn, Point[] endSpots) {
+        int[] cost = new int[cols * rows];
+        int[] parent = new int[cols * rows];
+        Arrays.fill(cost, Integer.MAX_VALUE);
+        // A tile is pushed at most twice, so a ring of twice the map size never overflows
+        int[] deque = new int[Integer.highestOneBit(cols * rows) << 2];
+        int mask = deque.length - 1;
+        int head = 0;
+        int tail = 0;
+        int start = spawn.y * cols + spawn.x;
+        cost[start] = 0;
+        parent[start] = -1;
+        deque[tail++] = start;
+        while (head != tail) {
+            int tile = deque[head];
+            head = (head + 1) & mask;
+            for (int d = 0; d < 4; d++) {
+                int next = neighbour(tile, d);
+                if (next < 0) {
+                    continue;
+                }
+                int step = testBit(blocked, next % cols, next / cols) ? 1 : 0;
+                if (cost[tile] + step < cost[next]) {
+                    cost[next] = cost[tile] + step;
+                    parent[next] = tile;
+                    if (step == 0) {
+                        head = (head - 1) & mask;
+                        deque[head] = next;
+                    } else {
+                        deque[tail] = next;
+                        tail = (tail + 1) & mask;
+                    }
+                }
+            }
+        }
+
+        for (Point endSpot : endSpots) {
+            for (int tile = endSpot.y * cols + endSpot.x; tile != -1; tile = parent[tile]) {
+                setBit(blocked, tile % cols, tile / cols, false);
+            }
+        }
+    }
+
+    /**
+     * Gets a neighbouring tile.
+     *
+     * @param tile      the tile, as {@code y * cols + x}
+     * @param direction 0 for up, 1 for down, 2 for left, 3 for right
+     * @return the neighbour, or -1 if it is off the map
+     */
+    private int neighbour(int tile, int direction) {
+        switch (direction) {
+            case 0:
+                return tile >= cols ? tile - cols : -1;
+            case 1:
+                return tile + cols < cols * rows ? tile + cols : -1;
+            case 2:
+                return tile % cols > 0 ? tile - 1 : -1;
+            default:
+                return tile % cols < cols - 1 ? tile + 1 : -1;
+        }
+    }
+
+    private long wordMask(int w) {
+        return w == wordsPerRow - 1 ? lastWordMask : -1L;
+    }
+
+    /**
+     * Gets the bits of a word that lie between two columns, inclusive.
+     */
+    private static long rangeMask(int w, int left, int right) {
+        long mask = -1L;
+        if (w == left >>> WORD_SHIFT) {
+            mask &= -1L << left;
+        }
+        if (w == right >>> WORD_SHIFT) {
+            mask &= -1L >>> (WORD_MASK - (right & WORD_MASK));
+        }
+        return mask;
+    }
+
+    private boolean testBit(long[] bits, int x, int y) {
+        return (bits[y * wordsPerRow + (x >>> WORD_SHIFT)] & (1L << x)) != 0;
+    }
+
+    private void setBit(long[] bits, int x, int y, boolean value) {
+        int w = y * wordsPerRow + (x >>> WORD_SHIFT);
+        bits[w] = value ? bits[w] | (1L << x) : bits[w] & ~(1L << x);
+    }
+
+    /**
+     * A growable LIFO stack of ints.
+     */
+    private static final class IntStack {
+        private int[] items = new int[64];
+        private int size;
+
+        void push(int value) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = value;
+        }
+
+        int pop() {
+            return items[--size];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
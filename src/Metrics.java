@@ -0,0 +1,77 @@
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Metrics class is a registry of named counters and histograms that the game records into
+ * as it runs. Code looks its metrics up once, usually into static fields, and then records with
+ * plain {@link LongAdder} and {@link Histogram} calls, which take no locks; the registry is only
+ * consulted again when it is dumped. One registry is shared by everything in the JVM, so a
+ * server's many maps add up to one set of numbers.
+ */
+public final class Metrics {
+
+    private static final Metrics GLOBAL = new Metrics();
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the registry shared by the whole game.
+     *
+     * @return the global registry
+     */
+    public static Metrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Gets a counter, creating it on first use.
+     *
+     * @param name the counter's name, such as {@code "moves.blocked"}
+     * @return the counter
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * Gets a histogram, creating it on first use.
+     *
+     * @param name the histogram's name, with its unit as the last part, such as {@code "move.nanos"}
+     * @return the histogram
+     */
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /**
+     * Formats every metric, one per line and sorted by name. Histograms whose names end in
+     * {@code .nanos} are shown in microseconds.
+     *
+     * @return the dump
+     */
+    public String dump() {
+        StringBuilder dump = new StringBuilder();
+        new TreeMap<>(counters).forEach((name, counter) ->
+                dump.append(name).append(' ').append(counter.sum()).append('\n'));
+        new TreeMap<>(histograms).forEach((name, histogram) -> {
+            boolean nanos = name.endsWith(".nanos");
+            String unit = nanos ? " us" : "";
+            double scale = nanos ? 1e3 : 1;
+            dump.append(String.format(Locale.ROOT,
+                    "%s count %d mean %.1f%s p50 %.1f%s p99 %.1f%s max %.1f%s%n",
+                    nanos ? name.substring(0, name.length() - ".nanos".length()) : name, histogram.getCount(),
+                    histogram.getMean() / scale, unit, histogram.getPercentile(50) / scale, unit,
+                    histogram.getPercentile(99) / scale, unit, histogram.getMax() / scale, unit));
+        });
+        return dump.toString();
+    }
+
+    @Override
+    public String toString() {
+        return dump();
+    }
+}
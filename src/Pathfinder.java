@@ -0,0 +1,250 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The Pathfinder class finds paths over the blocked tiles of a {@link TileLayer}. Point-to-point
+ * queries use A* with jump-point search, which skips over runs of open tiles in straight lines
+ * and only puts the tiles where a path may turn on the open list. For targets that many agents
+ * walk toward, such as end spots, it hands out cached {@link FlowField}s that are updated in
+ * place whenever a tile is blocked or opened through {@link #setBlocked(int, int, boolean)}.
+ *
+ * <p>Paths move in the four directions of the game's W, A, S and D moves. The pathfinder is
+ * not thread-safe.</p>
+ */
+public class Pathfinder {
+
+    private static final int[] DX = {0, 0, -1, 1};
+    private static final int[] DY = {-1, 1, 0, 0};
+    private static final long NO_JUMP_POINT = Long.MIN_VALUE;
+
+    private final TileLayer blocked;
+    private final int width;
+    private final int height;
+    private final Map<Long, FlowField> flowFields = new HashMap<>();
+
+    /**
+     * Constructor for the Pathfinder class.
+     *
+     * @param blocked the tiles that cannot be entered
+     */
+    public Pathfinder(TileLayer blocked) {
+        this.blocked = blocked;
+        this.width = blocked.getWidth();
+        this.height = blocked.getHeight();
+    }
+
+    /**
+     * Checks whether a tile can be entered.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @return true if the tile is on the map and not blocked
+     */
+    public boolean isOpen(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height && !blocked.get(x, y);
+    }
+
+    /**
+     * Blocks or opens a tile and updates every cached flow field that depends on it.
+     *
+     * @param x         the x-coordinate
+     * @param y         the y-coordinate
+     * @param isBlocked true to block the tile, false to open it
+     */
+    public void setBlocked(int x, int y, boolean isBlocked) {
+        if (blocked.get(x, y) == isBlocked) {
+            return;
+        }
+        blocked.set(x, y, isBlocked);
+        for (FlowField field : flowFields.values()) {
+            field.tileChanged(x, y);
+        }
+    }
+
+    /**
+     * Gets the flow field toward a target tile, building it on first use.
+     *
+     * @param targetX the x-coordinate of the target
+     * @param targetY the y-coordinate of the target
+     * @return the flow field
+     */
+    public FlowField flowFieldTo(int targetX, int targetY) {
+        return flowFields.computeIfAbsent(tileKey(targetX, targetY), key -> new FlowField(blocked, targetX, targetY));
+    }
+
+    /**
+     * Finds a shortest path between two tiles with A* and jump-point search.
+     *
+     * @param startX the x-coordinate of the start
+     * @param startY the y-coordinate of the start
+     * @param goalX  the x-coordinate of the goal
+     * @param goalY  the y-coordinate of the goal
+     * @return the tiles of the path from start to goal as x, y pairs, or null if there is no path
+     */
+    public int[] findPath(int startX, int startY, int goalX, int goalY) {
+        if (!isOpen(startX, startY) || !isOpen(goalX, goalY)) {
+            return null;
+        }
+        Map<Long, Node> nodes = new HashMap<>();
+        PriorityQueue<Node> open = new PriorityQueue<>();
+        Node start = new Node(startX, startY, null, 0, heuristic(startX, startY, goalX, goalY));
+        nodes.put(tileKey(startX, startY), start);
+        open.add(start);
+
+        while (!open.isEmpty()) {
+            Node node = open.poll();
+            if (node.closed) {
+                continue; // Stale entry left by a cheaper path
+            }
+            node.closed = true;
+            if (node.x == goalX && node.y == goalY) {
+                return expandPath(node);
+            }
+            // Keep going in every direction except back where we came from
+            int fromDx = node.parent == null ? 0 : Integer.signum(node.x - node.parent.x);
+            int fromDy = node.parent == null ? 0 : Integer.signum(node.y - node.parent.y);
+            for (int d = 0; d < 4; d++) {
+                int dx = DX[d];
+                int dy = DY[d];
+                if (dx == -fromDx && dy == -fromDy) {
+                    continue;
+                }
+                long jumpPoint = dx != 0
+                        ? jumpHorizontal(node.x + dx, node.y, dx, goalX, goalY)
+                        : jumpVertical(node.x, node.y + dy, dy, goalX, goalY);
+                if (jumpPoint == NO_JUMP_POINT) {
+                    continue;
+                }
+                int jx = (int) (jumpPoint >> 32);
+                int jy = (int) jumpPoint;
+                int g = node.g + Math.abs(jx - node.x) + Math.abs(jy - node.y);
+                Node next = nodes.get(tileKey(jx, jy));
+                if (next == null) {
+                    next = new Node(jx, jy, node, g, g + heuristic(jx, jy, goalX, goalY));
+                    nodes.put(tileKey(jx, jy), next);
+                    open.add(next);
+                } else if (!next.closed && g < next.g) {
+                    // Replace instead of decreasing the key; the old entry is skipped when polled
+                    next.closed = true;
+                    next = new Node(jx, jy, node, g, g + heuristic(jx, jy, goalX, goalY));
+                    nodes.put(tileKey(jx, jy), next);
+                    open.add(next);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Walks horizontally until reaching the goal, a tile where the path may have to turn,
+     * or a blocked tile.
+     *
+     * @return the jump point packed as x (high 32 bits) and y (low 32 bits), or NO_JUMP_POINT
+     */
+    private long jumpHorizontal(int x, int y, int dx, int goalX, int goalY) {
+        for (; isOpen(x, y); x += dx) {
+            if (x == goalX && y == goalY) {
+                return pack(x, y);
+            }
+            // A forced neighbour: an opening above or below that was walled off one step back
+            if ((isOpen(x, y - 1) && !isOpen(x - dx, y - 1)) || (isOpen(x, y + 1) && !isOpen(x - dx, y + 1))) {
+                return pack(x, y);
+            }
+        }
+        return NO_JUMP_POINT;
+    }
+
+    /**
+     * Walks vertically until reaching the goal, a tile where the path may have to turn,
+     * a tile from which a horizontal jump finds a jump point, or a blocked tile.
+     *
+     * @return the jump point packed as x (high 32 bits) and y (low 32 bits), or NO_JUMP_POINT
+     */
+    private long jumpVertical(int x, int y, int dy, int goalX, int goalY) {
+        for (; isOpen(x, y); y += dy) {
+            if (x == goalX && y == goalY) {
+                return pack(x, y);
+            }
+            if ((isOpen(x - 1, y) && !isOpen(x - 1, y - dy)) || (isOpen(x + 1, y) && !isOpen(x + 1, y - dy))) {
+                return pack(x, y);
+            }
+            if (jumpHorizontal(x - 1, y, -1, goalX, goalY) != NO_JUMP_POINT
+                    || jumpHorizontal(x + 1, y, 1, goalX, goalY) != NO_JUMP_POINT) {
+                return pack(x, y);
+            }
+        }
+        return NO_JUMP_POINT;
+    }
+
+    /**
+     * Fills in the straight runs between the jump points of a path.
+     *
+     * @param goal the goal node
+     * @return the tiles of the path from start to goal as x, y pairs
+     */
+    private static int[] expandPath(Node goal) {
+        List<Node> jumpPoints = new ArrayList<>();
+        for (Node node = goal; node != null; node = node.parent) {
+            jumpPoints.add(node);
+        }
+        int[] path = new int[(goal.g + 1) * 2];
+        int i = 0;
+        Node previous = jumpPoints.get(jumpPoints.size() - 1);
+        path[i++] = previous.x;
+        path[i++] = previous.y;
+        for (int j = jumpPoints.size() - 2; j >= 0; j--) {
+            Node node = jumpPoints.get(j);
+            int dx = Integer.signum(node.x - previous.x);
+            int dy = Integer.signum(node.y - previous.y);
+            for (int x = previous.x, y = previous.y; x != node.x || y != node.y; ) {
+                x += dx;
+                y += dy;
+                path[i++] = x;
+                path[i++] = y;
+            }
+            previous = node;
+        }
+        return path;
+    }
+
+    private static int heuristic(int x, int y, int goalX, int goalY) {
+        return Math.abs(goalX - x) + Math.abs(goalY - y);
+    }
+
+    private static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    private static long tileKey(int x, int y) {
+        return ((long) y << 32) | (x & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A jump point on the open or closed list.
+     */
+    private static final class Node implements Comparable<Node> {
+        final int x;
+        final int y;
+        final Node parent;
+        final int g;
+        final int f;
+        boolean closed;
+
+        Node(int x, int y, Node parent, int g, int f) {
+            this.x = x;
+            this.y = y;
+            this.parent = parent;
+            this.g = g;
+            this.f = f;
+        }
+
+        @Override
+        public int compareTo(Node other) {
+            // Prefer deeper nodes on ties so the search heads straight for the goal
+            return f != other.f ? Integer.compare(f, other.f) : Integer.compare(other.g, g);
+        }
+    }
+}
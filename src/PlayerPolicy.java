@@ -0,0 +1,42 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The PlayerPolicy interface decides which action the player takes on each turn of a duel.
+ * Implementations range from interactive dialogs to scripted strategies used by the simulator.
+ */
+@FunctionalInterface
+public interface PlayerPolicy {
+
+    /**
+     * The value returned by a policy that gives up the duel.
+     */
+    int FORFEIT = -1;
+
+    /**
+     * Chooses the player's action for the current turn.
+     *
+     * @param player  the player's character
+     * @param enemy   the enemy being fought
+     * @param options the actions available to the player's archetype
+     * @return the index of the chosen option, or {@link #FORFEIT} to give up the duel
+     */
+    int chooseAction(Character player, Enemy enemy, String[] options);
+
+    /**
+     * A policy that always picks the archetype's first (offensive) action.
+     *
+     * @return the policy
+     */
+    static PlayerPolicy alwaysAttack() {
+        return (player, enemy, options) -> 0;
+    }
+
+    /**
+     * A policy that picks uniformly among the available actions.
+     *
+     * @return the policy
+     */
+    static PlayerPolicy uniformRandom() {
+        return (player, enemy, options) -> ThreadLocalRandom.current().nextInt(options.length);
+    }
+}
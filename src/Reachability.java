@@ -0,0 +1,206 @@
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The Reachability class finds the tiles a character can reach within its movement range, with
+ * a breadth-first search in the four directions of the game's moves, and caches the result for
+ * the last few positions. A character walks through free tiles only; tiles holding an NPC or an
+ * end spot can be the last tile of a move but not be walked through, and blocked tiles cannot
+ * be entered at all. The map reports every tile whose static object or NPC changes through
+ * {@link #tileChanged(int, int)}, which drops just the cached areas around that tile, so
+ * showing the area under the mouse and checking a clicked tile cost a lookup.
+ *
+ * <p>The cache is used from the map's simulation thread only. The renderer draws the area that
+ * the simulation captured into the published frame, since an area never changes once found.</p>
+ */
+public class Reachability {
+
+    private static final int CACHED_AREAS = 32;
+    private static final int[] DX = {0, 0, -1, 1};
+    private static final int[] DY = {-1, 1, 0, 0};
+    private static final char[] MOVES = {'W', 'S', 'A', 'D'};
+    private static final byte UNREACHABLE = -1;
+    private static final byte ORIGIN = 4;
+
+    private final TileLayer blocked;
+    private final SpatialIndex npcs;
+    private final Point[] endSpots;
+    private final Map<Long, Area> cache = new LinkedHashMap<>(CACHED_AREAS * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Area> eldest) {
+            return size() > CACHED_AREAS;
+        }
+    };
+
+    /**
+     * The Area class holds the tiles reachable from one position and how to get to each.
+     */
+    public static final class Area {
+        private final int originX;
+        private final int originY;
+        private final int range;
+        private final int side;
+        private final byte[] arrivals; // Direction of the last step onto each tile, for the square around the origin
+
+        private Area(int originX, int originY, int range) {
+            this.originX = originX;
+            this.originY = originY;
+            this.range = range;
+            this.side = 2 * range + 1;
+            this.arrivals = new byte[side * side];
+        }
+
+        /**
+         * Checks whether a tile can be reached. The origin itself does not count.
+         *
+         * @param x the x-coordinate
+         * @param y the y-coordinate
+         * @return true if a move can end on the tile
+         */
+        public boolean contains(int x, int y) {
+            int index = index(x, y);
+            return index >= 0 && arrivals[index] != UNREACHABLE && arrivals[index] != ORIGIN;
+        }
+
+        /**
+         * Gets the shortest way to a reachable tile as single-step moves.
+         *
+         * @param x the x-coordinate
+         * @param y the y-coordinate
+         * @return the moves, such as "WWD", or null if the tile cannot be reached
+         */
+        public String pathTo(int x, int y) {
+            if (!contains(x, y)) {
+                return null;
+            }
+            StringBuilder path = new StringBuilder();
+            for (int step = arrivals[index(x, y)]; step != ORIGIN; step = arrivals[index(x, y)]) {
+                path.append(MOVES[step]);
+                x -= DX[step];
+                y -= DY[step];
+            }
+            return path.reverse().toString();
+        }
+
+        /**
+         * Gets the range the area was searched with.
+         *
+         * @return the range in steps
+         */
+        public int getRange() {
+            return range;
+        }
+
+        private boolean covers(int x, int y) {
+            return Math.abs(x - originX) <= range && Math.abs(y - originY) <= range;
+        }
+
+        private int index(int x, int y) {
+            if (!covers(x, y)) {
+                return -1;
+            }
+            return (y - originY + range) * side + x - originX + range;
+        }
+    }
+
+    /**
+     * Constructor for the Reachability class.
+     *
+     * @param blocked  the tiles that cannot be entered
+     * @param npcs     the NPCs, which end a move on their tile
+     * @param endSpots the end spots, which end a move on their tile
+     */
+    public Reachability(TileLayer blocked, SpatialIndex npcs, Point[] endSpots) {
+        this.blocked = blocked;
+        this.npcs = npcs;
+        this.endSpots = endSpots;
+    }
+
+    /**
+     * Gets the tiles reachable from a position, searching only if the area is not cached.
+     *
+     * @param x     the x-coordinate to start from
+     * @param y     the y-coordinate to start from
+     * @param range the most steps a move may take
+     * @return the reachable area
+     */
+    public Area get(int x, int y, int range) {
+        long key = ((long) range << 56) | ((long) y << 28) | x;
+        Area area = cache.get(key);
+        if (area == null) {
+            area = search(x, y, range);
+            cache.put(key, area);
+        }
+        return area;
+    }
+
+    /**
+     * Drops the cached areas that a change to a tile may affect.
+     *
+     * @param x the x-coordinate of the tile whose static object or NPC changed
+     * @param y the y-coordinate
+     */
+    public void tileChanged(int x, int y) {
+        if (cache.isEmpty()) {
+            return;
+        }
+        for (Iterator<Area> areas = cache.values().iterator(); areas.hasNext(); ) {
+            if (areas.next().covers(x, y)) {
+                areas.remove();
+            }
+        }
+    }
+
+    /**
+     * Searches the reachable area breadth first, one ring of steps at a time.
+     */
+    private Area search(int originX, int originY, int range) {
+        Area area = new Area(originX, originY, range);
+        Arrays.fill(area.arrivals, UNREACHABLE);
+        area.arrivals[area.index(originX, originY)] = ORIGIN;
+        int[] queue = new int[area.arrivals.length];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = area.index(originX, originY);
+        for (int steps = 0; steps < range && head < tail; steps++) {
+            int ringEnd = tail;
+            while (head < ringEnd) {
+                int index = queue[head++];
+                int x = originX - range + index % area.side;
+                int y = originY - range + index / area.side;
+                if (index != area.index(originX, originY) && !isWalkable(x, y)) {
+                    continue; // Moves end on NPCs and end spots
+                }
+                for (int d = 0; d < DX.length; d++) {
+                    int nx = x + DX[d];
+                    int ny = y + DY[d];
+                    int next = area.index(nx, ny);
+                    if (next >= 0 && area.arrivals[next] == UNREACHABLE && isEnterable(nx, ny)) {
+                        area.arrivals[next] = (byte) d;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+        return area;
+    }
+
+    private boolean isEnterable(int x, int y) {
+        return x >= 0 && y >= 0 && x < blocked.getWidth() && y < blocked.getHeight() && !blocked.get(x, y);
+    }
+
+    private boolean isWalkable(int x, int y) {
+        if (npcs.find(x, y, -1) >= 0) {
+            return false;
+        }
+        for (Point endSpot : endSpots) {
+            if (endSpot.x == x && endSpot.y == y) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,87 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The ReservationTable class settles which of several movers gets a tile when they are planned
+ * in parallel. Movers reserve the tiles they want with a priority, and the lowest priority wins
+ * no matter in which order or on which threads the reservations arrive, so parallel planning
+ * gives the same result on every run. The table is an open-addressing hash of tile keys built
+ * on atomic arrays; reserving takes no locks, and clearing it reuses its arrays.
+ */
+public final class ReservationTable {
+
+    /** The owner of a tile nobody reserved. */
+    public static final long NONE = Long.MAX_VALUE;
+
+    private static final long EMPTY = -1;
+
+    private AtomicLongArray keys = new AtomicLongArray(0);
+    private AtomicLongArray owners = new AtomicLongArray(0);
+    private int mask;
+
+    /**
+     * Empties the table and makes room for the given number of reservations. Must not be
+     * called while reservations are being made.
+     *
+     * @param expected the most tiles that will be reserved before the next clear
+     */
+    public void clear(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(8, expected) * 2 - 1) << 1; // At most half full
+        if (capacity > keys.length()) {
+            keys = new AtomicLongArray(capacity);
+            owners = new AtomicLongArray(capacity);
+        } else {
+            capacity = keys.length();
+        }
+        for (int i = 0; i < capacity; i++) {
+            keys.setPlain(i, EMPTY);
+            owners.setPlain(i, NONE);
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * Reserves a tile. Safe to call from many threads at once.
+     *
+     * @param tile     the tile's key, which must not be negative
+     * @param priority the mover's priority; the lowest one wins
+     */
+    public void reserve(long tile, long priority) {
+        int slot = slot(tile);
+        while (true) {
+            long key = keys.get(slot);
+            if (key == EMPTY && keys.compareAndSet(slot, EMPTY, tile)) {
+                break;
+            }
+            if (keys.get(slot) == tile) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (priority < owners.get(slot)) {
+            owners.accumulateAndGet(slot, priority, Math::min);
+        }
+    }
+
+    /**
+     * Gets the winning priority of a tile, once all reservations are in.
+     *
+     * @param tile the tile's key
+     * @return the lowest priority that reserved the tile, or {@link #NONE}
+     */
+    public long owner(long tile) {
+        for (int slot = slot(tile); ; slot = (slot + 1) & mask) {
+            long key = keys.get(slot);
+            if (key == tile) {
+                return owners.get(slot);
+            }
+            if (key == EMPTY) {
+                return NONE;
+            }
+        }
+    }
+
+    private int slot(long tile) {
+        long h = tile * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,98 @@
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The ServerStats class collects the statistics of a {@link GameServer}: how many sessions are
+ * connected, how fast sessions and games are started, and how long moves take to handle.
+ * Move latencies go into a {@link Histogram}, which costs the same however many sessions
+ * record into it. All counters are updated by many session threads at once.
+ */
+public class ServerStats {
+
+    private final long startNanos = System.nanoTime();
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final LongAdder sessions = new LongAdder();
+    private final LongAdder games = new LongAdder();
+    private final Histogram moveLatency = new Histogram();
+
+    /**
+     * Records a newly connected session.
+     */
+    public void sessionOpened() {
+        sessions.increment();
+        activeSessions.incrementAndGet();
+    }
+
+    /**
+     * Records a disconnected session.
+     */
+    public void sessionClosed() {
+        activeSessions.decrementAndGet();
+    }
+
+    /**
+     * Records a game started by a session.
+     */
+    public void gameStarted() {
+        games.increment();
+    }
+
+    /**
+     * Records a handled move.
+     *
+     * @param nanos the time from receiving the move to sending its result, excluding any time
+     *              spent waiting for the player's duel choices
+     */
+    public void recordMove(long nanos) {
+        moveLatency.record(nanos);
+    }
+
+    /**
+     * Gets the number of sessions currently connected.
+     *
+     * @return the active session count
+     */
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    /**
+     * Gets the number of sessions connected per second since the server started.
+     *
+     * @return the session rate
+     */
+    public double getSessionsPerSecond() {
+        return sessions.sum() * 1e9 / Math.max(1, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Gets the number of moves handled per second since the server started.
+     *
+     * @return the move rate
+     */
+    public double getMovesPerSecond() {
+        return moveLatency.getCount() * 1e9 / Math.max(1, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Gets a percentile of the move latency.
+     *
+     * @param percentile the percentile between 0 and 100
+     * @return the latency in nanoseconds at that percentile, rounded up to its bucket's bound
+     */
+    public long getLatencyPercentile(double percentile) {
+        return moveLatency.getPercentile(percentile);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "Sessions: %d active, %d total (%.1f/s), %d games%n" +
+                        "Moves: %d (%.0f/s), latency p50 %.1f us p90 %.1f us p99 %.1f us p99.9 %.1f us max %.1f us",
+                getActiveSessions(), sessions.sum(), getSessionsPerSecond(), games.sum(),
+                moveLatency.getCount(), getMovesPerSecond(),
+                getLatencyPercentile(50) / 1e3, getLatencyPercentile(90) / 1e3, getLatencyPercentile(99) / 1e3,
+                getLatencyPercentile(99.9) / 1e3, moveLatency.getMax() / 1e3);
+    }
+}
@@ -0,0 +1,360 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * The SpatialIndex class is a uniform-grid spatial hash over tile coordinates. Entries are
+ * identified by integer handles and carry a small type tag, such as friendly or enemy NPC,
+ * and an integer value, such as the entity the entry stands for.
+ * The grid is split into square cells; each non-empty cell is found through an open-addressing
+ * hash table and keeps its entries in a doubly linked list, so insert, remove, move and point
+ * queries are O(1) and rectangle and radius queries only visit the cells they overlap.
+ */
+public final class SpatialIndex {
+
+    /**
+     * log2 of the cell width and height in tiles.
+     */
+    private static final int CELL_SHIFT = 3;
+    private static final int NONE = -1;
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+
+    // Per-entry data, indexed by handle
+    private int[] xs;
+    private int[] ys;
+    private int[] types;
+    private int[] values;
+    private int[] next;
+    private int[] prev;
+    private int freeList = NONE;
+    private int highWater;
+    private int size;
+
+    // Cell hash table: packed cell coordinates -> first entry in the cell
+    private long[] cellKeys;
+    private int[] cellHeads;
+    private int cellCount;
+
+    /**
+     * Constructor for the SpatialIndex class.
+     *
+     * @param expectedEntries the number of entries to size the index for
+     */
+    public SpatialIndex(int expectedEntries) {
+        int capacity = Math.max(16, expectedEntries);
+        xs = new int[capacity];
+        ys = new int[capacity];
+        types = new int[capacity];
+        values = new int[capacity];
+        next = new int[capacity];
+        prev = new int[capacity];
+        int tableSize = Integer.highestOneBit(Math.max(16, capacity) * 2 - 1) << 1;
+        cellKeys = new long[tableSize];
+        Arrays.fill(cellKeys, EMPTY_KEY);
+        cellHeads = new int[tableSize];
+    }
+
+    /**
+     * Adds an entry at the given tile.
+     *
+     * @param x     the x-coordinate
+     * @param y     the y-coordinate
+     * @param type  the type tag of the entry
+     * @param value the value carried by the entry
+     * @return the handle of the new entry
+     */
+    public int insert(int x, int y, int type, int value) {
+        int handle;
+        if (freeList != NONE) {
+            handle = freeList;
+            freeList = next[handle];
+        } else {
+            if (highWater == xs.length) {
+                grow();
+            }
+            handle = highWater++;
+        }
+        xs[handle] = x;
+        ys[handle] = y;
+        types[handle] = type;
+        values[handle] = value;
+        link(handle);
+        size++;
+        return handle;
+    }
+
+    /**
+     * Removes an entry. The handle may be reused by later inserts.
+     *
+     * @param handle the handle of the entry
+     */
+    public void remove(int handle) {
+        unlink(handle);
+        types[handle] = NONE;
+        next[handle] = freeList;
+        freeList = handle;
+        size--;
+    }
+
+    /**
+     * Moves an entry to another tile.
+     *
+     * @param handle the handle of the entry
+     * @param x      the new x-coordinate
+     * @param y      the new y-coordinate
+     */
+    public void move(int handle, int x, int y) {
+        if (cellKey(x, y) == cellKey(xs[handle], ys[handle])) {
+            xs[handle] = x;
+            ys[handle] = y;
+            return;
+        }
+        unlink(handle);
+        xs[handle] = x;
+        ys[handle] = y;
+        link(handle);
+    }
+
+    /**
+     * Finds an entry on the given tile.
+     *
+     * @param x    the x-coordinate
+     * @param y    the y-coordinate
+     * @param type the type tag to look for, or a negative value for any type
+     * @return the handle of a matching entry, or -1 if there is none
+     */
+    public int find(int x, int y, int type) {
+        int slot = findSlot(cellKey(x, y));
+        if (cellKeys[slot] == EMPTY_KEY) {
+            return NONE;
+        }
+        for (int e = cellHeads[slot]; e != NONE; e = next[e]) {
+            if (xs[e] == x && ys[e] == y && (type < 0 || types[e] == type)) {
+                return e;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Finds an entry within a rectangle of tiles.
+     *
+     * @param minX the smallest x-coordinate, inclusive
+     * @param minY the smallest y-coordinate, inclusive
+     * @param maxX the largest x-coordinate, inclusive
+     * @param maxY the largest y-coordinate, inclusive
+     * @param type the type tag to look for, or a negative value for any type
+     * @return the handle of a matching entry, or -1 if there is none
+     */
+    public int findInRect(int minX, int minY, int maxX, int maxY, int type) {
+        for (int cy = minY >> CELL_SHIFT; cy <= maxY >> CELL_SHIFT; cy++) {
+            for (int cx = minX >> CELL_SHIFT; cx <= maxX >> CELL_SHIFT; cx++) {
+                int slot = findSlot(packCell(cx, cy));
+                if (cellKeys[slot] == EMPTY_KEY) {
+                    continue;
+                }
+                for (int e = cellHeads[slot]; e != NONE; e = next[e]) {
+                    if (xs[e] >= minX && xs[e] <= maxX && ys[e] >= minY && ys[e] <= maxY
+                            && (type < 0 || types[e] == type)) {
+                        return e;
+                    }
+                }
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Visits every entry within a rectangle of tiles.
+     *
+     * @param minX    the smallest x-coordinate, inclusive
+     * @param minY    the smallest y-coordinate, inclusive
+     * @param maxX    the largest x-coordinate, inclusive
+     * @param maxY    the largest y-coordinate, inclusive
+     * @param type    the type tag to look for, or a negative value for any type
+     * @param visitor receives the handle of each matching entry
+     */
+    public void queryRect(int minX, int minY, int maxX, int maxY, int type, IntConsumer visitor) {
+        for (int cy = minY >> CELL_SHIFT; cy <= maxY >> CELL_SHIFT; cy++) {
+            for (int cx = minX >> CELL_SHIFT; cx <= maxX >> CELL_SHIFT; cx++) {
+                int slot = findSlot(packCell(cx, cy));
+                if (cellKeys[slot] == EMPTY_KEY) {
+                    continue;
+                }
+                for (int e = cellHeads[slot]; e != NONE; ) {
+                    int following = next[e]; // The visitor may remove e
+                    if (xs[e] >= minX && xs[e] <= maxX && ys[e] >= minY && ys[e] <= maxY
+                            && (type < 0 || types[e] == type)) {
+                        visitor.accept(e);
+                    }
+                    e = following;
+                }
+            }
+        }
+    }
+
+    /**
+     * Visits every entry, in no particular order.
+     *
+     * @param visitor receives the handle of each entry
+     */
+    public void forEach(IntConsumer visitor) {
+        for (int e = 0; e < highWater; e++) {
+            if (types[e] != NONE) {
+                visitor.accept(e);
+            }
+        }
+    }
+
+    /**
+     * Visits every entry within a Euclidean distance of a tile.
+     *
+     * @param x       the x-coordinate of the center
+     * @param y       the y-coordinate of the center
+     * @param radius  the distance in tiles, inclusive
+     * @param type    the type tag to look for, or a negative value for any type
+     * @param visitor receives the handle of each matching entry
+     */
+    public void queryRadius(int x, int y, int radius, int type, IntConsumer visitor) {
+        long limit = (long) radius * radius;
+        queryRect(x - radius, y - radius, x + radius, y + radius, type, e -> {
+            long dx = xs[e] - x;
+            long dy = ys[e] - y;
+            if (dx * dx + dy * dy <= limit) {
+                visitor.accept(e);
+            }
+        });
+    }
+
+    /**
+     * Gets the x-coordinate of an entry.
+     *
+     * @param handle the handle of the entry
+     * @return the x-coordinate
+     */
+    public int getX(int handle) {
+        return xs[handle];
+    }
+
+    /**
+     * Gets the y-coordinate of an entry.
+     *
+     * @param handle the handle of the entry
+     * @return the y-coordinate
+     */
+    public int getY(int handle) {
+        return ys[handle];
+    }
+
+    /**
+     * Gets the type tag of an entry.
+     *
+     * @param handle the handle of the entry
+     * @return the type tag
+     */
+    public int getType(int handle) {
+        return types[handle];
+    }
+
+    /**
+     * Gets the value carried by an entry.
+     *
+     * @param handle the handle of the entry
+     * @return the value
+     */
+    public int getValue(int handle) {
+        return values[handle];
+    }
+
+    /**
+     * Gets the number of entries in the index.
+     *
+     * @return the entry count
+     */
+    public int size() {
+        return size;
+    }
+
+    private static long cellKey(int x, int y) {
+        return packCell(x >> CELL_SHIFT, y >> CELL_SHIFT);
+    }
+
+    private static long packCell(int cx, int cy) {
+        return ((long) cy << 32) | (cx & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Finds the hash table slot holding a cell, or the empty slot where it would be added.
+     *
+     * @param key the packed cell coordinates
+     * @return the slot index
+     */
+    private int findSlot(long key) {
+        int mask = cellKeys.length - 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (cellKeys[slot] != EMPTY_KEY && cellKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void link(int handle) {
+        long key = cellKey(xs[handle], ys[handle]);
+        int slot = findSlot(key);
+        if (cellKeys[slot] == EMPTY_KEY) {
+            // Cells are never dropped from the table, so emptied cells are reused in place
+            if ((cellCount + 1) * 2 > cellKeys.length) {
+                rehash();
+                slot = findSlot(key);
+            }
+            cellKeys[slot] = key;
+            cellHeads[slot] = NONE;
+            cellCount++;
+        }
+        int head = cellHeads[slot];
+        next[handle] = head;
+        prev[handle] = NONE;
+        if (head != NONE) {
+            prev[head] = handle;
+        }
+        cellHeads[slot] = handle;
+    }
+
+    private void unlink(int handle) {
+        int before = prev[handle];
+        int after = next[handle];
+        if (before != NONE) {
+            next[before] = after;
+        } else {
+            cellHeads[findSlot(cellKey(xs[handle], ys[handle]))] = after;
+        }
+        if (after != NONE) {
+            prev[after] = before;
+        }
+    }
+
+    private void grow() {
+        int capacity = xs.length * 2;
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        types = Arrays.copyOf(types, capacity);
+        values = Arrays.copyOf(values, capacity);
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+    }
+
+    private void rehash() {
+        long[] oldKeys = cellKeys;
+        int[] oldHeads = cellHeads;
+        cellKeys = new long[oldKeys.length * 2];
+        Arrays.fill(cellKeys, EMPTY_KEY);
+        cellHeads = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                int slot = findSlot(oldKeys[i]);
+                cellKeys[slot] = oldKeys[i];
+                cellHeads[slot] = oldHeads[i];
+            }
+        }
+    }
+}
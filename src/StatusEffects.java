@@ -0,0 +1,348 @@
+import java.util.Arrays;
+
+/**
+ * The StatusEffects class keeps the temporary buffs and debuffs of the entities in one
+ * {@link EntityStore}. An effect adds an amount to one attribute of an entity when it is applied
+ * and takes it away again when its duration runs out, so the store always holds the current,
+ * boosted values and the combat code needs no changes to read them.
+ *
+ * <p>Time is counted in turns, and expiries are scheduled in a hierarchical timing wheel: four
+ * levels of 64 slots, where each level's slot spans a full turn of the level below. An effect
+ * goes into the slot of the lowest level that reaches its expiry, and the slots of a higher level
+ * are spread over the level below as time reaches them. Applying, cancelling and expiring an
+ * effect are constant-time list operations, whatever the number of active effects, and advancing
+ * a turn touches only the effects due in it. The effects themselves live in parallel arrays,
+ * linked into their slots by index, and are referred to by handles with a generation counter
+ * like the store's own.</p>
+ *
+ * <p>Like the store, the effects are not thread-safe.</p>
+ */
+public class StatusEffects {
+
+    /** Attribute ID of strength. */
+    public static final int STRENGTH = 0;
+    /** Attribute ID of magic. */
+    public static final int MAGIC = 1;
+    /** Attribute ID of movement range. */
+    public static final int MOVEMENT_RANGE = 2;
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELAY = (1L << (SLOT_BITS * LEVELS)) - 1; // Later expiries wait in the top level
+    private static final int INDEX_BITS = 24;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int GENERATION_MASK = 0x7F; // Keeps handles positive
+    private static final int NONE = -1;
+
+    /**
+     * The EffectVisitor interface receives the active effects of an entity.
+     */
+    @FunctionalInterface
+    public interface EffectVisitor {
+        /**
+         * Called for each active effect.
+         *
+         * @param attribute the attribute ID, such as {@link #STRENGTH}
+         * @param amount    the amount the effect adds to the attribute
+         * @param remaining the turns until the effect expires
+         */
+        void visit(int attribute, int amount, long remaining);
+    }
+
+    private final EntityStore store;
+    private final int[] heads = new int[LEVELS * SLOTS]; // First effect of each slot's list
+    private int[] entities;
+    private int[] attributes;
+    private int[] amounts;
+    private long[] expiries;
+    private int[] generations;
+    private int[] slots; // The slot an effect is linked into, or NONE if the entry is free
+    private int[] next; // Next effect in the slot, or next free entry
+    private int[] previous;
+    private int highWater;
+    private int size;
+    private int freeList = NONE;
+    private long nextTurn = 1; // The turn the wheel processes next; the current turn is one before
+
+    /**
+     * Constructor for the StatusEffects class.
+     *
+     * @param store the store whose entities the effects apply to
+     */
+    public StatusEffects(EntityStore store) {
+        this.store = store;
+        Arrays.fill(heads, NONE);
+        int capacity = 16;
+        entities = new int[capacity];
+        attributes = new int[capacity];
+        amounts = new int[capacity];
+        expiries = new long[capacity];
+        generations = new int[capacity];
+        slots = new int[capacity];
+        next = new int[capacity];
+        previous = new int[capacity];
+    }
+
+    /**
+     * Applies an effect to an entity, adding its amount to the attribute at once.
+     *
+     * @param entity    the handle of the entity in the store
+     * @param attribute the attribute ID, such as {@link #STRENGTH}
+     * @param amount    the amount to add; negative for a debuff
+     * @param duration  the number of turns the effect lasts, at least one
+     * @return the handle of the effect
+     */
+    public int apply(int entity, int attribute, int amount, int duration) {
+        if (duration <= 0) {
+            throw new IllegalArgumentException("Effects last at least one turn: " + duration);
+        }
+        addTo(entity, attribute, amount);
+        return schedule(entity, attribute, amount, duration);
+    }
+
+    /**
+     * Schedules the expiry of an effect whose amount the entity's attribute already includes,
+     * as when an entity is restored from a snapshot.
+     *
+     * @param entity    the handle of the entity in the store
+     * @param attribute the attribute ID
+     * @param amount    the amount the effect added
+     * @param remaining the number of turns left, at least one
+     * @return the handle of the effect
+     */
+    public int restore(int entity, int attribute, int amount, long remaining) {
+        if (remaining <= 0) {
+            throw new IllegalArgumentException("Effects last at least one turn: " + remaining);
+        }
+        return schedule(entity, attribute, amount, remaining);
+    }
+
+    /**
+     * Ends an effect before its time, taking its amount away again.
+     *
+     * @param effect the handle of the effect
+     * @return true if the effect was still active
+     */
+    public boolean cancel(int effect) {
+        if (!isActive(effect)) {
+            return false;
+        }
+        int index = effect & INDEX_MASK;
+        unlink(index);
+        expire(index);
+        return true;
+    }
+
+    /**
+     * Checks whether an effect is still active.
+     *
+     * @param effect the handle of the effect
+     * @return true if the effect has neither expired nor been cancelled
+     */
+    public boolean isActive(int effect) {
+        int index = effect & INDEX_MASK;
+        return index < highWater && slots[index] != NONE && generations[index] == effect >>> INDEX_BITS;
+    }
+
+    /**
+     * Gets the turns left until an active effect expires.
+     *
+     * @param effect the handle of the effect
+     * @return the remaining turns, or 0 if the effect is no longer active
+     */
+    public long getRemaining(int effect) {
+        return isActive(effect) ? expiries[effect & INDEX_MASK] - getTurn() : 0;
+    }
+
+    /**
+     * Visits the active effects of an entity. Takes time in the number of effects ever active
+     * at once, so it is meant for saving, not for every turn.
+     *
+     * @param entity  the handle of the entity
+     * @param visitor the visitor to call for each effect
+     */
+    public void forEach(int entity, EffectVisitor visitor) {
+        for (int i = 0; i < highWater; i++) {
+            if (slots[i] != NONE && entities[i] == entity) {
+                visitor.visit(attributes[i], amounts[i], expiries[i] - getTurn());
+            }
+        }
+    }
+
+    /**
+     * Advances time by one turn and expires the effects due.
+     */
+    public void tick() {
+        advance(1);
+    }
+
+    /**
+     * Advances time and expires the effects due, in the order of their expiry.
+     *
+     * @param turns the number of turns to advance
+     */
+    public void advance(long turns) {
+        long last = nextTurn + turns;
+        while (nextTurn < last) {
+            if (size == 0) {
+                nextTurn = last; // Nothing can be due
+                return;
+            }
+            long turn = nextTurn;
+            // Spread the higher levels' slots that turn begins over the levels below
+            cascade(turn, 1);
+            int slot = (int) (turn & SLOT_MASK);
+            int index = heads[slot];
+            heads[slot] = NONE; // The whole list leaves the slot; nothing links back into it
+            while (index != NONE) {
+                int following = next[index];
+                if (expiries[index] > turn) {
+                    link(index); // Was beyond the wheel's reach when scheduled
+                } else {
+                    expire(index);
+                }
+                index = following;
+            }
+            nextTurn++;
+        }
+    }
+
+    /**
+     * Gets the current turn, the number of turns advanced so far.
+     *
+     * @return the turn
+     */
+    public long getTurn() {
+        return nextTurn - 1;
+    }
+
+    /**
+     * Gets the number of active effects.
+     *
+     * @return the effect count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Moves the effects of the slot that a turn reaches on a level, and on the levels above it
+     * if their slots roll over too, down to the levels that now reach them.
+     */
+    private void cascade(long turn, int level) {
+        if (level == LEVELS || ((turn >>> (SLOT_BITS * (level - 1))) & SLOT_MASK) != 0) {
+            return;
+        }
+        cascade(turn, level + 1);
+        int slot = level * SLOTS + (int) ((turn >>> (SLOT_BITS * level)) & SLOT_MASK);
+        int index = heads[slot];
+        heads[slot] = NONE;
+        while (index != NONE) {
+            int following = next[index];
+            link(index);
+            index = following;
+        }
+    }
+
+    private int schedule(int entity, int attribute, int amount, long duration) {
+        if (attribute < STRENGTH || attribute > MOVEMENT_RANGE) {
+            throw new IllegalArgumentException("Unknown attribute: " + attribute);
+        }
+        int index;
+        if (freeList != NONE) {
+            index = freeList;
+            freeList = next[index];
+        } else {
+            if (highWater == entities.length) {
+                grow();
+            }
+            index = highWater++;
+        }
+        entities[index] = entity;
+        attributes[index] = attribute;
+        amounts[index] = amount;
+        expiries[index] = getTurn() + duration;
+        link(index);
+        size++;
+        return (generations[index] << INDEX_BITS) | index;
+    }
+
+    /**
+     * Takes an unlinked effect's amount away and frees its entry. Effects of released entities
+     * are dropped without touching the store.
+     */
+    private void expire(int index) {
+        if (store.isAlive(entities[index])) {
+            addTo(entities[index], attributes[index], -amounts[index]);
+        }
+        slots[index] = NONE;
+        generations[index] = (generations[index] + 1) & GENERATION_MASK;
+        next[index] = freeList;
+        freeList = index;
+        size--;
+    }
+
+    /**
+     * Links an effect into the slot of the lowest level that reaches its expiry from the next
+     * turn to be processed.
+     */
+    private void link(int index) {
+        long expiry = expiries[index];
+        long delay = Math.min(expiry - nextTurn, MAX_DELAY);
+        if (delay == MAX_DELAY) {
+            expiry = nextTurn + MAX_DELAY;
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && delay >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = level * SLOTS + (int) ((expiry >>> (SLOT_BITS * level)) & SLOT_MASK);
+        int head = heads[slot];
+        next[index] = head;
+        previous[index] = NONE;
+        if (head != NONE) {
+            previous[head] = index;
+        }
+        heads[slot] = index;
+        slots[index] = slot;
+    }
+
+    private void unlink(int index) {
+        int before = previous[index];
+        int after = next[index];
+        if (before == NONE) {
+            heads[slots[index]] = after;
+        } else {
+            next[before] = after;
+        }
+        if (after != NONE) {
+            previous[after] = before;
+        }
+    }
+
+    private void addTo(int entity, int attribute, int amount) {
+        switch (attribute) {
+            case STRENGTH -> store.setStrength(entity, store.getStrength(entity) + amount);
+            case MAGIC -> store.setMagic(entity, store.getMagic(entity) + amount);
+            case MOVEMENT_RANGE -> store.setMovementRange(entity, store.getMovementRange(entity) + amount);
+            default -> throw new IllegalArgumentException("Unknown attribute: " + attribute);
+        }
+    }
+
+    private void grow() {
+        int capacity = entities.length * 2;
+        if (capacity > INDEX_MASK + 1) {
+            throw new IllegalStateException("Too many status effects");
+        }
+        entities = Arrays.copyOf(entities, capacity);
+        attributes = Arrays.copyOf(attributes, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        expiries = Arrays.copyOf(expiries, capacity);
+        generations = Arrays.copyOf(generations, capacity);
+        slots = Arrays.copyOf(slots, capacity);
+        next = Arrays.copyOf(next, capacity);
+        previous = Arrays.copyOf(previous, capacity);
+    }
+}
@@ -0,0 +1,273 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * The TileLayer class stores one bit per tile, such as whether a tile holds a static object.
+ * Tiles are packed into 64x64 chunks of 64 {@code long} words, one word per chunk row, and a
+ * chunk is only allocated once one of its tiles is set. Chunks live either on the heap or in
+ * off-heap direct {@link ByteBuffer} slabs, so even a 100k x 100k layer stays around 1.3 GB
+ * when fully populated and costs almost nothing when sparse.
+ */
+public final class TileLayer {
+
+    /**
+     * log2 of the chunk width and height in tiles.
+     */
+    public static final int CHUNK_SHIFT = 6;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int CHUNK_BYTES = CHUNK_SIZE * Long.BYTES;
+
+    // Off-heap chunks are carved out of 512 KB direct buffers
+    private static final int SLAB_SHIFT = 10;
+    private static final int SLAB_CHUNKS = 1 << SLAB_SHIFT;
+    private static final int SLAB_MASK = SLAB_CHUNKS - 1;
+
+    private final int width;
+    private final int height;
+    private final int chunksX;
+    private final boolean offHeap;
+
+    // Heap backing: null until a tile in the chunk is set
+    private final long[][] chunks;
+
+    // Off-heap backing: slot + 1 of each chunk in the slabs, 0 until a tile in the chunk is set
+    private final int[] slots;
+    private ByteBuffer[] slabs;
+    private int allocated;
+
+    /**
+     * Constructor for a heap-backed TileLayer with every tile clear.
+     *
+     * @param width  the number of columns
+     * @param height the number of rows
+     */
+    public TileLayer(int width, int height) {
+        this(width, height, false);
+    }
+
+    /**
+     * Constructor for the TileLayer class with every tile clear.
+     *
+     * @param width   the number of columns
+     * @param height  the number of rows
+     * @param offHeap true to keep the chunks in direct byte buffers outside the Java heap
+     */
+    public TileLayer(int width, int height, boolean offHeap) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid layer size: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.chunksX = (width + CHUNK_MASK) >>> CHUNK_SHIFT;
+        int chunksY = (height + CHUNK_MASK) >>> CHUNK_SHIFT;
+        long chunkCount = (long) chunksX * chunksY;
+        if (chunkCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Layer too large: " + width + "x" + height);
+        }
+        this.offHeap = offHeap;
+        if (offHeap) {
+            this.chunks = null;
+            this.slots = new int[(int) chunkCount];
+            this.slabs = new ByteBuffer[0];
+        } else {
+            this.chunks = new long[(int) chunkCount][];
+            this.slots = null;
+        }
+    }
+
+    /**
+     * Creates a layer whose chunks are kept outside the Java heap.
+     *
+     * @param width  the number of columns
+     * @param height the number of rows
+     * @return the new layer
+     */
+    public static TileLayer offHeap(int width, int height) {
+        return new TileLayer(width, height, true);
+    }
+
+    /**
+     * Gets the number of columns.
+     *
+     * @return the layer width in tiles
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the number of rows.
+     *
+     * @return the layer height in tiles
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Checks whether the given tile is set. Tiles outside the layer are never set.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @return true if the tile is set
+     */
+    public boolean get(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return false;
+        }
+        return (word(x, y) & (1L << x)) != 0;
+    }
+
+    /**
+     * Sets or clears the given tile, allocating its chunk on the first set.
+     *
+     * @param x     the x-coordinate
+     * @param y     the y-coordinate
+     * @param value true to set the tile, false to clear it
+     */
+    public void set(int x, int y, boolean value) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new IndexOutOfBoundsException("Tile outside layer: " + x + "," + y);
+        }
+        int chunk = chunkIndex(x, y);
+        int row = y & CHUNK_MASK;
+        long bit = 1L << x; // Shifts only use the low six bits of x
+        if (offHeap) {
+            int slot = slots[chunk] - 1;
+            if (slot < 0) {
+                if (!value) {
+                    return;
+                }
+                slot = allocateSlot(chunk);
+            }
+            ByteBuffer slab = slabs[slot >>> SLAB_SHIFT];
+            int offset = ((slot & SLAB_MASK) * CHUNK_BYTES) + (row << 3);
+            long word = slab.getLong(offset);
+            slab.putLong(offset, value ? word | bit : word & ~bit);
+        } else {
+            long[] words = chunks[chunk];
+            if (words == null) {
+                if (!value) {
+                    return;
+                }
+                words = chunks[chunk] = new long[CHUNK_SIZE];
+                allocated++;
+            }
+            words[row] = value ? words[row] | bit : words[row] & ~bit;
+        }
+    }
+
+    /**
+     * Gets the 64 tiles of a chunk row as a word, bit {@code i} being the tile at
+     * {@code x = chunkX * 64 + i}. Unallocated chunks read as all clear.
+     *
+     * @param x any x-coordinate within the chunk
+     * @param y the y-coordinate of the row
+     * @return the packed row
+     */
+    public long word(int x, int y) {
+        int chunk = chunkIndex(x, y);
+        int row = y & CHUNK_MASK;
+        if (offHeap) {
+            int slot = slots[chunk] - 1;
+            if (slot < 0) {
+                return 0L;
+            }
+            return slabs[slot >>> SLAB_SHIFT].getLong(((slot & SLAB_MASK) * CHUNK_BYTES) + (row << 3));
+        }
+        long[] words = chunks[chunk];
+        return words == null ? 0L : words[row];
+    }
+
+    /**
+     * Replaces the 64 tiles of a chunk row at once, the counterpart of {@link #word(int, int)}.
+     * Bits past the last column of the layer are ignored.
+     *
+     * @param x    any x-coordinate within the chunk
+     * @param y    the y-coordinate of the row
+     * @param bits the packed row
+     */
+    public void setWord(int x, int y, long bits) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new IndexOutOfBoundsException("Tile outside layer: " + x + "," + y);
+        }
+        int columns = width - (x & ~CHUNK_MASK);
+        if (columns < CHUNK_SIZE) {
+            bits &= (1L << columns) - 1;
+        }
+        int chunk = chunkIndex(x, y);
+        int row = y & CHUNK_MASK;
+        if (offHeap) {
+            int slot = slots[chunk] - 1;
+            if (slot < 0) {
+                if (bits == 0) {
+                    return;
+                }
+                slot = allocateSlot(chunk);
+            }
+            slabs[slot >>> SLAB_SHIFT].putLong(((slot & SLAB_MASK) * CHUNK_BYTES) + (row << 3), bits);
+        } else {
+            long[] words = chunks[chunk];
+            if (words == null) {
+                if (bits == 0) {
+                    return;
+                }
+                words = chunks[chunk] = new long[CHUNK_SIZE];
+                allocated++;
+            }
+            words[row] = bits;
+        }
+    }
+
+    /**
+     * Gets the number of chunks that have been allocated.
+     *
+     * @return the allocated chunk count
+     */
+    public int getAllocatedChunks() {
+        return allocated;
+    }
+
+    /**
+     * Estimates the memory held by the allocated chunks, excluding the chunk directory.
+     *
+     * @return the size in bytes
+     */
+    public long getChunkBytes() {
+        return (long) allocated * CHUNK_BYTES;
+    }
+
+    /**
+     * Checks whether the chunks are kept outside the Java heap.
+     *
+     * @return true for off-heap layers
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    private int chunkIndex(int x, int y) {
+        return (y >>> CHUNK_SHIFT) * chunksX + (x >>> CHUNK_SHIFT);
+    }
+
+    /**
+     * Assigns the next free off-heap slot to a chunk, adding a slab when the last one is full.
+     *
+     * @param chunk the chunk index
+     * @return the slot of the chunk
+     */
+    private int allocateSlot(int chunk) {
+        int slot = allocated++;
+        int slab = slot >>> SLAB_SHIFT;
+        if (slab == slabs.length) {
+            slabs = Arrays.copyOf(slabs, Math.max(4, slabs.length * 2));
+        }
+        if (slabs[slab] == null) {
+            slabs[slab] = ByteBuffer.allocateDirect(SLAB_CHUNKS * CHUNK_BYTES).order(ByteOrder.nativeOrder());
+        }
+        slots[chunk] = slot + 1;
+        return slot;
+    }
+}
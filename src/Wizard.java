@@ -11,19 +11,13 @@ public class Wizard extends Character {
         super(name, "Wizard");
     }
 
-    @Override
-    protected void initializeAttributes() {
-        this.health = 80;
-        this.strength = 5;
-        this.magic = 20;
-        this.movementRange = 3; // Wizards can move 3 blocks per turn
-    }
-
-    @Override
-    public String attack(Character target) {
-        // Wizard casts a fireball
-        int damage = this.magic;
-        target.health -= damage;
-        return this.name + " casts a fireball at " + target.getName() + " for " + damage + " magical damage!";
+    /**
+     * Constructor for a Wizard stored as a new entity in the given store.
+     *
+     * @param name  the name of the wizard
+     * @param store the store that holds its attributes
+     */
+    public Wizard(String name, EntityStore store) {
+        super(name, "Wizard", store);
     }
 }
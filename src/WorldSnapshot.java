@@ -0,0 +1,421 @@
+import java.awt.Point;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The WorldSnapshot class saves the full state of a game, the map and the player's character,
+ * to a compact versioned binary file and loads it back. Small values are written as varints:
+ * the map size, the player's attributes, and NPC positions as the gaps between their tile
+ * indices in row order. An enemy with the same attributes as the enemy before it, as most
+ * are, is written without them. The player's active status effects are written with the turns
+ * they have left, so that their amounts still wear off after loading. Only the level the player
+ * is on is saved, with its ID, so the levels beyond it are generated again as the player goes
+ * on. The static objects are written as the packed words of the {@link TileLayer}, preceded by
+ * one bit per 64x64 chunk so that empty chunks take no space.
+ *
+ * <p>The packed tiles, the bulk of a snapshot, are assembled in a direct buffer and written
+ * together with the rest in a single gathering {@link FileChannel} write. Snapshots are read
+ * back from a memory-mapped file, so maps with millions of tiles save and load in a fraction
+ * of a second.</p>
+ */
+public final class WorldSnapshot {
+
+    private static final int MAGIC = 0x41505331; // "APS1"
+    private static final int VERSION = 3;
+    private static final int OLDEST_VERSION = 1; // Without the player's status effects, or the level before version 3
+    private static final int CHUNK = TileLayer.CHUNK_SIZE;
+    private static final int MAX_VARINT_BYTES = 5;
+    private static final int MAX_VARLONG_BYTES = 10;
+    private static final int STATS = 5; // Health, max health, strength, magic, movement range
+
+    // Kinds of NPC records
+    private static final byte FRIENDLY = 0;
+    private static final byte ENEMY = 1;
+    private static final byte ENEMY_AS_BEFORE = 2; // Same attributes as the previous enemy
+
+    /**
+     * A restored game.
+     *
+     * @param map    the map, with the player at the saved position
+     * @param player the player's character
+     */
+    public record World(GameMap map, Character player) {
+    }
+
+    private WorldSnapshot() {
+    }
+
+    /**
+     * Saves a game. Call it from the thread that runs the game, between moves.
+     *
+     * @param path   the snapshot file, which is created or replaced
+     * @param map    the map
+     * @param player the player's character
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(Path path, GameMap map, Character player) throws IOException {
+        TileLayer tiles = map.getStaticObjects();
+        int cols = tiles.getWidth();
+        int rows = tiles.getHeight();
+        Point[] endSpots = map.getEndSpots();
+        SpatialIndex index = map.getNPCs();
+        int[] npcs = sortedNPCs(index, cols, rows);
+        long gameplaySeed = map.getGameplayState();
+
+        byte[] archetype = player.getArchetype().getBytes(StandardCharsets.UTF_8);
+        byte[] name = player.getName().getBytes(StandardCharsets.UTF_8);
+        StatusEffects effects = player.getStore().getEffects();
+        int[] effectCount = new int[1];
+        effects.forEach(player.getHandle(), (attribute, amount, remaining) -> effectCount[0]++);
+        int metaBytes = 64 + archetype.length + name.length + (STATS + 2) * MAX_VARINT_BYTES
+                + effectCount[0] * (2 * MAX_VARINT_BYTES + MAX_VARLONG_BYTES)
+                + endSpots.length * 2 * MAX_VARINT_BYTES + npcs.length * (STATS + 2) * MAX_VARINT_BYTES;
+        // Everything but the tiles; small enough that the copy on writing does not matter
+        ByteBuffer meta = ByteBuffer.allocate(metaBytes).order(ByteOrder.LITTLE_ENDIAN);
+        meta.putInt(MAGIC);
+        meta.put((byte) VERSION);
+        putVarint(meta, cols);
+        putVarint(meta, rows);
+        meta.putLong(map.getSeed());
+        meta.putLong(gameplaySeed);
+        putVarLong(meta, map.getLevel().getId());
+
+        // The player's character
+        putBytes(meta, archetype);
+        putBytes(meta, name);
+        putVarint(meta, map.getPlayerX());
+        putVarint(meta, map.getPlayerY());
+        putStats(meta, player.getStore(), player.getHandle());
+        putVarint(meta, effectCount[0]);
+        effects.forEach(player.getHandle(), (attribute, amount, remaining) -> {
+            putVarint(meta, attribute);
+            putSignedVarint(meta, amount);
+            putVarLong(meta, remaining);
+        });
+
+        putVarint(meta, endSpots.length);
+        for (Point endSpot : endSpots) {
+            putVarint(meta, endSpot.x);
+            putVarint(meta, endSpot.y);
+        }
+
+        // NPCs in row order, each as the gap to the previous one's tile index
+        EntityStore entities = map.getEntities();
+        putVarint(meta, npcs.length);
+        long previousTile = 0;
+        int[] stats = new int[STATS];
+        int[] previousStats = null;
+        for (int npc : npcs) {
+            long tile = (long) index.getY(npc) * cols + index.getX(npc);
+            int entity = index.getValue(npc);
+            putVarLong(meta, tile - previousTile);
+            previousTile = tile;
+            if (entities.getArchetype(entity) != EntityStore.ENEMY) {
+                meta.put(FRIENDLY);
+                continue;
+            }
+            readStats(entities, entity, stats);
+            if (Arrays.equals(stats, previousStats)) {
+                meta.put(ENEMY_AS_BEFORE);
+            } else {
+                meta.put(ENEMY);
+                for (int stat : stats) {
+                    putSignedVarint(meta, stat);
+                }
+                previousStats = stats.clone();
+            }
+        }
+        meta.flip();
+
+        ByteBuffer layer = encodeTiles(tiles);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer[] buffers = {meta, layer};
+            while (layer.hasRemaining()) {
+                channel.write(buffers);
+            }
+        }
+    }
+
+    /**
+     * Loads a game saved by {@link #save(Path, GameMap, Character)}.
+     *
+     * @param path the snapshot file
+     * @return the restored map and character
+     * @throws IOException if the file cannot be read or is not a snapshot of a supported version
+     */
+    public static World load(Path path) throws IOException {
+        MappedByteBuffer in;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a world snapshot");
+            }
+            int version = in.get();
+            if (version < OLDEST_VERSION || version > VERSION) {
+                throw new IOException("Unsupported snapshot version: " + version);
+            }
+            int cols = getVarint(in);
+            int rows = getVarint(in);
+            long seed = in.getLong();
+            long gameplaySeed = in.getLong();
+            long level = version >= 3 ? getVarLong(in) : 0;
+
+            String archetype = getString(in);
+            String name = getString(in);
+            int playerX = getVarint(in);
+            int playerY = getVarint(in);
+            if (playerX >= cols || playerY >= rows) {
+                throw new IOException("Corrupt world snapshot: player outside the map");
+            }
+            // The player's own combat rolls continue from a stream derived from the saved seed
+            Character player = Character.create(archetype, name,
+                    new GameRandom(gameplaySeed).stream(GameRandom.Stream.PLAYER_COMBAT));
+            getStats(in, player.getStore(), player.getHandle());
+            // The stats include the effects' amounts; only their expiries need scheduling
+            int effects = version >= 2 ? getVarint(in) : 0;
+            for (int i = 0; i < effects; i++) {
+                player.getStore().getEffects().restore(player.getHandle(), getVarint(in), getSignedVarint(in),
+                        getVarLong(in));
+            }
+
+            Point[] endSpots = new Point[getVarint(in)];
+            for (int i = 0; i < endSpots.length; i++) {
+                endSpots[i] = new Point(getVarint(in), getVarint(in));
+            }
+
+            // The NPCs come before the tiles in the file but can only be placed once the map exists
+            int npcCount = getVarint(in);
+            int npcStart = in.position();
+            for (int i = 0; i < npcCount; i++) {
+                getVarLong(in);
+                if (in.get() == ENEMY) {
+                    for (int s = 0; s < STATS; s++) {
+                        getVarLong(in);
+                    }
+                }
+            }
+            TileLayer tiles = decodeTiles(in, cols, rows);
+
+            GameMap map = new GameMap(cols, rows, seed, gameplaySeed, playerX, playerY, level, endSpots, tiles, npcCount);
+            EntityStore entities = map.getEntities();
+            in.position(npcStart);
+            long tile = 0;
+            int previousEnemy = -1;
+            for (int i = 0; i < npcCount; i++) {
+                tile += getVarLong(in);
+                byte kind = in.get();
+                int entity = map.restoreNPC((int) (tile % cols), (int) (tile / cols), kind != FRIENDLY);
+                if (kind == ENEMY) {
+                    getStats(in, entities, entity);
+                    previousEnemy = entity;
+                } else if (kind == ENEMY_AS_BEFORE) {
+                    if (previousEnemy < 0) {
+                        throw new IOException("Corrupt world snapshot: enemy without attributes");
+                    }
+                    copyStats(entities, previousEnemy, entity);
+                } else if (kind != FRIENDLY) {
+                    throw new IOException("Corrupt world snapshot: unknown NPC kind " + kind);
+                }
+            }
+            return new World(map, player);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Corrupt world snapshot", e);
+        }
+    }
+
+    /**
+     * Collects the NPCs in row order, with a stable counting sort by column and then by row,
+     * which takes linear time where a comparison sort of a large world's NPCs would not.
+     *
+     * @return the index handles of the NPCs
+     */
+    private static int[] sortedNPCs(SpatialIndex index, int cols, int rows) {
+        int[] npcs = new int[index.size()];
+        int[] count = new int[1];
+        index.forEach(npc -> npcs[count[0]++] = npc);
+        return countingSort(countingSort(npcs, cols, index::getX), rows, index::getY);
+    }
+
+    private static int[] countingSort(int[] handles, int keys, IntUnaryOperator key) {
+        int[] starts = new int[keys + 1];
+        for (int handle : handles) {
+            starts[key.applyAsInt(handle) + 1]++;
+        }
+        for (int k = 0; k < keys; k++) {
+            starts[k + 1] += starts[k];
+        }
+        int[] sorted = new int[handles.length];
+        for (int handle : handles) {
+            sorted[starts[key.applyAsInt(handle)]++] = handle;
+        }
+        return sorted;
+    }
+
+    /**
+     * Packs the tile layer: for each chunk in row order a presence bit, then the rows of every
+     * chunk that has any tile set.
+     */
+    private static ByteBuffer encodeTiles(TileLayer tiles) {
+        int width = tiles.getWidth();
+        int height = tiles.getHeight();
+        int chunksX = (width + CHUNK - 1) / CHUNK;
+        int chunksY = (height + CHUNK - 1) / CHUNK;
+        long[] present = new long[(chunksX * chunksY + 63) >>> 6];
+        int words = 0;
+        for (int cy = 0, chunk = 0; cy < chunksY; cy++) {
+            int chunkRows = Math.min(CHUNK, height - cy * CHUNK);
+            for (int cx = 0; cx < chunksX; cx++, chunk++) {
+                for (int row = 0; row < chunkRows; row++) {
+                    if (tiles.word(cx * CHUNK, cy * CHUNK + row) != 0) {
+                        present[chunk >>> 6] |= 1L << chunk;
+                        words += chunkRows;
+                        break;
+                    }
+                }
+            }
+        }
+        ByteBuffer layer = ByteBuffer.allocateDirect((present.length + words) * Long.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (long bits : present) {
+            layer.putLong(bits);
+        }
+        for (int cy = 0, chunk = 0; cy < chunksY; cy++) {
+            int chunkRows = Math.min(CHUNK, height - cy * CHUNK);
+            for (int cx = 0; cx < chunksX; cx++, chunk++) {
+                if ((present[chunk >>> 6] & (1L << chunk)) != 0) {
+                    for (int row = 0; row < chunkRows; row++) {
+                        layer.putLong(tiles.word(cx * CHUNK, cy * CHUNK + row));
+                    }
+                }
+            }
+        }
+        return layer.flip();
+    }
+
+    /**
+     * Unpacks a tile layer written by {@link #encodeTiles(TileLayer)}.
+     */
+    private static TileLayer decodeTiles(ByteBuffer in, int width, int height) {
+        TileLayer tiles = new TileLayer(width, height);
+        int chunksX = (width + CHUNK - 1) / CHUNK;
+        int chunksY = (height + CHUNK - 1) / CHUNK;
+        long[] present = new long[(chunksX * chunksY + 63) >>> 6];
+        for (int i = 0; i < present.length; i++) {
+            present[i] = in.getLong();
+        }
+        for (int cy = 0, chunk = 0; cy < chunksY; cy++) {
+            int chunkRows = Math.min(CHUNK, height - cy * CHUNK);
+            for (int cx = 0; cx < chunksX; cx++, chunk++) {
+                if ((present[chunk >>> 6] & (1L << chunk)) != 0) {
+                    for (int row = 0; row < chunkRows; row++) {
+                        tiles.setWord(cx * CHUNK, cy * CHUNK + row, in.getLong());
+                    }
+                }
+            }
+        }
+        return tiles;
+    }
+
+    private static void putStats(ByteBuffer out, EntityStore store, int entity) {
+        putSignedVarint(out, store.getHealth(entity));
+        putSignedVarint(out, store.getMaxHealth(entity));
+        putSignedVarint(out, store.getStrength(entity));
+        putSignedVarint(out, store.getMagic(entity));
+        putSignedVarint(out, store.getMovementRange(entity));
+    }
+
+    private static void getStats(ByteBuffer in, EntityStore store, int entity) {
+        store.setHealth(entity, getSignedVarint(in));
+        store.setMaxHealth(entity, getSignedVarint(in));
+        store.setStrength(entity, getSignedVarint(in));
+        store.setMagic(entity, getSignedVarint(in));
+        store.setMovementRange(entity, getSignedVarint(in));
+    }
+
+    private static void readStats(EntityStore store, int entity, int[] stats) {
+        stats[0] = store.getHealth(entity);
+        stats[1] = store.getMaxHealth(entity);
+        stats[2] = store.getStrength(entity);
+        stats[3] = store.getMagic(entity);
+        stats[4] = store.getMovementRange(entity);
+    }
+
+    private static void copyStats(EntityStore store, int from, int to) {
+        store.setHealth(to, store.getHealth(from));
+        store.setMaxHealth(to, store.getMaxHealth(from));
+        store.setStrength(to, store.getStrength(from));
+        store.setMagic(to, store.getMagic(from));
+        store.setMovementRange(to, store.getMovementRange(from));
+    }
+
+    private static void putBytes(ByteBuffer out, byte[] bytes) {
+        putVarint(out, bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[getVarint(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a non-negative int in 7-bit groups, low group first.
+     */
+    private static void putVarint(ByteBuffer out, int value) {
+        putVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    private static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Writes an int that may be negative, zigzag-encoded so small magnitudes stay short.
+     */
+    private static void putSignedVarint(ByteBuffer out, int value) {
+        putVarint(out, (value << 1) ^ (value >> 31));
+    }
+
+    private static int getVarint(ByteBuffer in) {
+        long value = getVarLong(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Varint out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    private static long getVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static int getSignedVarint(ByteBuffer in) {
+        int value = (int) getVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}